@@ -1,6 +1,8 @@
 package com.sk89q.craftbook;
 
 import com.sk89q.craftbook.bukkit.BukkitCraftBookPlayer;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.core.SignUpdateQueue;
 import com.sk89q.craftbook.mechanics.variables.VariableCommands;
 import com.sk89q.craftbook.mechanics.variables.VariableManager;
 import com.sk89q.craftbook.util.ParsingUtil;
@@ -22,6 +24,14 @@ public class ChangedSign {
     private String[] lines;
     private String[] oldLines;
 
+    /**
+     * The lines with their variables parsed, along with the raw lines and variable modification count they were
+     * parsed from.
+     */
+    private String[] parsedLines;
+    private String[] parsedFrom;
+    private long[] parsedVersions;
+
     public ChangedSign(Block block, String[] lines, CraftBookPlayer player) {
         this(block, lines);
 
@@ -109,7 +119,24 @@ public class ChangedSign {
 
     public String getLine(int index) throws IndexOutOfBoundsException {
 
-        return ParsingUtil.parseLine(lines[index], null);
+        String line = lines[index];
+        // Only lines with variables can change when the variables do.
+        if (line == null || line.indexOf('%') < 0)
+            return line;
+
+        if (parsedLines == null || parsedLines.length != lines.length) {
+            parsedLines = new String[lines.length];
+            parsedFrom = new String[lines.length];
+            parsedVersions = new long[lines.length];
+        }
+
+        long version = VariableManager.getModificationCount();
+        if (parsedFrom[index] != line || parsedVersions[index] != version) {
+            parsedLines[index] = ParsingUtil.parseLine(line, null);
+            parsedFrom[index] = line;
+            parsedVersions[index] = version;
+        }
+        return parsedLines[index];
     }
 
     public String getRawLine(int index) throws IndexOutOfBoundsException {
@@ -127,10 +154,47 @@ public class ChangedSign {
         block.setType(type);
     }
 
+    /**
+     * Writes the lines of this sign to the world if they have changed. Unless forced, the write is queued until the
+     * next tick, so that a sign changed several times in a tick is only written once.
+     *
+     * @param force If the sign should be written straight away, even if it hasn't changed
+     * @return If the sign was written or queued
+     */
     public boolean update(boolean force) {
 
         if(!hasChanged() && !force)
             return false;
+
+        SignUpdateQueue queue = getUpdateQueue();
+        if(queue != null) {
+            if(!force) {
+                queue.queue(this);
+                return true;
+            }
+            queue.remove(block);
+        }
+
+        return write(force);
+    }
+
+    /**
+     * Writes the lines of this sign to the world straight away if they have changed, rather than waiting for a queued
+     * update.
+     *
+     * @return If the sign was written
+     */
+    public boolean flush() {
+
+        SignUpdateQueue queue = getUpdateQueue();
+        if(queue != null)
+            queue.remove(this);
+
+        return hasChanged() && write(false);
+    }
+
+    private boolean write(boolean force) {
+
         for(int i = 0; i < 4; i++) {
             getSign().setLine(i, lines[i]);
         }
@@ -139,6 +203,13 @@ public class ChangedSign {
         return getSign().update(force, false);
     }
 
+    private static SignUpdateQueue getUpdateQueue() {
+
+        CraftBookPlugin plugin = CraftBookPlugin.inst();
+        // Tasks can't be scheduled while the plugin is disabling, so write straight away.
+        return plugin == null || !plugin.isEnabled() ? null : plugin.getSignUpdateQueue();
+    }
+
     public void setLines(String[] lines) {
         this.lines = lines;
     }
@@ -161,6 +232,11 @@ public class ChangedSign {
     }
 
     public void flushLines () {
+        SignUpdateQueue queue = getUpdateQueue();
+        if (queue != null && queue.remove(this)) {
+            // Don't lose a queued update by reading the outdated lines back from the world.
+            write(false);
+        }
         this.sign = null;
         this.lines = this.getSign().getLines();
         if (this.oldLines == null) {
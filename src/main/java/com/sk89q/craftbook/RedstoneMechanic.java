@@ -0,0 +1,21 @@
+package com.sk89q.craftbook;
+
+import org.bukkit.Material;
+
+import java.util.Set;
+
+/**
+ * A mechanic that only listens for {@link com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent}s on certain
+ * types of blocks. As long as every listener of that event implements this, redstone changes next to any other block
+ * are not sent through the event bus at all.
+ */
+public interface RedstoneMechanic {
+
+    /**
+     * Gets the types of blocks that this mechanic wants redstone changes for. This is called again whenever the
+     * registered listeners change, such as on reload.
+     *
+     * @return The block types, or an empty set if this mechanic currently ignores redstone
+     */
+    Set<Material> getRedstoneTargets();
+}
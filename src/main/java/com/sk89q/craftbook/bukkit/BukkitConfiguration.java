@@ -21,6 +21,11 @@ public class BukkitConfiguration {
     public boolean useBlockDistance;
     public boolean safeDestruction;
     public int stThinkRate;
+    public boolean stThinkEvents;
+    public int stThinkBudget;
+    public boolean stChunkIndex;
+    public int stChunkIndexMaxAge;
+    public boolean batchSignUpdates;
     public boolean obeyWorldguard;
     public boolean advancedBlockChecks;
     public boolean pedanticBlockChecks;
@@ -38,8 +43,12 @@ public class BukkitConfiguration {
     public boolean debugMode;
     public boolean debugLogToFile;
     public List<String> debugFlags;
+    public boolean timings;
 
     public String persistentStorageType;
+    public boolean persistentStorageWriteBehind;
+    public int persistentStorageFlushInterval;
+    public int persistentStorageBatchSize;
 
     public YAMLProcessor config;
     public Logger logger;
@@ -98,6 +107,21 @@ public class BukkitConfiguration {
         config.setComment("st-think-ticks", "WARNING! Changing this can result in all ST mechanics acting very weirdly, only change this if you know what you are doing!");
         stThinkRate = config.getInt("st-think-ticks", 2);
 
+        config.setComment("st-think-events", "Fires a SelfTriggerThinkEvent for every self-triggered mechanic each think, rather than calling the mechanic directly. Only enable this if another plugin listens for these events, as it is much slower.");
+        stThinkEvents = config.getBoolean("st-think-events", false);
+
+        config.setComment("st-think-budget", "The maximum time in microseconds that self-triggered mechanics can spend thinking each think tick. Mechanics that miss out carry over to the next tick, in order. Set to 0 for no limit.");
+        stThinkBudget = config.getInt("st-think-budget", 0);
+
+        config.setComment("st-chunk-index", "Keeps an index of self-triggered mechanics in each world folder, so that loading a chunk doesn't need to scan every tile entity within it. Only indexed mechanics are set up when an indexed chunk loads, so ICs that aren't self-triggered, and signs placed by other plugins or WorldEdit, aren't seen until the chunk is scanned again.");
+        stChunkIndex = config.getBoolean("st-chunk-index", false);
+
+        config.setComment("st-chunk-index-max-age", "The age in hours after which an indexed chunk is scanned in full again. Set to 0 to never rescan.");
+        stChunkIndexMaxAge = config.getInt("st-chunk-index-max-age", 24);
+
+        config.setComment("batch-sign-updates", "Queues sign changes made by mechanics and writes each sign at most once a tick, rather than sending a sign update for every change.");
+        batchSignUpdates = config.getBoolean("batch-sign-updates", true);
+
         config.setComment("safe-destruction", "Causes many mechanics to require sufficient blocks to function, for example gates, bridges and doors.");
         safeDestruction = config.getBoolean("safe-destruction", true);
 
@@ -140,6 +164,9 @@ public class BukkitConfiguration {
         config.setComment("debug-flags", "Enable certain debug types when debug mode is enabled.");
         debugFlags = config.getStringList("debug-flags", new ArrayList<>());
 
+        config.setComment("timings", "Records how long each mechanic and IC takes to run, viewable with /cb timings. This adds a small overhead to every event.");
+        timings = config.getBoolean("timings", false);
+
         config.setComment("easter-eggs", "Enables random easter eggs. Can be from console messages on startup for a special occasion, to funny little effects with IC's and other mechanics (Always harmless, won't mess anything up)");
         easterEggs = config.getBoolean("easter-eggs", true);
 
@@ -149,9 +176,18 @@ public class BukkitConfiguration {
         config.setComment("show-permission-messages", "Show messages when a player does not have permission to do something.");
         showPermissionMessages = config.getBoolean("show-permission-messages", true);
 
-        config.setComment("persistent-storage-type", "PersistentStorage stores data that can be accessed across server restart. Method of PersistentStorage storage (Note: DUMMY is practically off, and may cause issues). Can currently be any of the following: YAML, DUMMY, SQLite");
+        config.setComment("persistent-storage-type", "PersistentStorage stores data that can be accessed across server restart. Method of PersistentStorage storage (Note: DUMMY is practically off, and may cause issues). Can currently be any of the following: YAML, DUMMY, SQLite, LOG");
         persistentStorageType = config.getString("persistent-storage-type", "YAML");
 
+        config.setComment("persistent-storage-write-behind", "Keeps PersistentStorage data in memory and writes changes from a background thread, so that the server never waits on the disk. Has no effect on YAML, which is already kept in memory.");
+        persistentStorageWriteBehind = config.getBoolean("persistent-storage-write-behind", true);
+
+        config.setComment("persistent-storage-flush-interval", "The time in milliseconds between writing changed PersistentStorage data, when write-behind is enabled.");
+        persistentStorageFlushInterval = config.getInt("persistent-storage-flush-interval", 5000);
+
+        config.setComment("persistent-storage-batch-size", "The amount of changed PersistentStorage data that is written straight away rather than waiting for the interval, when write-behind is enabled.");
+        persistentStorageBatchSize = config.getInt("persistent-storage-batch-size", 500);
+
         config.setComment("convert-names-to-cbids", "Causes mechanics to attempt to convert names to use CBIDs. This can and should be disabled after you believe your servers transition to UUIDs v Names is complete.");
         convertNamesToCBID = config.getBoolean("convert-names-to-cbids", false);
 
@@ -6,8 +6,10 @@ import com.sk89q.craftbook.CraftBookPlayer;
 import com.sk89q.craftbook.bukkit.commands.TopLevelCommands;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.core.LanguageManager;
+import com.sk89q.craftbook.core.SignUpdateQueue;
 import com.sk89q.craftbook.core.st.MechanicClock;
 import com.sk89q.craftbook.core.st.SelfTriggeringManager;
+import com.sk89q.craftbook.core.timings.Timings;
 import com.sk89q.craftbook.mechanics.AIMechanic;
 import com.sk89q.craftbook.mechanics.Ammeter;
 import com.sk89q.craftbook.mechanics.BetterLeads;
@@ -88,10 +90,14 @@ import com.sk89q.craftbook.util.ArrayUtil;
 import com.sk89q.craftbook.util.CompatabilityUtil;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.craftbook.util.RegexUtil;
+import com.sk89q.craftbook.util.ProfileResolver;
 import com.sk89q.craftbook.util.UUIDMappings;
 import com.sk89q.craftbook.util.compat.companion.CompanionPlugins;
 import com.sk89q.craftbook.util.compat.nms.NMSAdapter;
+import com.sk89q.craftbook.util.persistent.DummyPersistentStorage;
 import com.sk89q.craftbook.util.persistent.PersistentStorage;
+import com.sk89q.craftbook.util.persistent.WriteBehindPersistentStorage;
+import com.sk89q.craftbook.util.persistent.YAMLPersistentStorage;
 import com.sk89q.minecraft.util.commands.CommandException;
 import com.sk89q.minecraft.util.commands.CommandPermissionsException;
 import com.sk89q.minecraft.util.commands.CommandUsageException;
@@ -202,6 +208,8 @@ public class CraftBookPlugin extends JavaPlugin {
      */
     private UUIDMappings uuidMappings;
 
+    private ProfileResolver profileResolver;
+
     /**
      * List of common mechanics.
      */
@@ -212,6 +220,16 @@ public class CraftBookPlugin extends JavaPlugin {
      */
     private SelfTriggeringManager selfTriggerManager;
 
+    /**
+     * The mechanic timings, if enabled.
+     */
+    private Timings timings;
+
+    /**
+     * The queue of changed signs to write, if enabled.
+     */
+    private SignUpdateQueue signUpdateQueue;
+
     /**
      * The NMS Adapter.
      */
@@ -358,6 +376,16 @@ public class CraftBookPlugin extends JavaPlugin {
         return uuidMappings;
     }
 
+    /**
+     * Gets the resolver used to look up the UUIDs of player names without blocking.
+     *
+     * @return The profile resolver
+     */
+    public ProfileResolver getProfileResolver() {
+
+        return profileResolver;
+    }
+
     /**
      * Retrieve the NMS Adapter.
      *
@@ -411,6 +439,10 @@ public class CraftBookPlugin extends JavaPlugin {
         }
 
         persistentStorage = PersistentStorage.createFromType(config.persistentStorageType);
+        // YAML is already kept in memory until it closes, so there is nothing to write behind.
+        if(persistentStorage != null && config.persistentStorageWriteBehind
+                && !(persistentStorage instanceof DummyPersistentStorage) && !(persistentStorage instanceof YAMLPersistentStorage))
+            persistentStorage = new WriteBehindPersistentStorage(persistentStorage, config.persistentStorageFlushInterval, config.persistentStorageBatchSize);
 
         if(persistentStorage != null)
             persistentStorage.open();
@@ -418,6 +450,8 @@ public class CraftBookPlugin extends JavaPlugin {
         uuidMappings = new UUIDMappings();
         uuidMappings.enable();
 
+        profileResolver = new ProfileResolver(() -> hasPersistentStorage() ? getPersistentStorage() : null);
+
         logDebugMessage("Initializing Managers!", "startup");
         managerAdapter = new MechanicListenerAdapter();
 
@@ -522,6 +556,12 @@ public class CraftBookPlugin extends JavaPlugin {
             }
         }
 
+        timings = config.timings ? new Timings() : null;
+
+        signUpdateQueue = config.batchSignUpdates ? new SignUpdateQueue() : null;
+        if(signUpdateQueue != null)
+            getServer().getPluginManager().registerEvents(signUpdateQueue, this);
+
         // Initialize the language manager.
         logDebugMessage("Initializing Languages!", "startup");
         languageManager = new LanguageManager();
@@ -583,7 +623,7 @@ public class CraftBookPlugin extends JavaPlugin {
                     iter.remove();
                     continue;
                 }
-                getServer().getPluginManager().registerEvents(mech, this);
+                registerMechanicEvents(mech);
                 if(mech instanceof CookingPot || (mech instanceof ICMechanic && !((ICMechanic) mech).disableSelfTriggered)) //TODO make this a better check.
                     hasSTMechanic = true;
                 if(mech instanceof CartBlockMechanism)
@@ -634,7 +674,7 @@ public class CraftBookPlugin extends JavaPlugin {
                     mech.disable();
                     return false;
                 }
-                getServer().getPluginManager().registerEvents(mech, this);
+                registerMechanicEvents(mech);
             } else
                 return false;
         } catch (Throwable t) {
@@ -683,7 +723,7 @@ public class CraftBookPlugin extends JavaPlugin {
     public void registerGlobalEvents() {
 
         logDebugMessage("Registring managers!", "startup");
-        getServer().getPluginManager().registerEvents(managerAdapter, inst());
+        registerMechanicEvents(managerAdapter);
 
         if(config.easterEggs) {
             Bukkit.getScheduler().runTaskLater(this, new Runnable() {
@@ -744,6 +784,15 @@ public class CraftBookPlugin extends JavaPlugin {
             mechanics = null;
         }
 
+        if(signUpdateQueue != null)
+            signUpdateQueue.flushAll();
+
+        if(selfTriggerManager != null)
+            selfTriggerManager.save();
+
+        if(profileResolver != null)
+            profileResolver.close();
+
         if(hasPersistentStorage()) {
 
             persistentStorage.close();
@@ -851,7 +900,7 @@ public class CraftBookPlugin extends JavaPlugin {
 
         // Set up the clock for self-triggered ICs.
 
-        getServer().getScheduler().runTaskTimer(this, mechanicClock, 0, config.stThinkRate);
+        getServer().getScheduler().runTaskTimer(this, mechanicClock, 0, MechanicClock.getPeriod(config));
 
         getServer().getPluginManager().registerEvents(selfTriggerManager, this);
     }
@@ -865,6 +914,19 @@ public class CraftBookPlugin extends JavaPlugin {
             inst().getServer().getPluginManager().registerEvents(listener, inst());
     }
 
+    /**
+     * Registers the events of a mechanic, recording timings for them if enabled.
+     *
+     * @param listener The mechanic
+     */
+    public void registerMechanicEvents(Listener listener) {
+
+        if(timings != null)
+            timings.registerEvents(listener, this);
+        else
+            getServer().getPluginManager().registerEvents(listener, this);
+    }
+
     /**
      * This is a method used to register commands for a class.
      */
@@ -1061,6 +1123,26 @@ public class CraftBookPlugin extends JavaPlugin {
         return selfTriggerManager;
     }
 
+    /**
+     * Grabs the mechanic timings.
+     *
+     * @return The timings, or null if they are disabled
+     */
+    public Timings getTimings() {
+
+        return timings;
+    }
+
+    /**
+     * Grabs the queue of changed signs to write.
+     *
+     * @return The sign update queue, or null if sign updates aren't batched
+     */
+    public SignUpdateQueue getSignUpdateQueue() {
+
+        return signUpdateQueue;
+    }
+
     /**
      * Reload configuration
      */
@@ -1070,6 +1152,10 @@ public class CraftBookPlugin extends JavaPlugin {
             for(CraftBookMechanic mech : mechanics)
                 mech.disable();
         mechanics = null;
+        if(signUpdateQueue != null)
+            signUpdateQueue.flushAll();
+        if(selfTriggerManager != null)
+            selfTriggerManager.save();
         getServer().getScheduler().cancelTasks(inst());
         HandlerList.unregisterAll(inst());
 
@@ -25,6 +25,7 @@ import com.sk89q.craftbook.mechanics.minecart.events.CartBlockRedstoneEvent;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.ProtectionUtil;
+import com.sk89q.craftbook.util.RedstoneUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.craftbook.util.events.SignClickEvent;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
@@ -342,7 +343,8 @@ final class MechanicListenerAdapter implements Listener {
             return;
         final SourcedBlockRedstoneEvent event = new SourcedBlockRedstoneEvent(sourceBlock, block, oldLevel, newLevel);
 
-        CraftBookPlugin.inst().getServer().getPluginManager().callEvent(event);
+        if(RedstoneUtil.isRedstoneTarget(block))
+            CraftBookPlugin.inst().getServer().getPluginManager().callEvent(event);
 
         if(CraftBookPlugin.inst().useLegacyCartSystem) {
             CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), () -> {
@@ -1,13 +1,23 @@
 package com.sk89q.craftbook.bukkit;
 
 import com.sk89q.craftbook.CraftBookMechanic;
+import com.sk89q.craftbook.core.SignUpdateQueue;
 import com.sk89q.craftbook.mechanics.crafting.CraftingItemStack;
 import com.sk89q.craftbook.mechanics.crafting.RecipeManager;
 import com.sk89q.craftbook.mechanics.crafting.RecipeManager.Recipe;
 import com.sk89q.craftbook.mechanics.crafting.RecipeManager.RecipeType;
 import com.sk89q.craftbook.mechanics.ic.IC;
 import com.sk89q.craftbook.mechanics.ic.ICManager;
+import com.sk89q.craftbook.mechanics.ic.ICMechanic;
+import com.sk89q.craftbook.mechanics.ic.ICOutputStage;
+import com.sk89q.craftbook.mechanics.ic.ICStateRegisters;
+import com.sk89q.craftbook.mechanics.ic.ICTriggerScheduler;
+import com.sk89q.craftbook.mechanics.ic.LogicClusterManager;
+import com.sk89q.craftbook.mechanics.ic.plc.PlcCodeCache;
+import com.sk89q.craftbook.mechanics.ic.plc.PlcStateStore;
+import com.sk89q.craftbook.mechanics.ic.plc.lang.Perlstone;
 import com.sk89q.craftbook.util.LogListBlock;
+import com.sk89q.craftbook.util.persistent.WriteBehindPersistentStorage;
 import org.bukkit.Location;
 import org.bukkit.Server;
 import org.bukkit.plugin.Plugin;
@@ -186,7 +196,78 @@ public class ReportWriter {
 
         int i = CraftBookPlugin.inst().getMechanics().size();
         log.put("Mechanics Loaded", "%d", i);
-        log.put("ST Mechanics Loaded", "%d", plugin.getSelfTriggerManager() == null ? 0 : plugin.getSelfTriggerManager().getSelfTriggeringMechanics().size());
+        log.put("ST Mechanics Loaded", "%d", plugin.getSelfTriggerManager() == null ? 0 : plugin.getSelfTriggerManager().getSelfTriggeringMechanicCount());
+        log.put("ST Think Backlog", "%d", plugin.getSelfTriggerManager() == null ? 0 : plugin.getSelfTriggerManager().getThinkBacklog());
+        log.put("ST Last Cycle Length", "%d", plugin.getSelfTriggerManager() == null ? 0 : plugin.getSelfTriggerManager().getLastCycleLength());
+        if(plugin.getPersistentStorage() instanceof WriteBehindPersistentStorage) {
+            WriteBehindPersistentStorage storage = (WriteBehindPersistentStorage) plugin.getPersistentStorage();
+            log.put("Persistent Data Written", "%d", storage.getWrittenCount());
+            log.put("Persistent Data Batches", "%d", storage.getBatchCount());
+            log.put("Persistent Data Unwritten", "%d", storage.getPendingCount());
+            log.put("Persistent Data Failed Batches", "%d", storage.getFailedCount());
+        }
+        if(plugin.getUUIDMappings() != null)
+            log.put("UUID Mappings", "%d", plugin.getUUIDMappings().getSize());
+        if(plugin.getProfileResolver() != null) {
+            log.put("Profile Cache Hits", "%d", plugin.getProfileResolver().getHitCount());
+            log.put("Profile Cache Misses", "%d", plugin.getProfileResolver().getMissCount());
+            log.put("Profile Lookups", "%d", plugin.getProfileResolver().getLookupCount());
+            log.put("Profile Lookups Pending", "%d", plugin.getProfileResolver().getPendingCount());
+        }
+        SignUpdateQueue signUpdates = plugin.getSignUpdateQueue();
+        if(signUpdates != null) {
+            log.put("Sign Updates Requested", "%d", signUpdates.getRequestedCount());
+            log.put("Sign Updates Written", "%d", signUpdates.getWrittenCount());
+            log.put("Sign Updates Coalesced", "%d", signUpdates.getCoalescedCount());
+            log.put("Sign Updates Queued", "%d", signUpdates.getPendingCount());
+        }
+        if(ICMechanic.instance != null) {
+            ICTriggerScheduler scheduler = ICMechanic.instance.getTriggerScheduler();
+            log.put("IC Input Changes", "%d", scheduler.getRequestedCount());
+            log.put("IC Triggers", "%d", scheduler.getTriggeredCount());
+            log.put("IC Triggers Collapsed", "%d", scheduler.getCollapsedCount());
+            long lookups = ICManager.getCacheHits() + ICManager.getCacheMisses();
+            log.put("IC Cache Size", "%d", ICManager.getCacheSize());
+            log.put("IC Cache Hit Rate", "%.1f%% (%d/%d)", lookups == 0 ? 0D : ICManager.getCacheHits() * 100D / lookups, ICManager.getCacheHits(), lookups);
+            log.put("IC Cache Evictions", "%d", ICManager.getCacheEvictions());
+            ICStateRegisters registers = ICMechanic.instance.getStateRegisters();
+            if(registers != null) {
+                log.put("IC State Changes", "%d", registers.getMarkedCount());
+                log.put("IC State Sign Writes", "%d", registers.getFlushedCount());
+                log.put("IC Unwritten States", "%d", registers.getDirtyCount());
+            }
+            ICOutputStage outputs = ICMechanic.instance.getOutputStage();
+            if(outputs != null) {
+                log.put("IC Output Changes", "%d", outputs.getRequestedCount());
+                log.put("IC Outputs Applied", "%d", outputs.getAppliedCount());
+                log.put("IC Outputs Cancelled", "%d", outputs.getCancelledCount());
+                log.put("IC Output Physics Updates", "%d", outputs.getPhysicsCount());
+            }
+            LogicClusterManager clusters = ICMechanic.instance.getClusterManager();
+            if(clusters != null) {
+                log.put("IC Logic Clusters", "%d", clusters.getClusterCount());
+                log.put("IC Logic Clusters Compiled", "%d", clusters.getCompiledCount());
+                log.put("IC Logic Cluster Evaluations", "%d", clusters.getEvaluationCount());
+                log.put("IC Logic Clusters Dissolved", "%d", clusters.getDissolvedCount());
+            }
+            PlcStateStore plcStates = ICMechanic.instance.getPlcStateStore();
+            if(plcStates != null) {
+                log.put("PLC State Changes", "%d", plcStates.getMarkedCount());
+                log.put("PLC States Written", "%d", plcStates.getWrittenCount());
+                log.put("PLC State File Writes", "%d", plcStates.getFileWriteCount());
+                log.put("PLC Unwritten States", "%d", plcStates.getDirtyCount());
+            }
+            PlcCodeCache plcCode = ICMechanic.instance.getPlcCodeCache();
+            if(plcCode != null) {
+                long plcLookups = plcCode.getHitCount() + plcCode.getMissCount();
+                log.put("PLC Code Cache Size", "%d", plcCode.getSize());
+                log.put("PLC Code Cache Hit Rate", "%.1f%% (%d/%d)", plcLookups == 0 ? 0D : plcCode.getHitCount() * 100D / plcLookups, plcCode.getHitCount(), plcLookups);
+                log.put("PLC Code Cache Invalidations", "%d", plcCode.getInvalidationCount());
+                log.put("PLC Compiled Programs", "%d (%d compiled)", plcCode.getProgramCount(), plcCode.getCompileCount());
+                long plcRuns = Perlstone.getMemoHitCount() + Perlstone.getMemoMissCount();
+                log.put("Perlstone Memoization Hit Rate", "%.1f%% (%d/%d)", plcRuns == 0 ? 0D : Perlstone.getMemoHitCount() * 100D / plcRuns, Perlstone.getMemoHitCount(), plcRuns);
+            }
+        }
 
         append(log);
         appendln();
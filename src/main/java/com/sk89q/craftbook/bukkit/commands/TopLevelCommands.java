@@ -1,6 +1,7 @@
 package com.sk89q.craftbook.bukkit.commands;
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 import com.sk89q.craftbook.mechanics.headdrops.HeadDropsCommands;
 import com.sk89q.craftbook.util.ItemSyntax;
@@ -11,10 +12,13 @@ import org.bukkit.command.CommandSender;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.ReportWriter;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.core.timings.TimingHistogram;
+import com.sk89q.craftbook.core.timings.Timings;
 import com.sk89q.craftbook.mechanics.area.AreaCommands;
 import com.sk89q.craftbook.mechanics.cauldron.CauldronCommands;
 import com.sk89q.craftbook.mechanics.crafting.RecipeCommands;
 import com.sk89q.craftbook.mechanics.ic.ICCommands;
+import com.sk89q.craftbook.mechanics.ic.plc.lang.Perlstone;
 import com.sk89q.craftbook.mechanics.items.CommandItemCommands;
 import com.sk89q.craftbook.mechanics.signcopier.SignEditCommands;
 import com.sk89q.craftbook.mechanics.variables.VariableCommands;
@@ -169,6 +173,54 @@ public class TopLevelCommands {
             }
         }
 
+        @Command(aliases = {"timings"}, desc = "Shows how long mechanics and ICs take to run", usage = "[top]", flags = "rd", max = 1)
+        @CommandPermissions({"craftbook.timings"})
+        public void timings(CommandContext args, final CommandSender sender) throws CommandException {
+
+            Timings timings = CraftBookPlugin.inst().getTimings();
+            if(timings == null)
+                throw new CommandException("Timings are disabled. Set 'timings' to true in the config and reload to enable them.");
+
+            int top = args.argsLength() > 0 ? args.getInteger(0) : 5;
+
+            if(args.hasFlag('d')) {
+                File dest = new File(CraftBookPlugin.inst().getDataFolder(), "timings.json");
+                try {
+                    timings.writeJson(dest, Math.max(top, 100));
+                    sender.sendMessage(ChatColor.YELLOW + "CraftBook timings written to " + dest.getAbsolutePath());
+                } catch (IOException e) {
+                    throw new CommandException("Failed to write timings: " + e.getMessage());
+                }
+            }
+
+            if(args.hasFlag('r')) {
+                timings.reset();
+                sender.sendMessage(ChatColor.YELLOW + "CraftBook timings have been reset.");
+                return;
+            }
+
+            sender.sendMessage(ChatColor.YELLOW + "CraftBook timings over the last " + timings.getRecordingTime() / 1000 + "s (calls, mean, p99, total):");
+            sender.sendMessage(ChatColor.GOLD + "Mechanics:");
+            for(Map.Entry<String, TimingHistogram> entry : timings.getMechanicTimings().entrySet())
+                sendTiming(sender, entry.getKey(), entry.getValue());
+            sender.sendMessage(ChatColor.GOLD + "ICs:");
+            for(Map.Entry<String, TimingHistogram> entry : timings.getICTimings().entrySet())
+                sendTiming(sender, entry.getKey(), entry.getValue());
+            if(Perlstone.getMemoHitCount() + Perlstone.getMemoMissCount() > 0)
+                sender.sendMessage(ChatColor.YELLOW + "Perlstone memoization: " + Perlstone.getMemoHitCount() + " hits, " + Perlstone.getMemoMissCount() + " misses");
+            sender.sendMessage(ChatColor.GOLD + "Slowest IC locations:");
+            for(Timings.LocationTiming location : timings.getHottestLocations(top))
+                sender.sendMessage(ChatColor.YELLOW + location.getId() + " at " + location.getWorldName() + ' ' + location.getX() + ',' + location.getY() + ',' + location.getZ()
+                        + ": " + location.getCount() + " calls, " + String.format("%.2fms", location.getTotal() / 1000000.0));
+        }
+
+        private static void sendTiming(CommandSender sender, String name, TimingHistogram timing) {
+
+            if(timing.getCount() == 0) return;
+            sender.sendMessage(ChatColor.YELLOW + name + ": " + timing.getCount() + ", "
+                    + String.format("%.1fus, %.1fus, %.2fms", timing.getMean() / 1000.0, timing.getPercentile(0.99) / 1000.0, timing.getTotal() / 1000000.0));
+        }
+
         @Command(aliases = {"dev"}, desc = "Advanced developer commands")
         @CommandPermissions({"craftbook.developer"})
         public void dev(CommandContext args, final CommandSender sender) throws CommandPermissionsException {
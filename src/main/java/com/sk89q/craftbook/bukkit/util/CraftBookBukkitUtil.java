@@ -49,6 +49,11 @@ public final class CraftBookBukkitUtil {
     }
 
     public static ChangedSign toChangedSign(Block block, String[] lines, CraftBookPlayer player) {
+        if (lines == null && CraftBookPlugin.inst().getSignUpdateQueue() != null) {
+            // The world still has the old lines until a queued update is written.
+            ChangedSign pending = CraftBookPlugin.inst().getSignUpdateQueue().getPending(block);
+            if (pending != null) return pending;
+        }
         return CraftBookPlugin.inst().getNmsAdapter().getChangedSign(block, lines, player);
     }
 
@@ -58,7 +63,9 @@ public final class CraftBookBukkitUtil {
 
     public static Sign toSign(ChangedSign sign) {
         try {
-            if (sign.hasChanged()) sign.update(false);
+            // Queued signs are written on the next tick, so only write changes here when sign updates aren't batched.
+            if (sign.hasChanged() && (CraftBookPlugin.inst() == null || CraftBookPlugin.inst().getSignUpdateQueue() == null))
+                sign.update(false);
             return sign.getSign();
         } catch (NullPointerException ex) {
             return null;
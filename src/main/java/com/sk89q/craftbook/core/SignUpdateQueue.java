@@ -0,0 +1,156 @@
+package com.sk89q.craftbook.core;
+
+import com.sk89q.craftbook.ChangedSign;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import org.bukkit.Chunk;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the signs that mechanics have changed, and writes each of them once on the next tick. A sign that is
+ * updated several times within a tick only sends a single update to the world.
+ */
+public class SignUpdateQueue implements Runnable, Listener {
+
+    private Map<Block, ChangedSign> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    private long requestedCount = 0;
+    private long writtenCount = 0;
+    private long coalescedCount = 0;
+
+    /**
+     * Queues a sign to be written on the next tick. If another update to the same sign is already queued, only the
+     * latest one is written.
+     *
+     * @param sign The sign
+     */
+    public void queue(ChangedSign sign) {
+
+        requestedCount++;
+        if(pending.put(sign.getBlock(), sign) != null)
+            coalescedCount++;
+        if(!scheduled) {
+            scheduled = true;
+            CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), this);
+        }
+    }
+
+    /**
+     * Gets the sign with a queued update at the given block, so that it can be used in place of the outdated lines
+     * that are still in the world.
+     *
+     * @param block The block
+     * @return The queued sign, or null if there isn't one
+     */
+    public ChangedSign getPending(Block block) {
+
+        return pending.isEmpty() ? null : pending.get(block);
+    }
+
+    /**
+     * Removes a sign from the queue, if it is the sign that is queued for its block.
+     *
+     * @param sign The sign
+     * @return If the sign was queued
+     */
+    public boolean remove(ChangedSign sign) {
+
+        return !pending.isEmpty() && pending.remove(sign.getBlock(), sign);
+    }
+
+    /**
+     * Removes any queued update at the given block.
+     *
+     * @param block The block
+     */
+    public void remove(Block block) {
+
+        if(!pending.isEmpty())
+            pending.remove(block);
+    }
+
+    /**
+     * Writes every queued sign straight away.
+     */
+    public void flushAll() {
+
+        if(pending.isEmpty()) return;
+
+        Map<Block, ChangedSign> signs = pending;
+        pending = new LinkedHashMap<>();
+        for(ChangedSign sign : signs.values())
+            write(sign);
+    }
+
+    @Override
+    public void run() {
+
+        scheduled = false;
+        flushAll();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        if(pending.isEmpty()) return;
+
+        Chunk chunk = event.getChunk();
+        List<ChangedSign> signs = null;
+        Iterator<Map.Entry<Block, ChangedSign>> iterator = pending.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<Block, ChangedSign> entry = iterator.next();
+            Block block = entry.getKey();
+            if(block.getX() >> 4 != chunk.getX() || block.getZ() >> 4 != chunk.getZ() || !block.getWorld().equals(chunk.getWorld()))
+                continue;
+            if(signs == null)
+                signs = new ArrayList<>();
+            signs.add(entry.getValue());
+            iterator.remove();
+        }
+
+        if(signs != null)
+            for(ChangedSign sign : signs)
+                write(sign);
+    }
+
+    public int getPendingCount() {
+
+        return pending.size();
+    }
+
+    public long getRequestedCount() {
+
+        return requestedCount;
+    }
+
+    public long getWrittenCount() {
+
+        return writtenCount;
+    }
+
+    public long getCoalescedCount() {
+
+        return coalescedCount;
+    }
+
+    private void write(ChangedSign sign) {
+
+        try {
+            if(sign.flush())
+                writtenCount++;
+        } catch(Exception e) {
+            CraftBookBukkitUtil.printStacktrace(e);
+        }
+    }
+}
@@ -16,13 +16,41 @@
 
 package com.sk89q.craftbook.core.st;
 
+import com.sk89q.craftbook.bukkit.BukkitConfiguration;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 
 public class MechanicClock implements Runnable {
 
+    private int ticks = 0;
+
     @Override
     public void run() {
 
-        CraftBookPlugin.inst().getSelfTriggerManager().think();
+        BukkitConfiguration config = CraftBookPlugin.inst().getConfiguration();
+        SelfTriggeringManager manager = CraftBookPlugin.inst().getSelfTriggerManager();
+
+        if(config.stThinkBudget <= 0) {
+            manager.think();
+            return;
+        }
+
+        // With a think budget the clock runs every tick, so that unfinished work carries straight over to the next.
+        if(manager.getThinkBacklog() > 0) {
+            manager.think();
+        } else if(++ticks >= config.stThinkRate) {
+            ticks = 0;
+            manager.think();
+        }
+    }
+
+    /**
+     * Gets the period in ticks that this clock should be scheduled at.
+     *
+     * @param config The configuration
+     * @return The period in ticks
+     */
+    public static long getPeriod(BukkitConfiguration config) {
+
+        return config.stThinkBudget > 0 ? 1 : config.stThinkRate;
     }
 }
\ No newline at end of file
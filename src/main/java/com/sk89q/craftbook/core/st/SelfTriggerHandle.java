@@ -0,0 +1,17 @@
+package com.sk89q.craftbook.core.st;
+
+/**
+ * A handle given to the {@link SelfTriggeringManager} when registering a self-triggering mechanic, allowing the clock
+ * to call the mechanic directly rather than firing a {@link com.sk89q.craftbook.util.events.SelfTriggerThinkEvent}
+ * through the event bus.
+ */
+@FunctionalInterface
+public interface SelfTriggerHandle {
+
+    /**
+     * Causes the mechanic to think.
+     *
+     * @return If the mechanic was still present and handled the think. Returning false unregisters the mechanic.
+     */
+    boolean think();
+}
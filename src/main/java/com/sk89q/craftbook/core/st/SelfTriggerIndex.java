@@ -0,0 +1,268 @@
+package com.sk89q.craftbook.core.st;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.util.LocationUtil;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An on-disk index of the blocks that hold self-triggering mechanics, stored per region in each world's craftbook
+ * folder. This allows a chunk to register its mechanics on load without scanning every tile entity within it.
+ */
+public class SelfTriggerIndex {
+
+    private static final int MAGIC = 0x43425354;
+    private static final int VERSION = 1;
+
+    private final Map<UUID, Map<Long, RegionIndex>> regions = new HashMap<>();
+
+    /**
+     * The age in milliseconds after which a chunk is scanned again, or 0 to never expire.
+     */
+    private final long maxAge;
+
+    public SelfTriggerIndex(long maxAge) {
+
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Gets the indexed self-triggering blocks within the given chunk.
+     *
+     * @param chunk The chunk
+     * @return The packed block keys, or null if the chunk has not been indexed or the index is stale
+     */
+    public Set<Long> getIndexedBlocks(Chunk chunk) {
+
+        ChunkIndex index = getRegion(chunk.getWorld(), chunk.getX() >> 5, chunk.getZ() >> 5).chunks.get(LocationUtil.toChunkKey(chunk));
+        if(index == null || maxAge > 0 && System.currentTimeMillis() - index.scanned > maxAge)
+            return null;
+        return index.blocks;
+    }
+
+    /**
+     * Starts indexing the given chunk from scratch, discarding anything previously indexed within it.
+     *
+     * @param chunk The chunk
+     */
+    public void startScan(Chunk chunk) {
+
+        RegionIndex region = getRegion(chunk.getWorld(), chunk.getX() >> 5, chunk.getZ() >> 5);
+        region.chunks.put(LocationUtil.toChunkKey(chunk), new ChunkIndex(System.currentTimeMillis()));
+        region.dirty = true;
+    }
+
+    /**
+     * Forgets the given chunk, so that it is scanned in full the next time it loads.
+     *
+     * @param chunk The chunk
+     */
+    public void invalidate(Chunk chunk) {
+
+        RegionIndex region = getRegion(chunk.getWorld(), chunk.getX() >> 5, chunk.getZ() >> 5);
+        if(region.chunks.remove(LocationUtil.toChunkKey(chunk)) != null)
+            region.dirty = true;
+    }
+
+    /**
+     * Adds a self-triggering block to the index. This does nothing if the chunk has not been indexed yet, as it will
+     * be picked up when it is scanned.
+     *
+     * @param world The world
+     * @param blockKey The packed block key
+     */
+    public void add(World world, long blockKey) {
+
+        int chunkX = LocationUtil.getBlockKeyX(blockKey) >> 4;
+        int chunkZ = LocationUtil.getBlockKeyZ(blockKey) >> 4;
+        RegionIndex region = getRegion(world, chunkX >> 5, chunkZ >> 5);
+        ChunkIndex chunk = region.chunks.get(LocationUtil.toChunkKey(chunkX, chunkZ));
+        if(chunk != null && chunk.blocks.add(blockKey))
+            region.dirty = true;
+    }
+
+    /**
+     * Removes a block from the index.
+     *
+     * @param world The world
+     * @param blockKey The packed block key
+     */
+    public void remove(World world, long blockKey) {
+
+        int chunkX = LocationUtil.getBlockKeyX(blockKey) >> 4;
+        int chunkZ = LocationUtil.getBlockKeyZ(blockKey) >> 4;
+        RegionIndex region = getRegion(world, chunkX >> 5, chunkZ >> 5);
+        ChunkIndex chunk = region.chunks.get(LocationUtil.toChunkKey(chunkX, chunkZ));
+        if(chunk != null && chunk.blocks.remove(blockKey))
+            region.dirty = true;
+    }
+
+    /**
+     * Saves any changed regions of the given world to disk, and forgets the regions that are empty or no longer have
+     * any loaded chunks. Those are read again the next time they are needed.
+     *
+     * @param world The world
+     */
+    public void save(World world) {
+
+        Map<Long, RegionIndex> worldRegions = regions.get(world.getUID());
+        if(worldRegions == null) return;
+
+        Set<Long> loadedRegions = new HashSet<>();
+        for(Chunk chunk : world.getLoadedChunks())
+            loadedRegions.add(LocationUtil.toChunkKey(chunk.getX() >> 5, chunk.getZ() >> 5));
+
+        Iterator<Map.Entry<Long, RegionIndex>> iterator = worldRegions.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<Long, RegionIndex> entry = iterator.next();
+            RegionIndex region = entry.getValue();
+            if(region.dirty) {
+                try {
+                    region.save();
+                } catch (IOException e) {
+                    CraftBookPlugin.logger().warning("Failed to save self-triggered index " + region.file.getPath());
+                    CraftBookBukkitUtil.printStacktrace(e);
+                }
+            }
+            // Unsaved regions are kept so the changes are tried again on the next save.
+            if(!region.dirty && (region.chunks.isEmpty() || !loadedRegions.contains(entry.getKey())))
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Saves and forgets all regions of the given world.
+     *
+     * @param world The world
+     */
+    public void unload(World world) {
+
+        save(world);
+        regions.remove(world.getUID());
+    }
+
+    /**
+     * Saves all changed regions to disk.
+     */
+    public void save() {
+
+        for(World world : CraftBookPlugin.server().getWorlds())
+            save(world);
+    }
+
+    private RegionIndex getRegion(World world, int regionX, int regionZ) {
+
+        Map<Long, RegionIndex> worldRegions = regions.computeIfAbsent(world.getUID(), uid -> new HashMap<>());
+        long key = LocationUtil.toChunkKey(regionX, regionZ);
+        RegionIndex region = worldRegions.get(key);
+        if(region == null) {
+            File folder = new File(new File(world.getWorldFolder(), "craftbook"), "st-index");
+            region = new RegionIndex(new File(folder, "r." + regionX + '.' + regionZ + ".idx"));
+            try {
+                region.load();
+            } catch (IOException e) {
+                // A broken index is no worse than a missing one, the chunks just get scanned again.
+                CraftBookPlugin.logger().warning("Failed to read self-triggered index " + region.file.getPath() + ", it will be rebuilt.");
+                region.chunks.clear();
+                region.dirty = true;
+            }
+            worldRegions.put(key, region);
+        }
+        return region;
+    }
+
+    private static final class RegionIndex {
+
+        private final File file;
+        private final Map<Long, ChunkIndex> chunks = new HashMap<>();
+        private boolean dirty;
+
+        RegionIndex(File file) {
+
+            this.file = file;
+        }
+
+        void load() throws IOException {
+
+            if(!file.exists()) return;
+
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    dirty = true;
+                    return;
+                }
+                int chunkCount = in.readInt();
+                for(int i = 0; i < chunkCount; i++) {
+                    int chunkX = in.readInt();
+                    int chunkZ = in.readInt();
+                    ChunkIndex chunk = new ChunkIndex(in.readLong());
+                    int blockCount = in.readInt();
+                    for(int j = 0; j < blockCount; j++) {
+                        // Blocks are stored relative to their chunk, as (y << 8 | z << 4 | x).
+                        int packed = in.readInt();
+                        chunk.blocks.add(LocationUtil.toBlockKey((chunkX << 4) + (packed & 15), packed >> 8, (chunkZ << 4) + (packed >> 4 & 15)));
+                    }
+                    chunks.put(LocationUtil.toChunkKey(chunkX, chunkZ), chunk);
+                }
+            }
+        }
+
+        void save() throws IOException {
+
+            if(chunks.isEmpty()) {
+                if(file.exists() && !file.delete())
+                    throw new IOException("Failed to delete " + file.getName());
+                dirty = false;
+                return;
+            }
+
+            file.getParentFile().mkdirs();
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(chunks.size());
+                for(Map.Entry<Long, ChunkIndex> entry : chunks.entrySet()) {
+                    out.writeInt(LocationUtil.getChunkKeyX(entry.getKey()));
+                    out.writeInt(LocationUtil.getChunkKeyZ(entry.getKey()));
+                    out.writeLong(entry.getValue().scanned);
+                    out.writeInt(entry.getValue().blocks.size());
+                    for(long key : entry.getValue().blocks)
+                        out.writeInt(LocationUtil.getBlockKeyY(key) << 8 | (LocationUtil.getBlockKeyZ(key) & 15) << 4 | LocationUtil.getBlockKeyX(key) & 15);
+                }
+            }
+
+            if(file.exists() && !file.delete() || !temp.renameTo(file))
+                throw new IOException("Failed to replace " + file.getName());
+            dirty = false;
+        }
+    }
+
+    private static final class ChunkIndex {
+
+        private final long scanned;
+        private final Set<Long> blocks = new HashSet<>();
+
+        ChunkIndex(long scanned) {
+
+            this.scanned = scanned;
+        }
+    }
+}
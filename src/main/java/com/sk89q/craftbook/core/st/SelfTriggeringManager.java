@@ -2,7 +2,9 @@ package com.sk89q.craftbook.core.st;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.core.timings.Timings;
 import com.sk89q.craftbook.util.EventUtil;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.events.SelfTriggerPingEvent;
 import com.sk89q.craftbook.util.events.SelfTriggerThinkEvent;
 import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent;
@@ -10,6 +12,8 @@ import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent.UnregisterReas
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
 import org.bukkit.event.EventHandler;
@@ -17,26 +21,85 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.logging.Level;
 
 public class SelfTriggeringManager implements Listener {
 
     /**
-     * List of mechanics that think on a routine basis.
+     * Mechanics that think on a routine basis, bucketed by world and then by chunk. Blocks are keyed by their packed
+     * coordinates, so chunk load and unload only ever touch the mechanics within that chunk.
      */
-    private final Collection<Location> thinkingMechanics = new HashSet<>();
+    private final Map<UUID, Map<Long, Map<Long, SelfTriggerEntry>>> registry = new HashMap<>();
+
+    /**
+     * Mechanics that think on a routine basis, in the order they think. Unregistered entries are only flagged, and are
+     * swept out at the start of the next think.
+     */
+    private final List<SelfTriggerEntry> thinkingMechanics = new ArrayList<>();
+
+    private int registeredCount = 0;
+    private int removedCount = 0;
+
+    /**
+     * The index of the next mechanic to think in the current cycle. A cycle may span multiple ticks when a think
+     * budget is set.
+     */
+    private int cursor = 0;
+    private int cycleTicks = 0;
+    private int lastCycleTicks = 1;
+
+    /**
+     * The on-disk index of self-triggering blocks, or null if chunks should always be scanned in full.
+     */
+    private final SelfTriggerIndex index;
+
+    public SelfTriggeringManager() {
+
+        if(CraftBookPlugin.inst().getConfiguration().stChunkIndex)
+            index = new SelfTriggerIndex(CraftBookPlugin.inst().getConfiguration().stChunkIndexMaxAge * 60L * 60L * 1000L);
+        else
+            index = null;
+    }
 
     public void registerSelfTrigger(Chunk chunk) {
         if (!chunk.getWorld().isChunkLoaded(chunk))
             return;
+        Map<Long, SelfTriggerEntry> registered = getChunkBucket(chunk.getWorld(), LocationUtil.toChunkKey(chunk));
+        // Names still need converting on every sign, so always scan in full while that is enabled.
+        if(index != null && !CraftBookPlugin.inst().getConfiguration().convertNamesToCBID) {
+            Set<Long> indexed = index.getIndexedBlocks(chunk);
+            if(indexed != null) {
+                World world = chunk.getWorld();
+                for(long key : indexed.toArray(new Long[indexed.size()])) {
+                    if(registered != null && registered.containsKey(key)) continue;
+                    SelfTriggerPingEvent event = new SelfTriggerPingEvent(world.getBlockAt(LocationUtil.getBlockKeyX(key), LocationUtil.getBlockKeyY(key), LocationUtil.getBlockKeyZ(key)));
+                    Bukkit.getServer().getPluginManager().callEvent(event);
+                    // Nothing picked it up, so the mechanic is gone.
+                    Map<Long, SelfTriggerEntry> bucket = getChunkBucket(world, LocationUtil.toChunkKey(chunk));
+                    if(bucket == null || !bucket.containsKey(key))
+                        index.remove(world, key);
+                }
+                return;
+            }
+            index.startScan(chunk);
+            if(registered != null)
+                for(long key : registered.keySet())
+                    index.add(chunk.getWorld(), key);
+        }
         try {
             for(BlockState state : chunk.getTileEntities()) {
                 if(!(state instanceof Sign)) continue;
-                if(thinkingMechanics.contains(state.getLocation())) continue;
+                if(registered != null && registered.containsKey(LocationUtil.toBlockKey(state.getX(), state.getY(), state.getZ()))) continue;
                 SelfTriggerPingEvent event = new SelfTriggerPingEvent(state.getBlock());
                 Bukkit.getServer().getPluginManager().callEvent(event);
             }
@@ -44,80 +107,235 @@ public class SelfTriggeringManager implements Listener {
             Bukkit.getLogger().warning("A corrupt tile entity was found in the chunk: (world: " + chunk.getWorld().getName() + " x: " + chunk.getX() + " z: " + chunk.getZ() + ") Self-Triggering mechanics may not work here until the issue is resolved.");
             if(CraftBookPlugin.inst().getConfiguration().debugMode)
                 CraftBookBukkitUtil.printStacktrace(e);
+            if(index != null)
+                index.invalidate(chunk);
         }
     }
 
+    /**
+     * Registers a self-triggering mechanic that thinks through the {@link SelfTriggerThinkEvent}.
+     *
+     * @param location The location of the mechanic
+     */
     public void registerSelfTrigger(Location location) {
 
-        if(thinkingMechanics.contains(location)) return;
-        hasChanged = true;
-        thinkingMechanics.add(location);
+        registerSelfTrigger(location, null);
     }
 
-    public void unregisterSelfTrigger(Location location, UnregisterReason reason) {
+    /**
+     * Registers a self-triggering mechanic that the clock calls directly through the given handle. If the mechanic is
+     * already registered, its handle is replaced.
+     *
+     * @param location The location of the mechanic
+     * @param handle The think handle, or null to think through the {@link SelfTriggerThinkEvent}
+     */
+    public void registerSelfTrigger(Location location, SelfTriggerHandle handle) {
 
-        if(thinkingMechanics.isEmpty()) return; //Skip the checks this round. Save a little CPU with the array creation.
+        registerSelfTrigger(location, handle, 1);
+    }
 
-        if(!thinkingMechanics.contains(location)) return;
-        SelfTriggerUnregisterEvent event = new SelfTriggerUnregisterEvent(location.getBlock(), reason);
-        Bukkit.getServer().getPluginManager().callEvent(event);
-        if(!event.isCancelled()) {
-            hasChanged = true;
-            thinkingMechanics.remove(location);
-            CraftBookPlugin.logDebugMessage("Unregistered ST at: " + location.toString() + " for reason: " + reason.name(), "st.unregister");
+    /**
+     * Registers a self-triggering mechanic that the clock calls directly through the given handle, at most once every
+     * given amount of think cycles. If the mechanic is already registered, its handle and interval are replaced.
+     *
+     * @param location The location of the mechanic
+     * @param handle The think handle, or null to think through the {@link SelfTriggerThinkEvent}
+     * @param thinkInterval The minimum amount of think cycles between each think
+     */
+    public void registerSelfTrigger(Location location, SelfTriggerHandle handle, int thinkInterval) {
+
+        long key = LocationUtil.toBlockKey(location);
+        Map<Long, SelfTriggerEntry> bucket = registry.computeIfAbsent(location.getWorld().getUID(), uid -> new HashMap<>())
+                .computeIfAbsent(LocationUtil.getChunkKey(key), chunkKey -> new HashMap<>());
+
+        SelfTriggerEntry entry = bucket.get(key);
+        if(entry != null) {
+            if(handle != null) {
+                entry.handle = handle;
+                entry.thinkInterval = Math.max(1, thinkInterval);
+            }
+            return;
         }
+
+        entry = new SelfTriggerEntry(location.getWorld(), key, handle, Math.max(1, thinkInterval));
+        bucket.put(key, entry);
+        thinkingMechanics.add(entry);
+        registeredCount++;
+        if(index != null)
+            index.add(location.getWorld(), key);
+    }
+
+    public void unregisterSelfTrigger(Location location, UnregisterReason reason) {
+
+        if(registeredCount == 0) return;
+
+        long key = LocationUtil.toBlockKey(location);
+        Map<Long, SelfTriggerEntry> bucket = getChunkBucket(location.getWorld(), LocationUtil.getChunkKey(key));
+        if(bucket == null) return;
+
+        SelfTriggerEntry entry = bucket.get(key);
+        if(entry != null)
+            unregisterSelfTrigger(entry, reason);
     }
 
     public void unregisterSelfTrigger(Chunk chunk) {
 
-        if(thinkingMechanics.isEmpty()) return; //Skip the checks this round. Save a little CPU with the array creation.
+        if(registeredCount == 0) return;
+
+        Map<Long, SelfTriggerEntry> bucket = getChunkBucket(chunk.getWorld(), LocationUtil.toChunkKey(chunk));
+        if(bucket == null) return;
 
-        if(hasChanged || registeredLocations == null) {
-            registeredLocations = thinkingMechanics.toArray(new Location[thinkingMechanics.size()]);
+        for(SelfTriggerEntry entry : bucket.values().toArray(new SelfTriggerEntry[bucket.size()]))
+            unregisterSelfTrigger(entry, UnregisterReason.UNLOAD);
+    }
+
+    private void unregisterSelfTrigger(SelfTriggerEntry entry, UnregisterReason reason) {
+
+        if(entry.removed) return;
+
+        SelfTriggerUnregisterEvent event = new SelfTriggerUnregisterEvent(entry.getBlock(), reason);
+        Bukkit.getServer().getPluginManager().callEvent(event);
+        if(!event.isCancelled()) {
+            remove(entry);
+            // Unloaded mechanics are still there, they just aren't thinking.
+            if(index != null && reason != UnregisterReason.UNLOAD)
+                index.remove(entry.world, entry.key);
+            CraftBookPlugin.logDebugMessage("Unregistered ST at: " + entry.getLocation().toString() + " for reason: " + reason.name(), "st.unregister");
         }
+    }
 
-        for (Location location : registeredLocations) {
-            if(location.getChunk().equals(chunk))
-                unregisterSelfTrigger(location, UnregisterReason.UNLOAD);
+    private void remove(SelfTriggerEntry entry) {
+
+        Map<Long, Map<Long, SelfTriggerEntry>> chunks = registry.get(entry.world.getUID());
+        if(chunks != null) {
+            long chunkKey = LocationUtil.getChunkKey(entry.key);
+            Map<Long, SelfTriggerEntry> bucket = chunks.get(chunkKey);
+            if(bucket != null && bucket.remove(entry.key) != null && bucket.isEmpty()) {
+                chunks.remove(chunkKey);
+                if(chunks.isEmpty())
+                    registry.remove(entry.world.getUID());
+            }
         }
+
+        entry.removed = true;
+        registeredCount--;
+        removedCount++;
+    }
+
+    private Map<Long, SelfTriggerEntry> getChunkBucket(World world, long chunkKey) {
+
+        Map<Long, Map<Long, SelfTriggerEntry>> chunks = registry.get(world.getUID());
+        return chunks == null ? null : chunks.get(chunkKey);
     }
 
     public Collection<Location> getSelfTriggeringMechanics() {
 
-        return new ArrayList<>(thinkingMechanics);
+        List<Location> locations = new ArrayList<>(registeredCount);
+        for(SelfTriggerEntry entry : thinkingMechanics)
+            if(!entry.removed)
+                locations.add(entry.getLocation());
+        return locations;
     }
 
-    private Location[] registeredLocations;
-    private boolean hasChanged = false;
+    /**
+     * Gets the amount of currently registered self-triggering mechanics.
+     *
+     * @return The amount of mechanics
+     */
+    public int getSelfTriggeringMechanicCount() {
+
+        return registeredCount;
+    }
 
     /**
-     * Causes all thinking mechanics to think.
+     * Gets the amount of mechanics that are still waiting to think in the current cycle. This is only ever above 0
+     * between ticks when the think budget has been exceeded.
+     *
+     * @return The amount of mechanics waiting to think
+     */
+    public int getThinkBacklog() {
+
+        return cursor == 0 ? 0 : thinkingMechanics.size() - cursor;
+    }
+
+    /**
+     * Gets the amount of clock ticks that the last complete think cycle took. A value of 1 means that every mechanic
+     * is thinking on time, anything above that is how many ticks the clock is behind.
+     *
+     * @return The length of the last cycle, in clock ticks
+     */
+    public int getLastCycleLength() {
+
+        return lastCycleTicks;
+    }
+
+    /**
+     * Causes all thinking mechanics to think. If a think budget is set, this stops once the budget runs out and picks
+     * up where it left off on the next call.
      */
     public void think() {
 
-        if(thinkingMechanics.isEmpty()) return; //Skip the checks this round. Save a little CPU with the array creation.
+        if(registeredCount == 0) { //Skip the checks this round.
+            cursor = 0;
+            return;
+        }
 
-        if(hasChanged || registeredLocations == null) {
-            registeredLocations = thinkingMechanics.toArray(new Location[thinkingMechanics.size()]);
+        if(cursor == 0) {
+            // Entries can only be swept between cycles, as removing them moves the cursor.
+            if(removedCount > 0) {
+                thinkingMechanics.removeIf(entry -> entry.removed);
+                removedCount = 0;
+            }
+            cycleTicks = 0;
         }
+        cycleTicks++;
+
+        boolean thinkEvents = CraftBookPlugin.inst().getConfiguration().stThinkEvents;
+        Timings timings = CraftBookPlugin.inst().getTimings();
+        long budget = CraftBookPlugin.inst().getConfiguration().stThinkBudget * 1000L;
+        long deadline = budget > 0 ? System.nanoTime() + budget : 0;
 
-        for (Location location : registeredLocations) {
-            if(!location.getWorld().isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
-                unregisterSelfTrigger(location, UnregisterReason.UNLOAD);
+        // Mechanics registered while thinking are picked up next round.
+        int count = thinkingMechanics.size();
+        int start = cursor;
+        while (cursor < count) {
+            // Always make some progress, even if a single mechanic takes longer than the budget.
+            if(budget > 0 && cursor > start && System.nanoTime() >= deadline)
+                return;
+            SelfTriggerEntry entry = thinkingMechanics.get(cursor++);
+            if(entry.removed) continue;
+            if(entry.thinkInterval > 1 && ++entry.skippedCycles < entry.thinkInterval) continue;
+            entry.skippedCycles = 0;
+            if(!entry.world.isChunkLoaded(LocationUtil.getBlockKeyX(entry.key) >> 4, LocationUtil.getBlockKeyZ(entry.key) >> 4)) {
+                unregisterSelfTrigger(entry, UnregisterReason.UNLOAD);
                 continue;
             }
             try {
-                SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(location.getBlock());
-                Bukkit.getServer().getPluginManager().callEvent(event);
-                if(!event.isHandled()) {
-                    unregisterSelfTrigger(location, UnregisterReason.NOT_HANDLED);
+                boolean handled;
+                if(entry.handle != null && !thinkEvents) {
+                    if(timings != null) {
+                        long thinkStart = System.nanoTime();
+                        handled = entry.handle.think();
+                        timings.getMechanicTiming(entry.handle.getClass()).record(System.nanoTime() - thinkStart);
+                    } else
+                        handled = entry.handle.think();
+                } else {
+                    SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(entry.getBlock());
+                    Bukkit.getServer().getPluginManager().callEvent(event);
+                    handled = event.isHandled();
+                }
+                if(!handled) {
+                    unregisterSelfTrigger(entry, UnregisterReason.NOT_HANDLED);
                 }
             } catch (Throwable t) { // Mechanic failed to think for some reason
-                CraftBookPlugin.logger().log(Level.WARNING, "CraftBook mechanic: Failed to think for " + location.toString());
+                CraftBookPlugin.logger().log(Level.WARNING, "CraftBook mechanic: Failed to think for " + entry.getLocation().toString());
                 CraftBookBukkitUtil.printStacktrace(t);
-                unregisterSelfTrigger(location, UnregisterReason.ERROR);
+                unregisterSelfTrigger(entry, UnregisterReason.ERROR);
             }
         }
+
+        cursor = 0;
+        lastCycleTicks = cycleTicks;
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -137,4 +355,70 @@ public class SelfTriggeringManager implements Listener {
 
         unregisterSelfTrigger(event.getChunk());
     }
-}
\ No newline at end of file
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldSave(WorldSaveEvent event) {
+
+        if(index != null)
+            index.save(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        if(index != null)
+            index.unload(event.getWorld());
+
+        Map<Long, Map<Long, SelfTriggerEntry>> chunks = registry.remove(event.getWorld().getUID());
+        if(chunks == null) return;
+
+        for(Map<Long, SelfTriggerEntry> bucket : chunks.values()) {
+            for(SelfTriggerEntry entry : bucket.values()) {
+                entry.removed = true;
+                registeredCount--;
+                removedCount++;
+            }
+        }
+    }
+
+    /**
+     * Saves the self-triggering index to disk. This should be called when the manager is being replaced or the plugin
+     * is disabled.
+     */
+    public void save() {
+
+        if(index != null)
+            index.save();
+    }
+
+    /**
+     * A single registered self-triggering mechanic.
+     */
+    private static final class SelfTriggerEntry {
+
+        private final World world;
+        private final long key;
+        private SelfTriggerHandle handle;
+        private int thinkInterval;
+        private int skippedCycles;
+        private boolean removed;
+
+        SelfTriggerEntry(World world, long key, SelfTriggerHandle handle, int thinkInterval) {
+
+            this.world = world;
+            this.key = key;
+            this.handle = handle;
+            this.thinkInterval = thinkInterval;
+        }
+
+        Block getBlock() {
+
+            return world.getBlockAt(LocationUtil.getBlockKeyX(key), LocationUtil.getBlockKeyY(key), LocationUtil.getBlockKeyZ(key));
+        }
+
+        Location getLocation() {
+
+            return new Location(world, LocationUtil.getBlockKeyX(key), LocationUtil.getBlockKeyY(key), LocationUtil.getBlockKeyZ(key));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.sk89q.craftbook.core.timings;
+
+/**
+ * A histogram of durations in nanoseconds. Durations are bucketed by their highest bits, four buckets per power of
+ * two, so recording is constant time and percentiles are accurate to within about 25%.
+ */
+public class TimingHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] buckets = new long[64 * SUB_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Records a single duration.
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+
+        if(nanos < 0) nanos = 0;
+        buckets[getBucket(nanos)]++;
+        count++;
+        total += nanos;
+        if(nanos > max)
+            max = nanos;
+    }
+
+    /**
+     * Clears all recorded durations.
+     */
+    public void reset() {
+
+        for(int i = 0; i < buckets.length; i++)
+            buckets[i] = 0;
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+
+        return count;
+    }
+
+    public long getTotal() {
+
+        return total;
+    }
+
+    public long getMax() {
+
+        return max;
+    }
+
+    public long getMean() {
+
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * Gets the duration that the given fraction of recorded durations are at or below.
+     *
+     * @param fraction The fraction, such as 0.99 for the 99th percentile
+     * @return The duration in nanoseconds
+     */
+    public long getPercentile(double fraction) {
+
+        if(count == 0) return 0;
+
+        long target = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for(int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if(seen >= target)
+                return Math.min(getBucketUpperBound(i), max);
+        }
+        return max;
+    }
+
+    static int getBucket(long nanos) {
+
+        if(nanos < SUB_BUCKETS) return (int) nanos;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long getBucketUpperBound(int bucket) {
+
+        if(bucket < SUB_BUCKETS) return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,307 @@
+package com.sk89q.craftbook.core.timings;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.util.LocationUtil;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Records how long each mechanic and IC spends running, for finding out what is using up tick time.
+ */
+public class Timings {
+
+    private final Map<String, TimingHistogram> mechanics = new TreeMap<>();
+    private final Map<Class<?>, TimingHistogram> mechanicsByClass = new HashMap<>();
+    private final Map<String, TimingHistogram> ics = new TreeMap<>();
+    private final Map<UUID, Map<Long, LocationTiming>> locations = new HashMap<>();
+
+    private long started = System.currentTimeMillis();
+
+    /**
+     * Registers the event handlers of a listener, timing every event they handle under the name of the listener.
+     *
+     * @param listener The listener
+     * @param plugin The plugin to register them for
+     */
+    public void registerEvents(Listener listener, Plugin plugin) {
+
+        TimingHistogram timing = getMechanicTiming(listener.getClass());
+        for(Map.Entry<Class<? extends Event>, Set<RegisteredListener>> entry : plugin.getPluginLoader().createRegisteredListeners(listener, plugin).entrySet()) {
+            HandlerList handlers = getHandlerList(entry.getKey());
+            for(RegisteredListener registered : entry.getValue())
+                handlers.register(new TimedListener(registered, timing));
+        }
+    }
+
+    /**
+     * Gets the timing for a mechanic, creating it if needed.
+     *
+     * @param name The name of the mechanic
+     * @return The timing
+     */
+    public TimingHistogram getMechanicTiming(String name) {
+
+        return mechanics.computeIfAbsent(name, key -> new TimingHistogram());
+    }
+
+    /**
+     * Gets the timing for a mechanic from the class that implements it. Inner and lambda classes are counted towards
+     * the class they are declared in.
+     *
+     * @param type The mechanic class
+     * @return The timing
+     */
+    public TimingHistogram getMechanicTiming(Class<?> type) {
+
+        TimingHistogram timing = mechanicsByClass.get(type);
+        if(timing == null) {
+            String name = type.getName();
+            if(name.indexOf('$') >= 0)
+                name = name.substring(0, name.indexOf('$'));
+            timing = getMechanicTiming(name.substring(name.lastIndexOf('.') + 1));
+            mechanicsByClass.put(type, timing);
+        }
+        return timing;
+    }
+
+    /**
+     * Records the time an IC took to trigger or think.
+     *
+     * @param id The ID of the IC
+     * @param block The sign block of the IC
+     * @param nanos The duration in nanoseconds
+     */
+    public void recordIC(String id, Block block, long nanos) {
+
+        ics.computeIfAbsent(id, key -> new TimingHistogram()).record(nanos);
+
+        long key = LocationUtil.toBlockKey(block);
+        LocationTiming location = locations.computeIfAbsent(block.getWorld().getUID(), uid -> new HashMap<>())
+                .computeIfAbsent(key, k -> new LocationTiming(block.getWorld().getUID(), k, id));
+        location.count++;
+        location.total += nanos;
+    }
+
+    /**
+     * Clears all recorded timings.
+     */
+    public void reset() {
+
+        // Registered listeners hold on to their histograms, so those are cleared rather than replaced.
+        for(TimingHistogram timing : mechanics.values())
+            timing.reset();
+        ics.clear();
+        locations.clear();
+        started = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets how long timings have been recording for.
+     *
+     * @return The time in milliseconds
+     */
+    public long getRecordingTime() {
+
+        return System.currentTimeMillis() - started;
+    }
+
+    public Map<String, TimingHistogram> getMechanicTimings() {
+
+        return mechanics;
+    }
+
+    public Map<String, TimingHistogram> getICTimings() {
+
+        return ics;
+    }
+
+    /**
+     * Gets the IC locations that have taken the most time in total.
+     *
+     * @param amount The amount of locations to get
+     * @return The locations, slowest first
+     */
+    public List<LocationTiming> getHottestLocations(int amount) {
+
+        List<LocationTiming> hottest = new ArrayList<>();
+        for(Map<Long, LocationTiming> world : locations.values())
+            hottest.addAll(world.values());
+        hottest.sort((a, b) -> Long.compare(b.total, a.total));
+        return hottest.size() > amount ? new ArrayList<>(hottest.subList(0, amount)) : hottest;
+    }
+
+    /**
+     * Writes all timings to the given file as JSON.
+     *
+     * @param file The file
+     * @param hottest The amount of IC locations to include
+     * @throws IOException If the file could not be written
+     */
+    public void writeJson(File file, int hottest) throws IOException {
+
+        try(PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("{");
+            out.println("  \"recording-ms\": " + getRecordingTime() + ',');
+            out.println("  \"mechanics\": {");
+            writeTimings(out, mechanics);
+            out.println("  },");
+            out.println("  \"ics\": {");
+            writeTimings(out, ics);
+            out.println("  },");
+            out.println("  \"hottest-ics\": [");
+            List<LocationTiming> locations = getHottestLocations(hottest);
+            for(int i = 0; i < locations.size(); i++) {
+                LocationTiming location = locations.get(i);
+                out.print("    {\"id\": " + quote(location.id) + ", \"world\": " + quote(location.getWorldName())
+                        + ", \"x\": " + location.getX() + ", \"y\": " + location.getY() + ", \"z\": " + location.getZ()
+                        + ", \"calls\": " + location.count + ", \"total-ns\": " + location.total + '}');
+                out.println(i < locations.size() - 1 ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    private static void writeTimings(PrintWriter out, Map<String, TimingHistogram> timings) {
+
+        int i = 0;
+        for(Map.Entry<String, TimingHistogram> entry : timings.entrySet()) {
+            TimingHistogram timing = entry.getValue();
+            out.print("    " + quote(entry.getKey()) + ": {\"calls\": " + timing.getCount() + ", \"total-ns\": " + timing.getTotal()
+                    + ", \"mean-ns\": " + timing.getMean() + ", \"p99-ns\": " + timing.getPercentile(0.99) + ", \"max-ns\": " + timing.getMax() + '}');
+            out.println(++i < timings.size() ? "," : "");
+        }
+    }
+
+    private static String quote(String value) {
+
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for(char c : value.toCharArray()) {
+            if(c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if(c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+
+    private static HandlerList getHandlerList(Class<? extends Event> type) {
+
+        Class<?> clazz = type;
+        while(clazz != null && Event.class.isAssignableFrom(clazz)) {
+            try {
+                Method method = clazz.getDeclaredMethod("getHandlerList");
+                method.setAccessible(true);
+                return (HandlerList) method.invoke(null);
+            } catch (NoSuchMethodException e) {
+                clazz = clazz.getSuperclass();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Unable to get the handler list of " + type.getName(), e);
+            }
+        }
+        throw new IllegalArgumentException("Unable to find the handler list of " + type.getName());
+    }
+
+    /**
+     * The total time spent by the IC at a single location.
+     */
+    public static final class LocationTiming {
+
+        private final UUID world;
+        private final long key;
+        private final String id;
+        private long count;
+        private long total;
+
+        LocationTiming(UUID world, long key, String id) {
+
+            this.world = world;
+            this.key = key;
+            this.id = id;
+        }
+
+        public String getId() {
+
+            return id;
+        }
+
+        public String getWorldName() {
+
+            World bukkitWorld = CraftBookPlugin.server().getWorld(world);
+            return bukkitWorld == null ? world.toString() : bukkitWorld.getName();
+        }
+
+        public int getX() {
+
+            return LocationUtil.getBlockKeyX(key);
+        }
+
+        public int getY() {
+
+            return LocationUtil.getBlockKeyY(key);
+        }
+
+        public int getZ() {
+
+            return LocationUtil.getBlockKeyZ(key);
+        }
+
+        public long getCount() {
+
+            return count;
+        }
+
+        public long getTotal() {
+
+            return total;
+        }
+    }
+
+    /**
+     * Wraps a registered event handler, timing each call.
+     */
+    private static final class TimedListener extends RegisteredListener {
+
+        private final RegisteredListener delegate;
+        private final TimingHistogram timing;
+
+        TimedListener(RegisteredListener delegate, TimingHistogram timing) {
+
+            super(delegate.getListener(), null, delegate.getPriority(), delegate.getPlugin(), delegate.isIgnoringCancelled());
+            this.delegate = delegate;
+            this.timing = timing;
+        }
+
+        @Override
+        public void callEvent(Event event) throws EventException {
+
+            long start = System.nanoTime();
+            try {
+                delegate.callEvent(event);
+            } finally {
+                timing.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
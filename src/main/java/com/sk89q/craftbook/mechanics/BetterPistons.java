@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.BlockSyntax;
@@ -43,12 +44,13 @@ import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Vector;
 
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
-public class BetterPistons extends AbstractCraftBookMechanic {
+public class BetterPistons extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     protected static BetterPistons instance;
 
@@ -495,4 +497,10 @@ public class BetterPistons extends AbstractCraftBookMechanic {
         config.setComment(path + "bounce-max-velocity", "The maximum velocity bounce pistons can provide.");
         pistonBounceMaxVelocity = config.getDouble(path + "bounce-max-velocity", 5.0);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return EnumSet.of(Material.PISTON, Material.STICKY_PISTON);
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.sk89q.craftbook.mechanics;
 
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
@@ -12,13 +13,17 @@ import org.bukkit.event.world.ChunkUnloadEvent;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
 
-public class ChunkAnchor extends AbstractCraftBookMechanic {
+import java.util.EnumSet;
+import java.util.Set;
+
+public class ChunkAnchor extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
@@ -112,4 +117,10 @@ public class ChunkAnchor extends AbstractCraftBookMechanic {
         config.setComment(path + "check-chunks", "On creation, check the chunk for already existing chunk anchors.");
         checkChunks = config.getBoolean(path + "check-chunks", true);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return allowRedstone ? EnumSet.of(Material.SIGN, Material.WALL_SIGN) : EnumSet.noneOf(Material.class);
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.sk89q.craftbook.CraftBookPlayer;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
@@ -11,6 +12,7 @@ import org.bukkit.event.block.SignChangeEvent;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.BukkitCraftBookPlayer;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.util.BlockUtil;
@@ -22,7 +24,10 @@ import com.sk89q.craftbook.util.events.SignClickEvent;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
 
-public class CommandSigns extends AbstractCraftBookMechanic {
+import java.util.EnumSet;
+import java.util.Set;
+
+public class CommandSigns extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
@@ -121,4 +126,10 @@ public class CommandSigns extends AbstractCraftBookMechanic {
         config.setComment(path + "allow-redstone", "Enable CommandSigns via redstone.");
         allowRedstone = config.getBoolean(path + "allow-redstone", true);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return allowRedstone ? EnumSet.of(Material.SIGN, Material.WALL_SIGN) : EnumSet.noneOf(Material.class);
+    }
 }
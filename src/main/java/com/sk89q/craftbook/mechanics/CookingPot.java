@@ -3,6 +3,7 @@ package com.sk89q.craftbook.mechanics;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.EventUtil;
@@ -24,10 +25,12 @@ import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-public class CookingPot extends AbstractCraftBookMechanic {
+public class CookingPot extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
@@ -50,7 +53,7 @@ public class CookingPot extends AbstractCraftBookMechanic {
         event.setLine(3, cookingPotFuel ? "0" : "1");
         player.print("mech.cook.create");
 
-        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(event.getBlock().getLocation());
+        registerSelfTrigger(event.getBlock());
     }
 
     private HashSet<String> cookingSet = new HashSet<>();
@@ -73,7 +76,7 @@ public class CookingPot extends AbstractCraftBookMechanic {
             cookingSet.add(event.getBlock().getChunk().getX() + ";" + event.getBlock().getChunk().getZ());
         }
 
-        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(event.getBlock().getLocation());
+        registerSelfTrigger(event.getBlock());
     }
 
     @EventHandler
@@ -88,19 +91,44 @@ public class CookingPot extends AbstractCraftBookMechanic {
 
         if(!EventUtil.passesFilter(event)) return;
 
-        if(!SignUtil.isSign(event.getBlock())) return;
+        if(think(event.getBlock()))
+            event.setHandled(true);
+    }
 
-        ChangedSign sign = CraftBookBukkitUtil.toChangedSign(event.getBlock());
+    /**
+     * Registers the cooking pot at the given sign with the self-trigger manager.
+     *
+     * @param block The sign block
+     */
+    private void registerSelfTrigger(final Block block) {
+
+        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation(), () -> {
+            // Thinks the same way as through the event, so that it goes through the same filter.
+            SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(block);
+            onThink(event);
+            return event.isHandled();
+        });
+    }
 
-        if(!sign.getLine(1).equals("[Cook]")) return;
+    /**
+     * Causes the cooking pot at the given sign to think.
+     *
+     * @param block The sign block
+     * @return If the block is still a cooking pot
+     */
+    private boolean think(Block block) {
+
+        if(!SignUtil.isSign(block)) return false;
+
+        ChangedSign sign = CraftBookBukkitUtil.toChangedSign(block);
 
-        event.setHandled(true);
+        if(!sign.getLine(1).equals("[Cook]")) return false;
 
         if(cookingPotHeating && sign.getLine(0).equals("HEATING")) {
 
             //So it's waiting.
             if(CraftBookPlugin.inst().getRandom().nextInt(200) != 0)
-                return;
+                return true;
             sign.setLine(0, "");
         }
 
@@ -112,7 +140,7 @@ public class CookingPot extends AbstractCraftBookMechanic {
             sign.setLine(2, String.valueOf(0));
         }
         oldTick = lastTick;
-        Block b = SignUtil.getBackBlock(event.getBlock());
+        Block b = SignUtil.getBackBlock(block);
         Block cb = b.getRelative(0, 2, 0);
         if (cb.getType() == Material.CHEST) {
             Block fire = b.getRelative(0, 1, 0);
@@ -131,7 +159,7 @@ public class CookingPot extends AbstractCraftBookMechanic {
                         sign.setLine(0, "HEATING");
                         sign.update(false);
                     }
-                    return;
+                    return true;
                 }
 
                 if(lastTick < 500) {
@@ -171,6 +199,8 @@ public class CookingPot extends AbstractCraftBookMechanic {
             sign.setLine(2, String.valueOf(lastTick));
             sign.update(false);
         }
+
+        return true;
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -184,7 +214,7 @@ public class CookingPot extends AbstractCraftBookMechanic {
 
         if(!sign.getLine(1).equals("[Cook]")) return;
 
-        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(event.getClickedBlock().getLocation());
+        registerSelfTrigger(event.getClickedBlock());
 
         CraftBookPlayer p = CraftBookPlugin.inst().wrapPlayer(event.getPlayer());
 
@@ -258,7 +288,7 @@ public class CookingPot extends AbstractCraftBookMechanic {
 
         if(!sign.getLine(1).equals("[Cook]")) return;
 
-        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(event.getBlock().getLocation());
+        registerSelfTrigger(event.getBlock());
 
         if (event.isOn() && !event.isMinor())
             increaseMultiplier(sign, event.getNewCurrent() - event.getOldCurrent());
@@ -355,4 +385,10 @@ public class CookingPot extends AbstractCraftBookMechanic {
 
         cookingPotChunkLimit = config.getBoolean(path + "chunk-limit", false);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return cookingPotAllowRedstone ? EnumSet.of(Material.SIGN, Material.WALL_SIGN) : EnumSet.noneOf(Material.class);
+    }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ package com.sk89q.craftbook.mechanics;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.BukkitCraftBookPlayer;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
@@ -53,9 +54,11 @@ import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -64,7 +67,7 @@ import java.util.UUID;
  * @author sk89q
  * @author hash
  */
-public class Elevator extends AbstractCraftBookMechanic {
+public class Elevator extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     private HashSet<UUID> flyingPlayers;
 
@@ -541,4 +544,15 @@ public class Elevator extends AbstractCraftBookMechanic {
         config.setComment(path + "smooth-movement-speed", "The speed at which players move from floor to floor when smooth movement is enabled.");
         elevatorMoveSpeed = config.getDouble(path + "smooth-movement-speed", 0.5);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        if(!elevatorAllowRedstone) return EnumSet.noneOf(Material.class);
+
+        Set<Material> targets = EnumSet.of(Material.SIGN, Material.WALL_SIGN);
+        if(elevatorButtonEnabled)
+            targets.addAll(Tag.BUTTONS.getValues());
+        return targets;
+    }
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
 package com.sk89q.craftbook.mechanics;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.util.BlockSyntax;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
@@ -29,12 +30,15 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * This mechanism allow players to toggle GlowStone.
  *
  * @author sk89q
  */
-public class GlowStone extends AbstractCraftBookMechanic {
+public class GlowStone extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockRedstoneChange(SourcedBlockRedstoneEvent event) {
@@ -75,4 +79,10 @@ public class GlowStone extends AbstractCraftBookMechanic {
         config.setComment(path + "glowstone-off-block", "Sets the block that the redstone glowstone mechanic turns into when turned off.");
         offBlock = BlockSyntax.getBlock(config.getString(path + "glowstone-off-block", BlockTypes.GLASS.getId()), true);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return EnumSet.of(Material.GLOWSTONE, BukkitAdapter.adapt(offBlock.getBlockType()));
+    }
 }
\ No newline at end of file
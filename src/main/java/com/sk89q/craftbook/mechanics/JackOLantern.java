@@ -25,16 +25,20 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * This mechanism allow players to toggle Jack-o-Lanterns.
  *
  * @author sk89q
  */
-public class JackOLantern extends AbstractCraftBookMechanic {
+public class JackOLantern extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockRedstoneChange(SourcedBlockRedstoneEvent event) {
@@ -76,4 +80,10 @@ public class JackOLantern extends AbstractCraftBookMechanic {
     public void loadConfiguration (YAMLProcessor config, String path) {
 
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return EnumSet.of(Material.CARVED_PUMPKIN, Material.JACK_O_LANTERN);
+    }
 }
\ No newline at end of file
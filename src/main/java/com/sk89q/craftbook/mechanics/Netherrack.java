@@ -25,17 +25,21 @@ import org.bukkit.event.block.Action;
 import org.bukkit.event.player.PlayerInteractEvent;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
 import org.bukkit.inventory.EquipmentSlot;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * This mechanism allow players to toggle the fire on top of Netherrack.
  *
  * @author sk89q
  */
-public class Netherrack extends AbstractCraftBookMechanic {
+public class Netherrack extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockRedstoneChange(SourcedBlockRedstoneEvent event) {
@@ -89,4 +93,10 @@ public class Netherrack extends AbstractCraftBookMechanic {
     public void loadConfiguration (YAMLProcessor config, String path) {
 
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return EnumSet.of(Material.NETHERRACK);
+    }
 }
\ No newline at end of file
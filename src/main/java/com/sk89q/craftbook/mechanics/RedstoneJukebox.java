@@ -5,10 +5,14 @@ import org.bukkit.block.Jukebox;
 import org.bukkit.event.EventHandler;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
 
-public class RedstoneJukebox extends AbstractCraftBookMechanic {
+import java.util.EnumSet;
+import java.util.Set;
+
+public class RedstoneJukebox extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler
     public void onRedstonePower(SourcedBlockRedstoneEvent event) {
@@ -28,4 +32,10 @@ public class RedstoneJukebox extends AbstractCraftBookMechanic {
     @Override
     public void loadConfiguration (YAMLProcessor config, String path) {
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return EnumSet.of(Material.JUKEBOX);
+    }
 }
\ No newline at end of file
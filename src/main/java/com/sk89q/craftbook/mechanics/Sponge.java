@@ -10,13 +10,17 @@ import org.bukkit.event.block.BlockFromToEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.util.BlockUtil;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
 
-public class Sponge extends AbstractCraftBookMechanic {
+import java.util.EnumSet;
+import java.util.Set;
+
+public class Sponge extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockFromTo(BlockFromToEvent event) {
@@ -219,4 +223,10 @@ public class Sponge extends AbstractCraftBookMechanic {
         config.setComment(path + "require-redstone", "Whether to require redstone to suck up water or not.");
         redstone = config.getBoolean(path + "require-redstone", false);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return redstone ? EnumSet.of(Material.SPONGE) : EnumSet.noneOf(Material.class);
+    }
 }
\ No newline at end of file
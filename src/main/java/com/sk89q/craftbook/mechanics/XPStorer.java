@@ -23,6 +23,7 @@ import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockTypes;
 import com.sk89q.worldedit.world.item.ItemTypes;
 import org.bukkit.Material;
+import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.ExperienceOrb;
@@ -183,7 +184,7 @@ public class XPStorer extends AbstractCraftBookMechanic {
         event.setLine(2, String.valueOf(signRadius));
         player.print("mech.xp-storer.create");
 
-        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(event.getBlock().getLocation());
+        registerSelfTrigger(event.getBlock());
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -198,7 +199,7 @@ public class XPStorer extends AbstractCraftBookMechanic {
 
         if(!sign.getLine(1).equals("[XP]")) return;
 
-        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(event.getBlock().getLocation());
+        registerSelfTrigger(event.getBlock());
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -206,13 +207,38 @@ public class XPStorer extends AbstractCraftBookMechanic {
 
         if (!EventUtil.passesFilter(event)) return;
 
-        if (!SignUtil.isSign(event.getBlock())) return;
+        if (think(event.getBlock()))
+            event.setHandled(true);
+    }
 
-        ChangedSign sign = CraftBookBukkitUtil.toChangedSign(event.getBlock());
+    /**
+     * Registers the XP Storer at the given sign with the self-trigger manager.
+     *
+     * @param signBlock The sign block
+     */
+    private void registerSelfTrigger(final Block signBlock) {
+
+        CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(signBlock.getLocation(), () -> {
+            // Thinks the same way as through the event, so that it goes through the same filter.
+            SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(signBlock);
+            onThink(event);
+            return event.isHandled();
+        });
+    }
+
+    /**
+     * Causes the XP Storer at the given sign to think.
+     *
+     * @param signBlock The sign block
+     * @return If the block is still an XP Storer
+     */
+    private boolean think(Block signBlock) {
 
-        if (!sign.getLine(1).equals("[XP]")) return;
+        if (!SignUtil.isSign(signBlock)) return false;
 
-        event.setHandled(true);
+        ChangedSign sign = CraftBookBukkitUtil.toChangedSign(signBlock);
+
+        if (!sign.getLine(1).equals("[XP]")) return false;
 
         int signRadius = radius;
         try {
@@ -224,7 +250,7 @@ public class XPStorer extends AbstractCraftBookMechanic {
 
         List<ExperienceOrb> orbs = new ArrayList<>();
 
-        for (Entity entity : LocationUtil.getNearbyEntities(SignUtil.getBackBlock(event.getBlock()).getLocation(), Vector3.at(signRadius, signRadius, signRadius))) {
+        for (Entity entity : LocationUtil.getNearbyEntities(SignUtil.getBackBlock(signBlock).getLocation(), Vector3.at(signRadius, signRadius, signRadius))) {
             if (entity instanceof ExperienceOrb && entity.getTicksLived() > 20) {
                 xp += ((ExperienceOrb) entity).getExperience();
                 orbs.add((ExperienceOrb) entity);
@@ -234,8 +260,8 @@ public class XPStorer extends AbstractCraftBookMechanic {
         int max = Integer.MAX_VALUE;
         Inventory inventory = null;
 
-        if (InventoryUtil.doesBlockHaveInventory(SignUtil.getBackBlock(event.getBlock()).getRelative(BlockFace.UP))) {
-            inventory = ((InventoryHolder) SignUtil.getBackBlock(event.getBlock()).getRelative(BlockFace.UP).getState()).getInventory();
+        if (InventoryUtil.doesBlockHaveInventory(SignUtil.getBackBlock(signBlock).getRelative(BlockFace.UP))) {
+            inventory = ((InventoryHolder) SignUtil.getBackBlock(signBlock).getRelative(BlockFace.UP).getState()).getInventory();
             if (requireBottle) {
                 max = 0;
                 for (ItemStack stack : inventory.getContents()) {
@@ -245,7 +271,7 @@ public class XPStorer extends AbstractCraftBookMechanic {
                 }
             }
         } else if (requireBottle) {
-            return;
+            return true;
         }
 
         int bottleCount = (int) Math.min(max, Math.floor(xp / (double) xpPerBottle));
@@ -256,10 +282,10 @@ public class XPStorer extends AbstractCraftBookMechanic {
             ItemStack bottles = new ItemStack(Material.EXPERIENCE_BOTTLE, Math.min(tempBottles, 64));
             if (inventory != null) {
                 for (ItemStack leftover : inventory.addItem(bottles).values()) {
-                    event.getBlock().getWorld().dropItemNaturally(LocationUtil.getCenterOfBlock(SignUtil.getBackBlock(event.getBlock())), leftover);
+                    signBlock.getWorld().dropItemNaturally(LocationUtil.getCenterOfBlock(SignUtil.getBackBlock(signBlock)), leftover);
                 }
             } else {
-                event.getBlock().getWorld().dropItemNaturally(LocationUtil.getCenterOfBlock(SignUtil.getBackBlock(event.getBlock())), bottles);
+                signBlock.getWorld().dropItemNaturally(LocationUtil.getCenterOfBlock(SignUtil.getBackBlock(signBlock)), bottles);
             }
 
             tempBottles -= 64;
@@ -278,6 +304,8 @@ public class XPStorer extends AbstractCraftBookMechanic {
                 orb.remove();
             }
         }
+
+        return true;
     }
 
     private boolean requireBottle;
@@ -3,31 +3,34 @@ package com.sk89q.craftbook.mechanics.area;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.EventUtil;
+import com.sk89q.craftbook.util.ProfileResolver;
 import com.sk89q.craftbook.util.ProtectionUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.craftbook.util.events.SelfTriggerPingEvent;
 import com.sk89q.craftbook.util.events.SignClickEvent;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
-import com.sk89q.squirrelid.Profile;
-import com.sk89q.squirrelid.resolver.HttpRepositoryService;
-import com.sk89q.squirrelid.resolver.ProfileService;
 import com.sk89q.util.yaml.YAMLProcessor;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.SignChangeEvent;
 
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
@@ -36,7 +39,7 @@ import java.util.regex.Pattern;
  *
  * @author Me4502, Sk89q, Silthus
  */
-public class Area extends AbstractCraftBookMechanic {
+public class Area extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     protected static Area instance;
 
@@ -147,17 +150,29 @@ public class Area extends AbstractCraftBookMechanic {
                 && namespace.startsWith("~") && CraftBookPlugin.inst().getUUIDMappings().getUUID(namespace.replace("~", "")) == null) {
             OfflinePlayer player = Bukkit.getOfflinePlayer(namespace.replace("~", ""));
             if(player.hasPlayedBefore()) {
-                String originalNamespace = namespace;
-
-                try {
-                    ProfileService resolver = HttpRepositoryService.forMinecraft();
-                    Profile profile = resolver.findByName("player.getName()"); // May be null
-
-                    namespace = '~' + CraftBookPlugin.inst().getUUIDMappings().getCBID(profile.getUniqueId());
-                    CopyManager.renameNamespace(CraftBookPlugin.inst().getDataFolder(), originalNamespace, namespace);
-                    sign.setLine(0, namespace);
-                } catch (Exception e) {
-                    e.printStackTrace();
+                ProfileResolver resolver = CraftBookPlugin.inst().getProfileResolver();
+                if(!resolver.isCached(player.getName())) {
+                    // Convert it once the name has been looked up, rather than waiting for it.
+                    Block block = sign.getBlock();
+                    resolver.resolve(player.getName(), uuid -> {
+                        if(uuid != null && block.getWorld().isChunkLoaded(block.getX() >> 4, block.getZ() >> 4) && SignUtil.isSign(block)) {
+                            ChangedSign current = CraftBookBukkitUtil.toChangedSign(block);
+                            if(current.getLine(1).equals("[Area]")) {
+                                isValidArea(current);
+                                current.update(false);
+                            }
+                        }
+                    });
+                } else if(resolver.getCached(player.getName()) != null) {
+                    String originalNamespace = namespace;
+
+                    try {
+                        namespace = '~' + CraftBookPlugin.inst().getUUIDMappings().getCBID(resolver.getCached(player.getName()));
+                        CopyManager.renameNamespace(CraftBookPlugin.inst().getDataFolder(), originalNamespace, namespace);
+                        sign.setLine(0, namespace);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
                 }
             }
         }
@@ -358,4 +373,10 @@ public class Area extends AbstractCraftBookMechanic {
         config.setComment(path + "max-per-user", "Sets the max amount of ToggleAreas that can be within one namespace.");
         maxAreasPerUser = config.getInt(path + "max-per-user", 30);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return allowRedstone ? EnumSet.of(Material.SIGN, Material.WALL_SIGN) : EnumSet.noneOf(Material.class);
+    }
 }
\ No newline at end of file
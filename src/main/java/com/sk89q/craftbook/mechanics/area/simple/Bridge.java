@@ -18,6 +18,7 @@ package com.sk89q.craftbook.mechanics.area.simple;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.BlockSyntax;
@@ -50,7 +51,9 @@ import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -58,7 +61,7 @@ import java.util.stream.Collectors;
  *
  * @author hash
  */
-public class Bridge extends CuboidToggleMechanic {
+public class Bridge extends CuboidToggleMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
@@ -334,4 +337,10 @@ public class Bridge extends CuboidToggleMechanic {
         blocks = BlockSyntax.getBlocks(config.getStringList(path + "blocks",
                 getDefaultBlocks().stream().sorted(String::compareToIgnoreCase).collect(Collectors.toList())), true);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return allowRedstone ? EnumSet.of(Material.SIGN, Material.WALL_SIGN) : EnumSet.noneOf(Material.class);
+    }
 }
\ No newline at end of file
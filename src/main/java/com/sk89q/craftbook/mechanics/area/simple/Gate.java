@@ -19,6 +19,7 @@ package com.sk89q.craftbook.mechanics.area.simple;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.BlockSyntax;
@@ -51,6 +52,7 @@ import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -64,7 +66,7 @@ import java.util.Set;
  *
  * @author sk89q
  */
-public class Gate extends AbstractCraftBookMechanic {
+public class Gate extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     /**
      * Toggles the gate closest to a location.
@@ -721,4 +723,10 @@ public class Gate extends AbstractCraftBookMechanic {
         config.setComment(path + "gate-search-radius", "The radius around the sign the gate checks for fences in. Note: This is doubled upwards.");
         searchRadius = config.getInt(path + "gate-search-radius", 3);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return allowRedstone ? EnumSet.of(Material.SIGN, Material.WALL_SIGN) : EnumSet.noneOf(Material.class);
+    }
 }
@@ -3,6 +3,7 @@ package com.sk89q.craftbook.mechanics.cauldron;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.BukkitCraftBookPlayer;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
@@ -39,12 +40,14 @@ import org.bukkit.util.Vector;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Silthus
  */
-public class ImprovedCauldron extends AbstractCraftBookMechanic {
+public class ImprovedCauldron extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     public static ImprovedCauldron instance;
     public ImprovedCauldronCookbook recipes;
@@ -365,4 +368,10 @@ public class ImprovedCauldron extends AbstractCraftBookMechanic {
         config.setComment(path + "require-sign", "Requires a [Cauldron] sign to be on the side of a cauldron. Useful for requiring creation permissions.");
         requireSign = config.getBoolean(path + "require-sign", false);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return allowRedstone ? EnumSet.of(Material.CAULDRON) : EnumSet.noneOf(Material.class);
+    }
 }
\ No newline at end of file
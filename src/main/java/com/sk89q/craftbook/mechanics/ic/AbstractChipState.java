@@ -1,10 +1,9 @@
 package com.sk89q.craftbook.mechanics.ic;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.ICUtil;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.SignUtil;
-import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.util.Location;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Material;
@@ -13,46 +12,92 @@ import org.bukkit.block.data.AnaloguePowerable;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.Powerable;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 /**
  * @author Silthus
  */
 public abstract class AbstractChipState implements ChipState {
 
     protected final ChangedSign sign;
-    protected final Location source;
     protected final boolean selfTriggered;
     protected final Block icBlock;
 
+    /**
+     * The pin blocks that have been found so far. The pins of an IC only depend on which way its sign faces, so they
+     * are found once and then read directly.
+     */
+    private Block[] pins;
+    private long[] pinKeys;
+    private int resolvedPins;
+
+    /**
+     * The packed positions of the blocks that triggered the IC.
+     */
+    private long[] sourceKeys;
+
     protected AbstractChipState(Location source, ChangedSign sign, boolean selfTriggered) {
 
         // Check this here to prevent and handle future NPEs
         Validate.notNull(sign, "Null ChangedSign found: " + source.toString());
         this.sign = sign;
-        this.source = source;
         this.selfTriggered = selfTriggered;
-        icBlock = SignUtil.getBackBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+        sourceKeys = new long[] {LocationUtil.toBlockKey(source.getBlockX(), source.getBlockY(), source.getBlockZ())};
+        icBlock = SignUtil.getBackBlock(sign.getBlock());
     }
 
     protected abstract Block getBlock(int pin);
 
+    /**
+     * Gets the block at a pin, finding it the first time that the pin is used.
+     *
+     * @param pin The pin
+     * @return The block, or null if there is no such pin
+     */
+    protected final Block getPinBlock(int pin) {
+
+        if(pin < 0 || pin >= 32) return getBlock(pin);
+
+        if((resolvedPins & 1 << pin) == 0) {
+            if(pins == null || pin >= pins.length) {
+                int size = Math.max(pin + 1, getInputCount() + getOutputCount());
+                pins = pins == null ? new Block[size] : Arrays.copyOf(pins, size);
+                pinKeys = pinKeys == null ? new long[size] : Arrays.copyOf(pinKeys, size);
+            }
+            Block block = getBlock(pin);
+            pins[pin] = block;
+            if(block != null)
+                pinKeys[pin] = LocationUtil.toBlockKey(block);
+            resolvedPins |= 1 << pin;
+        }
+        return pins[pin];
+    }
+
+    /**
+     * Sets the blocks that triggered the IC, so that this state can be reused for a later trigger of the same IC.
+     *
+     * @param sources The source blocks
+     */
+    public void setSources(Collection<Block> sources) {
+
+        if(sourceKeys.length != sources.size())
+            sourceKeys = new long[sources.size()];
+        int i = 0;
+        for(Block source : sources)
+            sourceKeys[i++] = LocationUtil.toBlockKey(source);
+    }
+
     @Override
     public boolean get(int pin) {
-        Block block = getBlock(pin);
-        if(block == null) return false;
-        BlockData data = block.getBlockData();
-        if (data instanceof AnaloguePowerable) {
-            return ((AnaloguePowerable) data).getPower() > 0;
-        }
-        if (data instanceof Powerable) {
-            return ((Powerable) data).isPowered();
-        }
-        return block.isBlockIndirectlyPowered();
+        Block block = getPinBlock(pin);
+        return block != null && isPowered(block);
     }
 
     @Override
     public void set(int pin, boolean value) {
 
-        Block block = getBlock(pin);
+        Block block = getPinBlock(pin);
         if (block != null) {
             ICUtil.setState(block, value, icBlock);
         }
@@ -60,19 +105,57 @@ public abstract class AbstractChipState implements ChipState {
 
     @Override
     public boolean isTriggered(int pin) {
-        Block block = getBlock(pin);
-        return block != null && BukkitAdapter.adapt(block.getLocation()).equals(source);
+        Block block = getPinBlock(pin);
+        if (block == null) return false;
+        long key = pin < 32 ? pinKeys[pin] : LocationUtil.toBlockKey(block);
+        for (long source : sourceKeys) {
+            if (key == source) return true;
+        }
+        return false;
     }
 
     @Override
     public boolean isValid(int pin) {
-        Block block = getBlock(pin);
-        if (block != null) {
-            return block.getType() == Material.REDSTONE_WIRE
-                    || block.getType() == Material.REPEATER
-                    || block.getType() == Material.COMPARATOR
-                    || block.getType() == Material.LEVER;
+        Block block = getPinBlock(pin);
+        return block != null && isValidPin(block);
+    }
+
+    /**
+     * Checks whether the block at a pin is powered.
+     *
+     * @param block The pin block
+     * @return If it is powered
+     */
+    static boolean isPowered(Block block) {
+
+        // An output that has been changed this tick reads as its new state, even though the world has yet to change.
+        ICOutputStage outputStage = ICMechanic.instance == null ? null : ICMechanic.instance.getOutputStage();
+        if (outputStage != null) {
+            Boolean state = outputStage.getPendingState(block);
+            if (state != null) return state;
         }
-        return false;
+
+        BlockData data = block.getBlockData();
+        if (data instanceof AnaloguePowerable) {
+            return ((AnaloguePowerable) data).getPower() > 0;
+        }
+        if (data instanceof Powerable) {
+            return ((Powerable) data).isPowered();
+        }
+        return block.isBlockIndirectlyPowered();
+    }
+
+    /**
+     * Checks whether the block at a pin can carry a signal.
+     *
+     * @param block The pin block
+     * @return If it is a valid pin
+     */
+    static boolean isValidPin(Block block) {
+
+        return block.getType() == Material.REDSTONE_WIRE
+                || block.getType() == Material.REPEATER
+                || block.getType() == Material.COMPARATOR
+                || block.getType() == Material.LEVER;
     }
 }
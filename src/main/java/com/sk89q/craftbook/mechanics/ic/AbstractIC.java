@@ -99,6 +99,18 @@ public abstract class AbstractIC implements IC {
     public void onICBreak(BlockBreakEvent event) {
     }
 
+    /**
+     * Writes state that this IC keeps on its sign, such as a counter. The sign may not be updated straight away, see
+     * {@link ICStateRegisters}.
+     */
+    protected void updateState() {
+
+        if (ICMechanic.instance != null && ICMechanic.instance.getStateRegisters() != null)
+            ICMechanic.instance.getStateRegisters().mark(this);
+        else
+            sign.update(false);
+    }
+
     @Override
     public void unload() {
 
@@ -18,6 +18,7 @@ package com.sk89q.craftbook.mechanics.ic;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.core.st.SelfTriggerHandle;
 import com.sk89q.craftbook.mechanics.ic.families.*;
 import com.sk89q.craftbook.mechanics.ic.gates.logic.*;
 import com.sk89q.craftbook.mechanics.ic.gates.variables.IsAtLeast;
@@ -32,16 +33,22 @@ import com.sk89q.craftbook.mechanics.ic.gates.world.weather.*;
 import com.sk89q.craftbook.mechanics.ic.plc.PlcFactory;
 import com.sk89q.craftbook.mechanics.ic.plc.lang.Perlstone;
 import com.sk89q.craftbook.mechanics.variables.VariableManager;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.util.yaml.YAMLFormat;
 import com.sk89q.util.yaml.YAMLProcessor;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 
 /**
@@ -135,7 +142,15 @@ public class ICManager {
      */
     public final Map<String, String> longRegistered = new HashMap<>();
 
-    private static final Map<Location, IC> cachedICs = new HashMap<>();
+    /**
+     * Cached ICs by world, chunk and packed block position.
+     */
+    private static final Map<UUID, Map<Long, Map<Long, CachedIC>>> cachedICs = new HashMap<>();
+
+    private static int cacheSize = 0;
+    private static long cacheHits = 0;
+    private static long cacheMisses = 0;
+    private static long cacheEvictions = 0;
 
     private static final Set<String> customPrefix = new HashSet<>();
 
@@ -235,7 +250,7 @@ public class ICManager {
      */
     public static boolean isCachedIC(Location pt) {
 
-        return cachedICs.containsKey(pt);
+        return getCacheEntry(pt) != null;
     }
 
     /**
@@ -247,7 +262,8 @@ public class ICManager {
      */
     public static IC getCachedIC(Location pt) {
 
-        return cachedICs.get(pt);
+        CachedIC entry = getCacheEntry(pt);
+        return entry == null ? null : entry.ic;
     }
 
     /**
@@ -259,9 +275,13 @@ public class ICManager {
     public static void addCachedIC(Location pt, IC ic) {
 
         if (!ICMechanic.instance.cache) return;
-        if(cachedICs.containsKey(pt)) return;
+        long key = LocationUtil.toBlockKey(pt);
+        Map<Long, CachedIC> bucket = cachedICs.computeIfAbsent(pt.getWorld().getUID(), uid -> new HashMap<>())
+                .computeIfAbsent(LocationUtil.getChunkKey(key), chunkKey -> new HashMap<>());
+        if(bucket.containsKey(key)) return;
         CraftBookPlugin.logDebugMessage("Caching IC at: " + pt.toString(), "ic-cache");
-        cachedICs.put(pt, ic);
+        bucket.put(key, new CachedIC(ic));
+        cacheSize++;
     }
 
     /**
@@ -273,11 +293,88 @@ public class ICManager {
      */
     public static IC removeCachedIC(Location pt) {
 
-        if (cachedICs.containsKey(pt)) {
-            CraftBookPlugin.logDebugMessage("Removing cached IC at: " + pt.toString(), "ic-cache");
-            return cachedICs.remove(pt);
+        Map<Long, Map<Long, CachedIC>> chunks = cachedICs.get(pt.getWorld().getUID());
+        if (chunks == null) return null;
+        long key = LocationUtil.toBlockKey(pt);
+        long chunkKey = LocationUtil.getChunkKey(key);
+        Map<Long, CachedIC> bucket = chunks.get(chunkKey);
+        if (bucket == null || !bucket.containsKey(key)) return null;
+
+        CraftBookPlugin.logDebugMessage("Removing cached IC at: " + pt.toString(), "ic-cache");
+        CachedIC entry = bucket.remove(key);
+        flushState(entry.ic);
+        if (bucket.isEmpty()) {
+            chunks.remove(chunkKey);
+            if (chunks.isEmpty())
+                cachedICs.remove(pt.getWorld().getUID());
+        }
+        cacheSize--;
+        return entry.ic;
+    }
+
+    /**
+     * Forgets how the cached IC at the given location was resolved from its sign, so that the sign is read again the
+     * next time it is used.
+     *
+     * @param pt of the ic
+     */
+    public static void forgetResolvedIC(Location pt) {
+
+        CachedIC entry = getCacheEntry(pt);
+        if (entry != null) {
+            entry.resolved = null;
+            entry.handle = null;
+            entry.chip = null;
+        }
+    }
+
+    /**
+     * Forgets how every cached IC within the given world was resolved from its sign.
+     *
+     * @param world The world
+     */
+    public static void forgetResolvedICs(World world) {
+
+        Map<Long, Map<Long, CachedIC>> chunks = cachedICs.get(world.getUID());
+        if (chunks == null) return;
+        for (Map<Long, CachedIC> bucket : chunks.values()) {
+            for (CachedIC entry : bucket.values()) {
+                entry.resolved = null;
+                entry.handle = null;
+                entry.chip = null;
+            }
         }
-        return null;
+    }
+
+    /**
+     * Removes all cached ICs that match the given filter. The removed ICs are not unloaded.
+     *
+     * @param filter The filter
+     *
+     * @return the amount of removed ics
+     */
+    public static int removeCachedICs(Predicate<IC> filter) {
+
+        int removed = 0;
+        for (Iterator<Map<Long, Map<Long, CachedIC>>> worlds = cachedICs.values().iterator(); worlds.hasNext(); ) {
+            Map<Long, Map<Long, CachedIC>> chunks = worlds.next();
+            for (Iterator<Map<Long, CachedIC>> buckets = chunks.values().iterator(); buckets.hasNext(); ) {
+                Map<Long, CachedIC> bucket = buckets.next();
+                int size = bucket.size();
+                bucket.values().removeIf(entry -> {
+                    if (!filter.test(entry.ic)) return false;
+                    flushState(entry.ic);
+                    return true;
+                });
+                removed += size - bucket.size();
+                if (bucket.isEmpty())
+                    buckets.remove();
+            }
+            if (chunks.isEmpty())
+                worlds.remove();
+        }
+        cacheSize -= removed;
+        return removed;
     }
 
     /**
@@ -290,6 +387,61 @@ public class ICManager {
         removeCachedIC(pt);
     }
 
+    /**
+     * Unloads and removes all cached ICs within the given chunk.
+     *
+     * @param chunk The chunk
+     */
+    public static void unloadChunk(Chunk chunk) {
+
+        Map<Long, Map<Long, CachedIC>> chunks = cachedICs.get(chunk.getWorld().getUID());
+        if (chunks == null) return;
+        Map<Long, CachedIC> bucket = chunks.remove(LocationUtil.toChunkKey(chunk));
+        if (bucket == null) return;
+        if (chunks.isEmpty())
+            cachedICs.remove(chunk.getWorld().getUID());
+
+        unloadAll(bucket.values());
+    }
+
+    /**
+     * Unloads and removes all cached ICs within the given world.
+     *
+     * @param world The world
+     */
+    public static void unloadWorld(World world) {
+
+        Map<Long, Map<Long, CachedIC>> chunks = cachedICs.remove(world.getUID());
+        if (chunks == null) return;
+
+        for (Map<Long, CachedIC> bucket : chunks.values())
+            unloadAll(bucket.values());
+    }
+
+    private static void unloadAll(Collection<CachedIC> entries) {
+
+        for (CachedIC entry : entries) {
+            try {
+                flushState(entry.ic);
+                entry.ic.unload();
+            } catch (Throwable t) {
+                CraftBookPlugin.logger().warning("Failed to unload IC " + entry.ic.getTitle());
+                CraftBookBukkitUtil.printStacktrace(t);
+            }
+        }
+        cacheSize -= entries.size();
+        cacheEvictions += entries.size();
+    }
+
+    /**
+     * Writes any state the IC has not yet written to its sign, as it is about to leave the cache.
+     */
+    private static void flushState(IC ic) {
+
+        if (ICMechanic.instance != null && ICMechanic.instance.getStateRegisters() != null)
+            ICMechanic.instance.getStateRegisters().flush(ic);
+    }
+
     /**
      * Clears the IC cache.
      *
@@ -297,15 +449,91 @@ public class ICManager {
     public static void emptyCache() {
 
         CraftBookPlugin.logDebugMessage("Culling cached IC list.", "ic-cache");
+        if (ICMechanic.instance != null && ICMechanic.instance.getStateRegisters() != null)
+            ICMechanic.instance.getStateRegisters().flushAll();
         cachedICs.clear();
+        cacheSize = 0;
     }
 
     /**
-     * Gets the IC Cache map.
+     * Gets a snapshot of the IC cache.
      */
     public static Map<Location, IC> getCachedICs() {
 
-        return cachedICs;
+        Map<Location, IC> snapshot = new HashMap<>(cacheSize);
+        for (Map.Entry<UUID, Map<Long, Map<Long, CachedIC>>> world : cachedICs.entrySet()) {
+            World bukkitWorld = CraftBookPlugin.server().getWorld(world.getKey());
+            if (bukkitWorld == null) continue;
+            for (Map<Long, CachedIC> bucket : world.getValue().values())
+                for (Map.Entry<Long, CachedIC> entry : bucket.entrySet())
+                    snapshot.put(new Location(bukkitWorld, LocationUtil.getBlockKeyX(entry.getKey()), LocationUtil.getBlockKeyY(entry.getKey()), LocationUtil.getBlockKeyZ(entry.getKey())), entry.getValue().ic);
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Gets the amount of ICs in the cache.
+     */
+    public static int getCacheSize() {
+
+        return cacheSize;
+    }
+
+    /**
+     * Gets the amount of times an IC was found in the cache when resolving it.
+     */
+    public static long getCacheHits() {
+
+        return cacheHits;
+    }
+
+    /**
+     * Gets the amount of times an IC was not in the cache when resolving it.
+     */
+    public static long getCacheMisses() {
+
+        return cacheMisses;
+    }
+
+    /**
+     * Gets the amount of ICs that were unloaded from the cache because their chunk or world unloaded.
+     */
+    public static long getCacheEvictions() {
+
+        return cacheEvictions;
+    }
+
+    /**
+     * Looks up the cache entry for an IC that is being resolved, counting towards the hit rate.
+     *
+     * @param block The IC block
+     *
+     * @return the entry, or null if the IC isn't cached
+     */
+    static CachedIC lookupCachedIC(Block block) {
+
+        Map<Long, Map<Long, CachedIC>> chunks = cachedICs.get(block.getWorld().getUID());
+        CachedIC entry = null;
+        if (chunks != null) {
+            long key = LocationUtil.toBlockKey(block);
+            Map<Long, CachedIC> bucket = chunks.get(LocationUtil.getChunkKey(key));
+            if (bucket != null)
+                entry = bucket.get(key);
+        }
+        if (entry == null)
+            cacheMisses++;
+        else
+            cacheHits++;
+        return entry;
+    }
+
+    static CachedIC getCacheEntry(Location pt) {
+
+        Map<Long, Map<Long, CachedIC>> chunks = cachedICs.get(pt.getWorld().getUID());
+        if (chunks == null) return null;
+        long key = LocationUtil.toBlockKey(pt);
+        Map<Long, CachedIC> bucket = chunks.get(LocationUtil.getChunkKey(key));
+        return bucket == null ? null : bucket.get(key);
     }
 
     public static boolean hasCustomPrefix(String prefix) {
@@ -453,8 +681,8 @@ public class ICManager {
         registerIC("MC6020", "random 5", new Random5Bit.Factory(server), familySI5O);
 
         // PLCs
-        registerIC("MC5000", "perlstone", PlcFactory.fromLang(server, new Perlstone(), false, "MC5000"), familyVIVO);
-        registerIC("MC5001", "perlstone 3i3o", PlcFactory.fromLang(server, new Perlstone(), false, "MC5001"), family3I3O);
+        registerIC("MC5000", "perlstone", PlcFactory.fromLang(server, new Perlstone(ICMechanic.instance.plcMemoSize), false, "MC5000"), familyVIVO);
+        registerIC("MC5001", "perlstone 3i3o", PlcFactory.fromLang(server, new Perlstone(ICMechanic.instance.plcMemoSize), false, "MC5001"), family3I3O);
 
         // Xtra ICs
         // SISOs
@@ -557,4 +785,39 @@ public class ICManager {
 
         return strings.toArray(new String[strings.size()]);
     }
+
+    /**
+     * A cached IC, along with the result of resolving it from its sign once that has happened.
+     */
+    static final class CachedIC {
+
+        final IC ic;
+        Object[] resolved;
+        SelfTriggerHandle handle;
+        int thinkInterval;
+        private ICFamily chipFamily;
+        private AbstractChipState chip;
+
+        CachedIC(IC ic) {
+
+            this.ic = ic;
+        }
+
+        /**
+         * Gets a chip state for the IC that is kept for as long as the IC is cached, so that the pins are only found
+         * once rather than on every trigger.
+         *
+         * @param family The family of the IC
+         * @return The chip state, or null if the family doesn't support reuse
+         */
+        AbstractChipState getChipState(ICFamily family) {
+
+            if (chip == null || chipFamily != family) {
+                ChipState state = family.detect(BukkitAdapter.adapt(ic.getSign().getBlock().getLocation()), ic.getSign());
+                chipFamily = family;
+                chip = state instanceof AbstractChipState ? (AbstractChipState) state : null;
+            }
+            return chip;
+        }
+    }
 }
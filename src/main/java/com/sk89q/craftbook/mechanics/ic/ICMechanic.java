@@ -19,12 +19,18 @@ package com.sk89q.craftbook.mechanics.ic;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.core.st.SelfTriggerHandle;
+import com.sk89q.craftbook.core.timings.Timings;
+import com.sk89q.craftbook.mechanics.ic.plc.PlcCodeCache;
+import com.sk89q.craftbook.mechanics.ic.plc.PlcStateStore;
 import com.sk89q.craftbook.mechanics.pipe.PipePutEvent;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.ICUtil;
 import com.sk89q.craftbook.util.ICUtil.LocationCheckType;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.craftbook.util.events.SelfTriggerPingEvent;
@@ -34,20 +40,36 @@ import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent.UnregisterReas
 import com.sk89q.craftbook.util.events.SignClickEvent;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 import com.sk89q.util.yaml.YAMLProcessor;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.util.eventbus.Subscribe;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.regex.Matcher;
 
 /**
@@ -56,7 +78,7 @@ import java.util.regex.Matcher;
  *
  * @author sk89q
  */
-public class ICMechanic extends AbstractCraftBookMechanic {
+public class ICMechanic extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     /**
      * Manager of ICs.
@@ -64,6 +86,38 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     protected final ICManager manager;
     public static ICMechanic instance;
 
+    /**
+     * Batches redstone input changes, so each IC is only triggered once for a set of changes.
+     */
+    protected final ICTriggerScheduler triggerScheduler;
+
+    /**
+     * Simulates groups of directly wired logic ICs in memory, if enabled.
+     */
+    protected LogicClusterManager clusterManager;
+
+    /**
+     * Keeps state that ICs store on their sign in memory, writing the sign on an interval.
+     */
+    protected ICStateRegisters stateRegisters;
+
+    /**
+     * Applies the output changes of ICs once per tick, if enabled.
+     */
+    protected ICOutputStage outputStage;
+
+    /**
+     * Keeps the state of PLCs in memory, writing it on an interval.
+     */
+    protected PlcStateStore plcStateStore;
+
+    /**
+     * Remembers the programs that PLCs read from code block signs.
+     */
+    protected PlcCodeCache plcCodeCache;
+
+    private Object worldEditListener;
+
     //protected final String id;
     //protected final ICFamily family;
     //protected final IC ic;
@@ -72,6 +126,7 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     public ICMechanic() {
 
         manager = new ICManager();
+        triggerScheduler = new ICTriggerScheduler();
         instance = this;
     }
 
@@ -79,19 +134,108 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     public boolean enable() {
 
         ICManager.inst().enable();
+        stateRegisters = new ICStateRegisters(stateFlushInterval);
+        stateRegisters.enable();
+        if(deferOutputs)
+            outputStage = new ICOutputStage();
+        plcStateStore = new PlcStateStore(plcStateFlushInterval);
+        plcStateStore.enable();
+        CraftBookPlugin.inst().registerMechanicEvents(plcStateStore);
+        plcCodeCache = new PlcCodeCache();
+        CraftBookPlugin.inst().registerMechanicEvents(plcCodeCache);
+        plcCodeCache.enable();
+        if(CraftBookPlugin.plugins.getWorldEdit() != null)
+            worldEditListener = WorldEditListener.register();
+        if(logicClusters) {
+            clusterManager = new LogicClusterManager(this, logicClusterMaxSize);
+            CraftBookPlugin.inst().registerMechanicEvents(clusterManager);
+        }
         return true;
     }
 
     @Override
     public void disable() {
 
+        if(worldEditListener != null) {
+            WorldEditListener.unregister(worldEditListener);
+            worldEditListener = null;
+        }
+        if(clusterManager != null) {
+            clusterManager.clear();
+            HandlerList.unregisterAll(clusterManager);
+            clusterManager = null;
+        }
+        triggerScheduler.clear();
+        if(stateRegisters != null) {
+            stateRegisters.disable();
+            stateRegisters = null;
+        }
+        if(outputStage != null) {
+            // Changes made while flushing are applied straight away.
+            ICOutputStage stage = outputStage;
+            outputStage = null;
+            stage.flush();
+        }
+        if(plcStateStore != null) {
+            HandlerList.unregisterAll(plcStateStore);
+            plcStateStore.disable();
+            plcStateStore = null;
+        }
+        if(plcCodeCache != null) {
+            HandlerList.unregisterAll(plcCodeCache);
+            plcCodeCache.disable();
+            plcCodeCache = null;
+        }
         manager.disable();
     }
 
+    public ICTriggerScheduler getTriggerScheduler() {
+
+        return triggerScheduler;
+    }
+
+    public LogicClusterManager getClusterManager() {
+
+        return clusterManager;
+    }
+
+    public ICStateRegisters getStateRegisters() {
+
+        return stateRegisters;
+    }
+
+    public ICOutputStage getOutputStage() {
+
+        return outputStage;
+    }
+
+    public PlcStateStore getPlcStateStore() {
+
+        return plcStateStore;
+    }
+
+    public PlcCodeCache getPlcCodeCache() {
+
+        return plcCodeCache;
+    }
+
     public Object[] setupIC(Block block, boolean create) {
 
         // if we're not looking at a wall sign, it can't be an IC.
         if (block.getType() != Material.WALL_SIGN) return null;
+
+        // skip reading the sign entirely if the ic has been resolved before
+        ICManager.CachedIC cached = ICManager.lookupCachedIC(block);
+        if (cached != null && cached.resolved != null) {
+            if (cached.handle != null)
+                CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation(), cached.handle, cached.thinkInterval);
+            return cached.resolved;
+        }
+
+        // the sign is compared against the cached ic, so it needs any state the ic is still holding on to
+        if (cached != null && stateRegisters != null)
+            stateRegisters.flush(cached.ic);
+
         ChangedSign sign = CraftBookBukkitUtil.toChangedSign(block);
 
         // detect the text on the sign to see if it's any kind of IC at all.
@@ -144,8 +288,8 @@ public class ICMechanic extends AbstractCraftBookMechanic {
 
         IC ic;
         // check if the ic is cached and get that single instance instead of creating a new one
-        if (ICManager.isCachedIC(block.getLocation())) {
-            ic = ICManager.getCachedIC(block.getLocation());
+        if (cached != null) {
+            ic = cached.ic;
             if(ic.getSign().updateSign(sign)) {
 
                 ICManager.removeCachedIC(block.getLocation());
@@ -187,10 +331,12 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         }
 
         // okay, everything checked out. we can finally make it.
+        ICThinkHandle handle = null;
         if (ic instanceof SelfTriggeredIC && (sign.getLine(1).trim().toUpperCase(Locale.ENGLISH).endsWith("S") || ((SelfTriggeredIC) ic).isAlwaysST())) {
             if (disableSelfTriggered)
                 return null;
-            CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation());
+            handle = new ICThinkHandle(block, id, (SelfTriggeredIC) ic, family);
+            CraftBookPlugin.inst().getSelfTriggerManager().registerSelfTrigger(block.getLocation(), handle, ((SelfTriggeredIC) ic).getThinkInterval());
         }
 
         Object[] rets = new Object[3];
@@ -198,9 +344,29 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         rets[1] = family;
         rets[2] = ic;
 
+        // only cached ics can be reused, anything else is created again next time
+        cached = ICManager.getCacheEntry(block.getLocation());
+        if (cached != null && cached.ic == ic) {
+            cached.resolved = rets;
+            cached.handle = handle;
+            cached.thinkInterval = handle == null ? 1 : ((SelfTriggeredIC) ic).getThinkInterval();
+        }
+
         return rets;
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        ICManager.unloadChunk(event.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        ICManager.unloadWorld(event.getWorld());
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onBlockRedstoneChange(final SourcedBlockRedstoneEvent event) {
 
@@ -219,35 +385,20 @@ public class ICMechanic extends AbstractCraftBookMechanic {
             // abort if the sign is the source or the block the sign is attached to
             if (SignUtil.getBackBlock(block).equals(source) || block.equals(source)) return;
 
+            if(clusterManager != null && clusterManager.handle(block, source, (String) icData[0], (ICFamily) icData[1], (IC) icData[2]))
+                return;
 
-            Runnable runnable = () -> {
-
-                if (block.getType() != Material.WALL_SIGN) return;
-                try {
-                    ChipState chipState = ((ICFamily) icData[1]).detect(BukkitAdapter.adapt(source.getLocation()), CraftBookBukkitUtil.toChangedSign(block));
-                    int cnt = 0;
-                    for (int i = 0; i < chipState.getInputCount(); i++) {
-                        if (chipState.isTriggered(i)) {
-                            cnt++;
-                        }
-                    }
-                    if (cnt > 0) {
-                        ((IC) icData[2]).trigger(chipState);
-                    }
-                } catch (IllegalArgumentException ex) {
-                    // Exclude these exceptions so that we don't spam consoles because of Bukkit
-                    if (!ex.getMessage().contains("Null ChangedSign found")) throw ex;
-                }
-            };
-            // FIXME: these should be registered with a global scheduler so we can end up with one runnable actually
-            // running per set of inputs in a given time window.
-            CraftBookPlugin.server().getScheduler().runTaskLater(CraftBookPlugin.inst(), runnable, 2);
+            triggerScheduler.schedule(block, source, (String) icData[0], (ICFamily) icData[1], (IC) icData[2]);
         }
     }
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onRightClick(SignClickEvent event) {
 
+        // show the player the current state of the ic
+        if(stateRegisters != null && ICManager.isCachedIC(event.getClickedBlock().getLocation()))
+            stateRegisters.flush(ICManager.getCachedIC(event.getClickedBlock().getLocation()));
+
         if(event.getAction() != Action.RIGHT_CLICK_BLOCK) return;
 
         if(!EventUtil.passesFilter(event)) return;
@@ -292,6 +443,9 @@ public class ICMechanic extends AbstractCraftBookMechanic {
                 return;
             }
             ((IC) icData[2]).unload();
+            // it has been unloaded already, so the chunk unload doesn't need to do it again
+            if(event.getReason() == UnregisterReason.UNLOAD)
+                ICManager.removeCachedIC(event.getBlock().getLocation());
         }
     }
 
@@ -300,12 +454,75 @@ public class ICMechanic extends AbstractCraftBookMechanic {
 
         if(!EventUtil.passesFilter(event)) return;
 
-        final Object[] icData = setupIC(event.getBlock(), true);
-
-        if(icData != null && icData[2] instanceof SelfTriggeredIC) {
+        if(think(event.getBlock()))
             event.setHandled(true);
-            ChipState chipState = ((ICFamily) icData[1]).detectSelfTriggered(BukkitAdapter.adapt(event.getBlock().getLocation()), ((IC) icData[2]).getSign());
-            ((SelfTriggeredIC) icData[2]).think(chipState);
+    }
+
+    /**
+     * Causes the IC at the given block to think, resolving the IC from its sign first.
+     *
+     * @param block The IC block
+     * @return If the block was a self-triggered IC
+     */
+    public boolean think(Block block) {
+
+        final Object[] icData = setupIC(block, true);
+
+        if(icData == null || !(icData[2] instanceof SelfTriggeredIC)) return false;
+
+        ChipState chipState = ((ICFamily) icData[1]).detectSelfTriggered(BukkitAdapter.adapt(block.getLocation()), ((IC) icData[2]).getSign());
+        think(block, (String) icData[0], (SelfTriggeredIC) icData[2], chipState);
+        return true;
+    }
+
+    private static void think(Block block, String id, SelfTriggeredIC ic, ChipState chipState) {
+
+        Timings timings = CraftBookPlugin.inst().getTimings();
+        if(timings == null) {
+            ic.think(chipState);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            ic.think(chipState);
+        } finally {
+            timings.recordIC(id, block, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Think handle for a self-triggered IC, so that the clock can call the IC directly rather than resolving it from
+     * its sign every think.
+     */
+    private final class ICThinkHandle implements SelfTriggerHandle {
+
+        private final Block block;
+        private final String id;
+        private final SelfTriggeredIC ic;
+        private final ICFamily family;
+        private ChipState chipState;
+
+        ICThinkHandle(Block block, String id, SelfTriggeredIC ic, ICFamily family) {
+
+            this.block = block;
+            this.id = id;
+            this.ic = ic;
+            this.family = family;
+        }
+
+        @Override
+        public boolean think() {
+
+            // The IC has been replaced or dropped from the cache, so it needs to be resolved again.
+            if(block.getType() != Material.WALL_SIGN || ICManager.getCachedIC(block.getLocation()) != ic)
+                return ICMechanic.this.think(block);
+
+            // The pins of the IC don't move, so the same chip state is used for every think.
+            if(chipState == null)
+                chipState = family.detectSelfTriggered(BukkitAdapter.adapt(block.getLocation()), ic.getSign());
+            ICMechanic.think(block, id, ic, chipState);
+            return true;
         }
     }
 
@@ -339,11 +556,61 @@ public class ICMechanic extends AbstractCraftBookMechanic {
             ((PipeInputIC) icData[2]).onPipeTransfer(event);
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+
+        forgetResolvedAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+
+        for(Block block : event.blockList())
+            forgetResolvedAround(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+
+        for(Block block : event.blockList())
+            forgetResolvedAround(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+
+        for(Block block : event.getBlocks()) {
+            forgetResolvedAround(block);
+            forgetResolvedAround(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+
+        for(Block block : event.getBlocks()) {
+            forgetResolvedAround(block);
+            forgetResolvedAround(block.getRelative(event.getDirection()));
+        }
+    }
+
+    /**
+     * The fast path of setupIC doesn't read the sign, so how an IC was resolved is forgotten whenever its sign, or the
+     * block it is attached to, could have changed without a sign change or break event.
+     */
+    private static void forgetResolvedAround(Block block) {
+
+        ICManager.forgetResolvedIC(block.getLocation());
+        for(BlockFace face : LocationUtil.getDirectFaces())
+            ICManager.forgetResolvedIC(block.getRelative(face).getLocation());
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
 
         if(!EventUtil.passesFilter(event)) return;
 
+        ICManager.forgetResolvedIC(event.getBlock().getLocation());
         initializeIC(event.getBlock(), CraftBookPlugin.inst().wrapPlayer(event.getPlayer()), event, false);
     }
 
@@ -544,6 +811,12 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     public boolean usePercussionMidi;
     public boolean breakOnError;
     public boolean disableSelfTriggered;
+    public boolean logicClusters;
+    public int logicClusterMaxSize;
+    public int stateFlushInterval;
+    public boolean deferOutputs;
+    public int plcStateFlushInterval;
+    public int plcMemoSize;
 
     @Override
     public void loadConfiguration (YAMLProcessor config, String path) {
@@ -577,5 +850,60 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         
         config.setComment(path + "disable-self-triggered", "Disable creation and checking of self-triggered ICs.");
         disableSelfTriggered = config.getBoolean(path + "disable-self-triggered", false);
+
+        config.setComment(path + "logic-clusters", "Simulates groups of simple logic ICs that are wired to each other directly through levers in memory, rather than through the world. Only levers that something else can see are updated with physics.");
+        logicClusters = config.getBoolean(path + "logic-clusters", false);
+
+        config.setComment(path + "logic-cluster-max-size", "The max amount of ICs in a single logic cluster. Larger groups are left as normal ICs.");
+        logicClusterMaxSize = config.getInt(path + "logic-cluster-max-size", 64);
+
+        config.setComment(path + "state-flush-interval", "The amount of ticks between writing the state of ICs such as clocks and counters to their signs. The sign is also written when clicked or unloaded. Set to 0 to write it every time it changes.");
+        stateFlushInterval = config.getInt(path + "state-flush-interval", 100);
+
+        config.setComment(path + "defer-outputs", "Applies the output levers that ICs change at the start of the next tick, all at once. A block with several changed levers only gets one physics update, but outputs change a tick later than usual.");
+        deferOutputs = config.getBoolean(path + "defer-outputs", false);
+
+        config.setComment(path + "plc-state-flush-interval", "The amount of ticks between saving the state of PLCs. The states of all PLCs in a world are saved together in one file. Set to 0 to save at the end of every tick that it changes in.");
+        plcStateFlushInterval = config.getInt(path + "plc-state-flush-interval", 600);
+
+        config.setComment(path + "plc-memoize-size", "The amount of results each PLC program remembers. A PLC whose inputs and persistent variables are the same as a remembered run uses its result rather than running the program again. Set to 0 to always run the program.");
+        plcMemoSize = config.getInt(path + "plc-memoize-size", 256);
+    }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return EnumSet.of(Material.WALL_SIGN);
+    }
+
+    /**
+     * Forgets how the ICs of a world were resolved when it is edited with WorldEdit, which doesn't fire Bukkit events.
+     * This is kept apart so that nothing of WorldEdit's event bus is loaded when it isn't installed.
+     */
+    private static final class WorldEditListener {
+
+        static Object register() {
+
+            WorldEditListener listener = new WorldEditListener();
+            WorldEdit.getInstance().getEventBus().register(listener);
+            return listener;
+        }
+
+        static void unregister(Object listener) {
+
+            WorldEdit.getInstance().getEventBus().unregister(listener);
+        }
+
+        @Subscribe
+        public void onEditSession(EditSessionEvent event) {
+
+            if(event.getStage() != EditSession.Stage.BEFORE_CHANGE || event.getWorld() == null) return;
+            World world = Bukkit.getWorld(event.getWorld().getName());
+            if(world == null) return;
+
+            // The edit is made after the session is created, so forget the world again once it is done.
+            ICManager.forgetResolvedICs(world);
+            CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), () -> ICManager.forgetResolvedICs(world));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,182 @@
+package com.sk89q.craftbook.mechanics.ic;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.util.LocationUtil;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.type.Switch;
+import org.bukkit.event.block.BlockRedstoneEvent;
+import org.bukkit.plugin.PluginManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the output levers that ICs change during a tick, and applies them together on the next tick. Each lever
+ * is set once in block order, the blocks they are attached to get a single physics update each, and the redstone
+ * events for the changes are called afterwards as one batch.
+ */
+public class ICOutputStage implements Runnable {
+
+    private static final Comparator<PendingOutput> BLOCK_ORDER = Comparator
+            .<PendingOutput, String>comparing(output -> output.block.getWorld().getName())
+            .thenComparingLong(output -> output.key);
+
+    private Map<Block, PendingOutput> pending = new HashMap<>();
+    private boolean scheduled;
+
+    private long requestedCount = 0;
+    private long appliedCount = 0;
+    private long cancelledCount = 0;
+    private long physicsCount = 0;
+
+    /**
+     * Queues a change to an output lever.
+     *
+     * @param block The lever
+     * @param lever The current data of the lever
+     * @param state The new state
+     * @param source The block the lever is attached to
+     * @return If this changes the state the lever will have
+     */
+    public boolean set(Block block, Switch lever, boolean state, Block source) {
+
+        PendingOutput output = pending.get(block);
+        if((output == null ? lever.isPowered() : output.state) == state)
+            return false;
+
+        requestedCount++;
+        if(output == null)
+            pending.put(block, new PendingOutput(block, source, state));
+        else
+            output.state = state;
+
+        if(!scheduled) {
+            scheduled = true;
+            CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), this);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the state that a lever will have once the queued changes are applied.
+     *
+     * @param block The lever
+     * @return The queued state, or null if the lever has no queued change
+     */
+    public Boolean getPendingState(Block block) {
+
+        if(pending.isEmpty()) return null;
+        PendingOutput output = pending.get(block);
+        return output == null ? null : output.state;
+    }
+
+    /**
+     * Applies all queued changes straight away.
+     */
+    public void flush() {
+
+        if(pending.isEmpty()) return;
+
+        // Anything changed by the redstone events goes into the next batch.
+        List<PendingOutput> outputs = new ArrayList<>(pending.values());
+        pending = new HashMap<>();
+        outputs.sort(BLOCK_ORDER);
+
+        List<PendingOutput> changed = new ArrayList<>(outputs.size());
+        Map<Block, PendingOutput> sources = new LinkedHashMap<>();
+        for(PendingOutput output : outputs) {
+            if(output.block.getType() != Material.LEVER) {
+                cancelledCount++;
+                continue;
+            }
+            Switch lever = (Switch) output.block.getBlockData();
+            if(lever.isPowered() == output.state || !output.block.getRelative(lever.getFacing().getOppositeFace()).equals(output.source)) {
+                cancelledCount++;
+                continue;
+            }
+            lever.setPowered(output.state);
+            output.block.setBlockData(lever);
+            changed.add(output);
+            sources.put(output.source, output);
+            appliedCount++;
+        }
+
+        // apply physics to the blocks the levers are attached to, once each
+        for(Block source : sources.keySet()) {
+            source.setBlockData(source.getBlockData(), true);
+            physicsCount++;
+        }
+
+        // lets call blockredstone events on the levers and their sources
+        // in order to correctly update all surrounding blocks
+        PluginManager pluginManager = CraftBookPlugin.inst().getServer().getPluginManager();
+        for(PendingOutput output : changed) {
+            try {
+                pluginManager.callEvent(new BlockRedstoneEvent(output.block, output.state ? 0 : 15, output.state ? 15 : 0));
+            } catch(RuntimeException e) {
+                CraftBookBukkitUtil.printStacktrace(e);
+            }
+        }
+        for(PendingOutput output : sources.values()) {
+            try {
+                pluginManager.callEvent(new BlockRedstoneEvent(output.source, output.state ? 0 : 15, output.state ? 15 : 0));
+            } catch(RuntimeException e) {
+                CraftBookBukkitUtil.printStacktrace(e);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+
+        scheduled = false;
+        flush();
+    }
+
+    public int getPendingCount() {
+
+        return pending.size();
+    }
+
+    public long getRequestedCount() {
+
+        return requestedCount;
+    }
+
+    public long getAppliedCount() {
+
+        return appliedCount;
+    }
+
+    public long getCancelledCount() {
+
+        return cancelledCount;
+    }
+
+    public long getPhysicsCount() {
+
+        return physicsCount;
+    }
+
+    private static final class PendingOutput {
+
+        private final Block block;
+        private final Block source;
+        private final long key;
+        private boolean state;
+
+        PendingOutput(Block block, Block source, boolean state) {
+
+            this.block = block;
+            this.source = source;
+            this.state = state;
+            key = LocationUtil.toBlockKey(block);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sk89q.craftbook.mechanics.ic;
+
+import com.sk89q.craftbook.ChangedSign;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds state that ICs keep on their sign, such as a clock's current tick, in memory. The sign lines of an IC are
+ * already kept in its {@link ChangedSign}, so rather than sending a sign update every time the state changes, the IC
+ * is marked dirty and its sign is written on an interval, or when the sign is needed in the world.
+ */
+public class ICStateRegisters implements Runnable {
+
+    private final Set<IC> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final int interval;
+    private BukkitTask task;
+
+    private long markedCount = 0;
+    private long flushedCount = 0;
+
+    /**
+     * @param interval The amount of ticks between writing dirty signs, or 0 to write them straight away
+     */
+    public ICStateRegisters(int interval) {
+
+        this.interval = interval;
+    }
+
+    public void enable() {
+
+        if(interval > 0)
+            task = CraftBookPlugin.server().getScheduler().runTaskTimer(CraftBookPlugin.inst(), this, interval, interval);
+    }
+
+    public void disable() {
+
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
+        flushAll();
+    }
+
+    /**
+     * Marks the state on the sign of an IC as changed.
+     *
+     * @param ic The IC
+     */
+    public void mark(IC ic) {
+
+        markedCount++;
+        if(task == null)
+            write(ic);
+        else
+            dirty.add(ic);
+    }
+
+    /**
+     * Writes the sign of an IC straight away, if its state has changed.
+     *
+     * @param ic The IC
+     */
+    public void flush(IC ic) {
+
+        if(dirty.remove(ic))
+            write(ic);
+    }
+
+    /**
+     * Writes the signs of all dirty ICs.
+     */
+    public void flushAll() {
+
+        List<IC> flushed = new ArrayList<>(dirty);
+        dirty.clear();
+        for(IC ic : flushed)
+            write(ic);
+    }
+
+    @Override
+    public void run() {
+
+        flushAll();
+    }
+
+    public int getDirtyCount() {
+
+        return dirty.size();
+    }
+
+    public long getMarkedCount() {
+
+        return markedCount;
+    }
+
+    public long getFlushedCount() {
+
+        return flushedCount;
+    }
+
+    private void write(IC ic) {
+
+        ChangedSign sign = ic.getSign();
+        if(!sign.getBlock().getWorld().isChunkLoaded(sign.getX() >> 4, sign.getZ() >> 4)) return;
+        if(sign.flush())
+            flushedCount++;
+    }
+}
@@ -0,0 +1,260 @@
+package com.sk89q.craftbook.mechanics.ic;
+
+import com.sk89q.craftbook.ChangedSign;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.core.timings.Timings;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Collects redstone input changes to ICs, and triggers each IC once per batch with the input state at that time.
+ * Changes that arrive while a batch is waiting to run are merged into it, rather than triggering the IC again.
+ */
+public class ICTriggerScheduler implements Runnable {
+
+    /**
+     * The amount of ticks a batch waits before running, to let the inputs settle.
+     */
+    private static final int DELAY = 2;
+
+    private Map<Block, PendingTrigger> pending = new LinkedHashMap<>();
+    private BukkitTask task;
+
+    private long requestedCount = 0;
+    private long triggeredCount = 0;
+    private long collapsedCount = 0;
+
+    /**
+     * Schedules an IC to be triggered by a change from the given source block. If the IC is already waiting to be
+     * triggered, the source is added to that trigger instead.
+     *
+     * @param block The sign block of the IC
+     * @param source The block that changed
+     * @param id The ID of the IC
+     * @param family The family of the IC
+     * @param ic The IC
+     */
+    public void schedule(Block block, Block source, String id, ICFamily family, IC ic) {
+
+        requestedCount++;
+
+        PendingTrigger trigger = pending.get(block);
+        if(trigger == null) {
+            pending.put(block, new PendingTrigger(block, source, id, family, ic));
+        } else {
+            trigger.id = id;
+            trigger.family = family;
+            trigger.ic = ic;
+            trigger.sources.add(source);
+            collapsedCount++;
+        }
+
+        if(task == null)
+            task = CraftBookPlugin.server().getScheduler().runTaskLater(CraftBookPlugin.inst(), this, DELAY);
+    }
+
+    @Override
+    public void run() {
+
+        task = null;
+
+        // Anything scheduled by these triggers goes into the next batch.
+        Map<Block, PendingTrigger> batch = pending;
+        pending = new LinkedHashMap<>();
+
+        for(PendingTrigger trigger : batch.values()) {
+            try {
+                trigger.trigger();
+            } catch (RuntimeException ex) {
+                // Exclude these exceptions so that we don't spam consoles because of Bukkit
+                if (ex instanceof IllegalArgumentException && ex.getMessage() != null && ex.getMessage().contains("Null ChangedSign found"))
+                    continue;
+                // One broken IC shouldn't stop the rest of the batch.
+                CraftBookPlugin.logger().log(Level.WARNING, "Failed to trigger IC at " + trigger.block.getLocation().toString());
+                CraftBookBukkitUtil.printStacktrace(ex);
+            }
+        }
+    }
+
+    /**
+     * Drops all pending triggers.
+     */
+    public void clear() {
+
+        pending.clear();
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Gets the amount of input changes that have been scheduled.
+     *
+     * @return The amount of scheduled input changes
+     */
+    public long getRequestedCount() {
+
+        return requestedCount;
+    }
+
+    /**
+     * Gets the amount of times an IC has actually been triggered.
+     *
+     * @return The amount of triggers
+     */
+    public long getTriggeredCount() {
+
+        return triggeredCount;
+    }
+
+    /**
+     * Gets the amount of input changes that were merged into a trigger that was already waiting, rather than
+     * triggering the IC again.
+     *
+     * @return The amount of collapsed triggers
+     */
+    public long getCollapsedCount() {
+
+        return collapsedCount;
+    }
+
+    private final class PendingTrigger {
+
+        private final Block block;
+        private final Set<Block> sources = new LinkedHashSet<>();
+        private String id;
+        private ICFamily family;
+        private IC ic;
+
+        PendingTrigger(Block block, Block source, String id, ICFamily family, IC ic) {
+
+            this.block = block;
+            this.id = id;
+            this.family = family;
+            this.ic = ic;
+            sources.add(source);
+        }
+
+        void trigger() {
+
+            if (block.getType() != Material.WALL_SIGN) return;
+
+            ChipState chipState;
+            ICManager.CachedIC cached = ICManager.lookupCachedIC(block);
+            AbstractChipState chip = cached != null && cached.ic == ic ? cached.getChipState(family) : null;
+            if(chip != null) {
+                chip.setSources(sources);
+                chipState = chip;
+            } else if(sources.size() == 1) {
+                ChangedSign sign = CraftBookBukkitUtil.toChangedSign(block);
+                chipState = family.detect(BukkitAdapter.adapt(sources.iterator().next().getLocation()), sign);
+            } else {
+                ChangedSign sign = CraftBookBukkitUtil.toChangedSign(block);
+                ChipState[] states = new ChipState[sources.size()];
+                int i = 0;
+                for(Block source : sources)
+                    states[i++] = family.detect(BukkitAdapter.adapt(source.getLocation()), sign);
+                chipState = new MergedChipState(states);
+            }
+
+            for (int i = 0; i < chipState.getInputCount(); i++) {
+                if (chipState.isTriggered(i)) {
+                    triggeredCount++;
+                    Timings timings = CraftBookPlugin.inst().getTimings();
+                    if(timings == null) {
+                        ic.trigger(chipState);
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        ic.trigger(chipState);
+                    } finally {
+                        timings.recordIC(id, block, System.nanoTime() - start);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A chip state that counts a pin as triggered if any of the merged sources triggered it. Everything else reads the
+     * live state of the blocks, so it doesn't matter which state answers.
+     */
+    private static final class MergedChipState implements ChipState {
+
+        private final ChipState[] states;
+
+        MergedChipState(ChipState[] states) {
+
+            this.states = states;
+        }
+
+        @Override
+        public boolean get(int pin) {
+
+            return states[0].get(pin);
+        }
+
+        @Override
+        public boolean getInput(int inputIndex) {
+
+            return states[0].getInput(inputIndex);
+        }
+
+        @Override
+        public boolean getOutput(int outputIndex) {
+
+            return states[0].getOutput(outputIndex);
+        }
+
+        @Override
+        public void set(int pin, boolean value) {
+
+            states[0].set(pin, value);
+        }
+
+        @Override
+        public void setOutput(int outputIndex, boolean value) {
+
+            states[0].setOutput(outputIndex, value);
+        }
+
+        @Override
+        public boolean isTriggered(int pin) {
+
+            for(ChipState state : states)
+                if(state.isTriggered(pin))
+                    return true;
+            return false;
+        }
+
+        @Override
+        public boolean isValid(int pin) {
+
+            return states[0].isValid(pin);
+        }
+
+        @Override
+        public int getInputCount() {
+
+            return states[0].getInputCount();
+        }
+
+        @Override
+        public int getOutputCount() {
+
+            return states[0].getOutputCount();
+        }
+    }
+}
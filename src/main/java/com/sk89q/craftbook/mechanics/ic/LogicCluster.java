@@ -0,0 +1,333 @@
+package com.sk89q.craftbook.mechanics.ic;
+
+import com.sk89q.craftbook.util.ICUtil;
+import com.sk89q.craftbook.util.LocationUtil;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.type.Switch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A group of logic ICs that are wired to each other directly through levers, compiled into a netlist so that the
+ * whole group can be simulated in memory. Levers that only feed other ICs of the group are updated without physics,
+ * so only the outputs that something outside of the group can see go through the world.
+ */
+class LogicCluster {
+
+    private final World world;
+    private final Map<Long, Node> nodes = new LinkedHashMap<>();
+    private final Map<Long, Net> nets = new HashMap<>();
+    private final List<Net> externalNets = new ArrayList<>();
+    private final List<Net> drivenNets = new ArrayList<>();
+    private final Deque<Node> queue = new ArrayDeque<>();
+
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+
+    private boolean dissolved;
+
+    LogicCluster(World world) {
+
+        this.world = world;
+    }
+
+    Node addNode(Block block, Block icBlock, String id, ICFamily family, IC ic, int inputs, int outputs) {
+
+        Node node = new Node(block, icBlock, id, family, ic, inputs, outputs);
+        nodes.put(LocationUtil.toBlockKey(block), node);
+        return node;
+    }
+
+    Net getOrCreateNet(Block block) {
+
+        return nets.computeIfAbsent(LocationUtil.toBlockKey(block), key -> new Net(block));
+    }
+
+    Collection<Net> getNets() {
+
+        return nets.values();
+    }
+
+    /**
+     * Sorts the nets and works out the bounds of the cluster, once all nodes have been added.
+     */
+    void finish() {
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for(Node node : nodes.values()) {
+            minX = Math.min(minX, node.block.getX());
+            minY = Math.min(minY, node.block.getY());
+            minZ = Math.min(minZ, node.block.getZ());
+            maxX = Math.max(maxX, node.block.getX());
+            maxY = Math.max(maxY, node.block.getY());
+            maxZ = Math.max(maxZ, node.block.getZ());
+        }
+        for(Net net : nets.values()) {
+            minX = Math.min(minX, net.block.getX());
+            minY = Math.min(minY, net.block.getY());
+            minZ = Math.min(minZ, net.block.getZ());
+            maxX = Math.max(maxX, net.block.getX());
+            maxY = Math.max(maxY, net.block.getY());
+            maxZ = Math.max(maxZ, net.block.getZ());
+
+            if(net.driver == null)
+                externalNets.add(net);
+            else
+                drivenNets.add(net);
+        }
+
+        // Anything touching a pin can change how it behaves.
+        this.minX = minX - 1;
+        this.minY = minY - 1;
+        this.minZ = minZ - 1;
+        this.maxX = maxX + 1;
+        this.maxY = maxY + 1;
+        this.maxZ = maxZ + 1;
+    }
+
+    World getWorld() {
+
+        return world;
+    }
+
+    Collection<Node> getNodes() {
+
+        return nodes.values();
+    }
+
+    Node getNode(long key) {
+
+        return nodes.get(key);
+    }
+
+    Net getNet(long key) {
+
+        return nets.get(key);
+    }
+
+    boolean isDissolved() {
+
+        return dissolved;
+    }
+
+    void setDissolved() {
+
+        dissolved = true;
+        queue.clear();
+    }
+
+    /**
+     * Checks whether a change to the given block could affect this cluster.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return If the block is within the cluster
+     */
+    boolean contains(int x, int y, int z) {
+
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    boolean overlapsChunk(int chunkX, int chunkZ) {
+
+        return minX >> 4 <= chunkX && maxX >> 4 >= chunkX && minZ >> 4 <= chunkZ && maxZ >> 4 >= chunkZ;
+    }
+
+    /**
+     * Queues a node to be triggered because of a change at one of its input pins.
+     *
+     * @param node The node
+     * @param source The key of the block that changed
+     */
+    void trigger(Node node, long source) {
+
+        for(int pin = 0; pin < node.inputs; pin++) {
+            if(node.pins[pin] != null && node.pins[pin].key == source)
+                node.queue(pin);
+        }
+    }
+
+    /**
+     * Runs queued triggers until the cluster settles or the step limit is reached, and then writes the changed
+     * outputs to the world.
+     *
+     * @param maxSteps The most ICs to trigger
+     * @return If triggers are still queued, such as for a clock built out of the cluster
+     */
+    boolean evaluate(int maxSteps) {
+
+        for(Net net : externalNets)
+            net.value = AbstractChipState.isPowered(net.block);
+
+        int steps = 0;
+        while(!queue.isEmpty() && steps++ < maxSteps) {
+            Node node = queue.poll();
+            node.triggered = node.pending;
+            node.pending = 0;
+            node.queued = false;
+            node.ic.trigger(node);
+            node.triggered = 0;
+        }
+
+        for(Net net : drivenNets) {
+            if(!net.changed) continue;
+            net.changed = false;
+            if(net.exported) {
+                ICUtil.setState(net.block, net.value, net.driver.icBlock);
+            } else if(net.block.getType() == Material.LEVER) {
+                Switch lever = (Switch) net.block.getBlockData();
+                if(lever.isPowered() != net.value) {
+                    lever.setPowered(net.value);
+                    net.block.setBlockData(lever, false);
+                }
+            }
+        }
+
+        return !queue.isEmpty();
+    }
+
+    private void drive(Net net, boolean value) {
+
+        if(net.value == value) return;
+        net.value = value;
+        net.changed = true;
+        for(int i = 0; i < net.readers.size(); i++)
+            net.readers.get(i).queue(net.readerPins.get(i));
+    }
+
+    /**
+     * The block at one or more pins. Nets driven by an IC of the cluster hold their value in memory, everything else
+     * is read from the world before each evaluation.
+     */
+    static final class Net {
+
+        final Block block;
+        final long key;
+        final List<Node> readers = new ArrayList<>();
+        final List<Integer> readerPins = new ArrayList<>();
+        Node driver;
+        boolean exported;
+        boolean value;
+        boolean changed;
+
+        Net(Block block) {
+
+            this.block = block;
+            key = LocationUtil.toBlockKey(block);
+            value = AbstractChipState.isPowered(block);
+        }
+    }
+
+    /**
+     * A single IC of the cluster, which acts as its own chip state when triggered.
+     */
+    final class Node implements ChipState {
+
+        final Block block;
+        final Block icBlock;
+        final String id;
+        final ICFamily family;
+        final IC ic;
+        final int inputs;
+        final int outputs;
+        final Net[] pins;
+        final boolean[] valid;
+
+        private int pending;
+        private int triggered;
+        private boolean queued;
+
+        Node(Block block, Block icBlock, String id, ICFamily family, IC ic, int inputs, int outputs) {
+
+            this.block = block;
+            this.icBlock = icBlock;
+            this.id = id;
+            this.family = family;
+            this.ic = ic;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            pins = new Net[inputs + outputs];
+            valid = new boolean[inputs + outputs];
+        }
+
+        int getPending() {
+
+            return pending;
+        }
+
+        private void queue(int pin) {
+
+            pending |= 1 << pin;
+            if(!queued) {
+                queued = true;
+                queue.add(this);
+            }
+        }
+
+        @Override
+        public boolean get(int pin) {
+
+            return pin >= 0 && pin < pins.length && pins[pin] != null && pins[pin].value;
+        }
+
+        @Override
+        public boolean getInput(int inputIndex) {
+
+            return get(inputIndex);
+        }
+
+        @Override
+        public boolean getOutput(int outputIndex) {
+
+            return get(outputIndex + inputs);
+        }
+
+        @Override
+        public void set(int pin, boolean value) {
+
+            // Like a world chip state, only levers attached to this IC can be set.
+            if(pin >= inputs && pin < pins.length && pins[pin] != null && pins[pin].driver == this)
+                drive(pins[pin], value);
+        }
+
+        @Override
+        public void setOutput(int outputIndex, boolean value) {
+
+            set(outputIndex + inputs, value);
+        }
+
+        @Override
+        public boolean isTriggered(int pin) {
+
+            return pin >= 0 && pin < 32 && (triggered & 1 << pin) != 0;
+        }
+
+        @Override
+        public boolean isValid(int pin) {
+
+            return pin >= 0 && pin < valid.length && valid[pin];
+        }
+
+        @Override
+        public int getInputCount() {
+
+            return inputs;
+        }
+
+        @Override
+        public int getOutputCount() {
+
+            return outputs;
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package com.sk89q.craftbook.mechanics.ic;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.core.timings.Timings;
+import com.sk89q.craftbook.mechanics.ic.families.Family3I3O;
+import com.sk89q.craftbook.mechanics.ic.families.Family3ISO;
+import com.sk89q.craftbook.mechanics.ic.families.FamilySI3O;
+import com.sk89q.craftbook.mechanics.ic.families.FamilySISO;
+import com.sk89q.craftbook.mechanics.ic.families.FamilyVIVO;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.AndGate;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.DeMultiplexer;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.EdgeTriggerDFlipFlop;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.FullAdder;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.FullSubtractor;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.HalfAdder;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.HalfSubtractor;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.InvertedRsNandLatch;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.Inverter;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.JkFlipFlop;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.LevelTriggeredDFlipFlop;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.Multiplexer;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.NandGate;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.Repeater;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.RsNandLatch;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.RsNorFlipFlop;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.ToggleFlipFlop;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.XnorGate;
+import com.sk89q.craftbook.mechanics.ic.gates.logic.XorGate;
+import com.sk89q.craftbook.util.BlockUtil;
+import com.sk89q.craftbook.util.LocationUtil;
+import com.sk89q.craftbook.util.RedstoneUtil;
+import com.sk89q.craftbook.util.SignUtil;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.type.Switch;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Finds groups of logic ICs that are wired to each other directly through levers, and simulates each group in memory
+ * as a {@link LogicCluster}. Any change to the blocks around a group dissolves it, handing any triggers it had not yet
+ * run back to the {@link ICTriggerScheduler}, and it is compiled again on the next input change.
+ */
+public class LogicClusterManager implements Listener, Runnable {
+
+    /**
+     * ICs that only depend on their chip state, so can be triggered against an in-memory one.
+     */
+    private static final Set<Class<? extends IC>> LOGIC_ICS = new HashSet<>(Arrays.asList(AndGate.class, NandGate.class,
+            XorGate.class, XnorGate.class, Inverter.class, Repeater.class, RsNandLatch.class, InvertedRsNandLatch.class,
+            RsNorFlipFlop.class, JkFlipFlop.class, ToggleFlipFlop.class, LevelTriggeredDFlipFlop.class,
+            EdgeTriggerDFlipFlop.class, HalfAdder.class, FullAdder.class, HalfSubtractor.class, FullSubtractor.class,
+            Multiplexer.class, DeMultiplexer.class));
+
+    /**
+     * Families whose outputs directly follow their inputs, and whose inputs are read pin by pin.
+     */
+    private static final Set<Class<? extends ICFamily>> LOGIC_FAMILIES = new HashSet<>(Arrays.asList(FamilySISO.class,
+            Family3ISO.class, FamilySI3O.class, Family3I3O.class, FamilyVIVO.class));
+
+    /**
+     * The amount of ticks a batch waits before running, the same as a normal IC trigger.
+     */
+    private static final int DELAY = 2;
+
+    /**
+     * How long to wait before trying to compile a cluster around an IC that couldn't be part of one.
+     */
+    private static final long RETRY_DELAY = 30000;
+
+    /**
+     * The amount of triggers each IC of a cluster gets per evaluation, before the rest are left for the next one.
+     */
+    private static final int STEPS_PER_IC = 8;
+
+    private final ICMechanic mechanic;
+    private final int maxSize;
+
+    private final Map<UUID, List<LogicCluster>> clusters = new HashMap<>();
+    private final Map<UUID, Map<Long, LogicCluster>> clustersBySign = new HashMap<>();
+    private final Map<UUID, Map<Long, Long>> ineligible = new HashMap<>();
+    private final Set<LogicCluster> dirty = new LinkedHashSet<>();
+    private BukkitTask task;
+
+    private long compiledCount = 0;
+    private long evaluationCount = 0;
+    private long dissolvedCount = 0;
+
+    public LogicClusterManager(ICMechanic mechanic, int maxSize) {
+
+        this.mechanic = mechanic;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Passes an input change of an IC to its cluster, compiling one if needed.
+     *
+     * @param block The sign block of the IC
+     * @param source The block that changed
+     * @param id The ID of the IC
+     * @param family The family of the IC
+     * @param ic The IC
+     * @return If the cluster handled the change, otherwise the IC should be triggered as normal
+     */
+    public boolean handle(Block block, Block source, String id, ICFamily family, IC ic) {
+
+        if(!isLogicIC(family, ic)) return false;
+
+        UUID world = block.getWorld().getUID();
+        long key = LocationUtil.toBlockKey(block);
+
+        Map<Long, LogicCluster> worldClusters = clustersBySign.get(world);
+        LogicCluster cluster = worldClusters == null ? null : worldClusters.get(key);
+        if(cluster == null) {
+            Map<Long, Long> worldIneligible = ineligible.get(world);
+            Long retry = worldIneligible == null ? null : worldIneligible.get(key);
+            if(retry != null) {
+                if(retry > System.currentTimeMillis()) return false;
+                worldIneligible.remove(key);
+            }
+            cluster = compile(block, id, family, ic);
+            if(cluster == null) return false;
+        }
+
+        LogicCluster.Node node = cluster.getNode(key);
+        if(node.ic != ic) {
+            // The IC has been recreated, so the cluster is out of date.
+            dissolve(cluster);
+            return false;
+        }
+
+        long sourceKey = LocationUtil.toBlockKey(source);
+        LogicCluster.Net net = cluster.getNet(sourceKey);
+        if(net != null && net.driver != null) {
+            // Outputs of the cluster that are visible outside of it cause changes here as well, which have already
+            // been simulated. If it doesn't match, something else has flipped the lever.
+            if(net.value == AbstractChipState.isPowered(source)) return true;
+            dissolve(cluster);
+            return false;
+        }
+
+        cluster.trigger(node, sourceKey);
+        dirty.add(cluster);
+        if(task == null)
+            task = CraftBookPlugin.server().getScheduler().runTaskLater(CraftBookPlugin.inst(), this, DELAY);
+        return true;
+    }
+
+    @Override
+    public void run() {
+
+        task = null;
+
+        Timings timings = CraftBookPlugin.inst().getTimings();
+        List<LogicCluster> batch = new ArrayList<>(dirty);
+        dirty.clear();
+
+        for(LogicCluster cluster : batch) {
+            if(cluster.isDissolved()) continue;
+            long start = System.nanoTime();
+            try {
+                evaluationCount++;
+                if(cluster.evaluate(cluster.getNodes().size() * STEPS_PER_IC))
+                    dirty.add(cluster);
+            } catch (RuntimeException e) {
+                CraftBookPlugin.logger().log(Level.WARNING, "Failed to simulate a logic cluster, falling back to normal ICs.");
+                CraftBookBukkitUtil.printStacktrace(e);
+                dissolve(cluster);
+            }
+            if(timings != null)
+                timings.getMechanicTiming(getClass()).record(System.nanoTime() - start);
+        }
+
+        if(!dirty.isEmpty() && task == null)
+            task = CraftBookPlugin.server().getScheduler().runTaskLater(CraftBookPlugin.inst(), this, DELAY);
+    }
+
+    /**
+     * Drops all clusters, handing their pending triggers back to the normal IC path.
+     */
+    public void clear() {
+
+        for(List<LogicCluster> worldClusters : new ArrayList<>(clusters.values()))
+            for(LogicCluster cluster : new ArrayList<>(worldClusters))
+                dissolve(cluster);
+        clusters.clear();
+        clustersBySign.clear();
+        ineligible.clear();
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    public int getClusterCount() {
+
+        int count = 0;
+        for(List<LogicCluster> worldClusters : clusters.values())
+            count += worldClusters.size();
+        return count;
+    }
+
+    public long getCompiledCount() {
+
+        return compiledCount;
+    }
+
+    public long getEvaluationCount() {
+
+        return evaluationCount;
+    }
+
+    public long getDissolvedCount() {
+
+        return dissolvedCount;
+    }
+
+    private static boolean isLogicIC(ICFamily family, IC ic) {
+
+        return LOGIC_ICS.contains(ic.getClass()) && LOGIC_FAMILIES.contains(family.getClass());
+    }
+
+    /**
+     * Walks the lever connections out from an IC to find the rest of its cluster.
+     *
+     * @return The cluster, or null if the IC is not directly wired to any other logic IC
+     */
+    private LogicCluster compile(Block block, String id, ICFamily family, IC ic) {
+
+        LogicCluster cluster = new LogicCluster(block.getWorld());
+        Deque<LogicCluster.Node> toVisit = new ArrayDeque<>();
+        toVisit.add(addNode(cluster, block, id, family, ic));
+
+        while(!toVisit.isEmpty()) {
+            if(cluster.getNodes().size() > maxSize) {
+                markIneligible(cluster);
+                return null;
+            }
+
+            LogicCluster.Node node = toVisit.poll();
+            AbstractChipState chip = (AbstractChipState) node.family.detect(BukkitAdapter.adapt(node.block.getLocation()), node.ic.getSign());
+            for(int pin = 0; pin < node.pins.length; pin++) {
+                Block pinBlock = chip.getPinBlock(pin);
+                if(pinBlock == null) continue;
+
+                LogicCluster.Net net = cluster.getOrCreateNet(pinBlock);
+                node.pins[pin] = net;
+                node.valid[pin] = AbstractChipState.isValidPin(pinBlock);
+                if(pinBlock.getType() != Material.LEVER) continue;
+
+                Block attached = pinBlock.getRelative(((Switch) pinBlock.getBlockData()).getFacing().getOppositeFace());
+                if(pin < node.inputs) {
+                    net.readers.add(node);
+                    net.readerPins.add(pin);
+                    // Find the IC whose output this lever is.
+                    for(BlockFace face : LocationUtil.getDirectFaces()) {
+                        Block sign = attached.getRelative(face);
+                        if(sign.getType() == Material.WALL_SIGN && SignUtil.getBackBlock(sign).equals(attached))
+                            visit(cluster, toVisit, sign);
+                    }
+                } else if(attached.equals(node.icBlock)) {
+                    if(net.driver != null && net.driver != node) {
+                        markIneligible(cluster);
+                        return null;
+                    }
+                    net.driver = node;
+                    // Find the ICs that read this lever, which always have their sign next to it.
+                    for(BlockFace face : LocationUtil.getDirectFaces()) {
+                        Block sign = pinBlock.getRelative(face);
+                        if(sign.getType() == Material.WALL_SIGN)
+                            visit(cluster, toVisit, sign);
+                    }
+                }
+            }
+        }
+
+        boolean connected = false;
+        for(LogicCluster.Net net : cluster.getNets()) {
+            if(net.driver == null) continue;
+            if(!net.readers.isEmpty())
+                connected = true;
+            net.exported = net.readers.isEmpty() || isVisibleOutside(cluster, net);
+        }
+        if(cluster.getNodes().size() < 2 || !connected) {
+            markIneligible(cluster);
+            return null;
+        }
+
+        cluster.finish();
+        UUID world = block.getWorld().getUID();
+        clusters.computeIfAbsent(world, uid -> new ArrayList<>()).add(cluster);
+        Map<Long, LogicCluster> worldClusters = clustersBySign.computeIfAbsent(world, uid -> new HashMap<>());
+        for(LogicCluster.Node node : cluster.getNodes())
+            worldClusters.put(LocationUtil.toBlockKey(node.block), cluster);
+        compiledCount++;
+        CraftBookPlugin.logDebugMessage("Compiled a logic cluster of " + cluster.getNodes().size() + " ICs at " + block.getLocation(), "ic-clusters");
+        return cluster;
+    }
+
+    private void visit(LogicCluster cluster, Deque<LogicCluster.Node> toVisit, Block sign) {
+
+        if(cluster.getNode(LocationUtil.toBlockKey(sign)) != null) return;
+
+        Map<Long, LogicCluster> worldClusters = clustersBySign.get(sign.getWorld().getUID());
+        if(worldClusters != null && worldClusters.containsKey(LocationUtil.toBlockKey(sign))) return;
+
+        Object[] icData = mechanic.setupIC(sign, true);
+        if(icData == null || !isLogicIC((ICFamily) icData[1], (IC) icData[2])) return;
+
+        toVisit.add(addNode(cluster, sign, (String) icData[0], (ICFamily) icData[1], (IC) icData[2]));
+    }
+
+    private static LogicCluster.Node addNode(LogicCluster cluster, Block sign, String id, ICFamily family, IC ic) {
+
+        ChipState chip = family.detect(BukkitAdapter.adapt(sign.getLocation()), ic.getSign());
+        return cluster.addNode(sign, SignUtil.getBackBlock(sign), id, family, ic, chip.getInputCount(), chip.getOutputCount());
+    }
+
+    /**
+     * Checks whether anything other than the ICs of the cluster could react to a lever, in which case it has to be
+     * updated with physics. A lever powers the blocks next to it, and strongly powers the block it is attached to.
+     */
+    private static boolean isVisibleOutside(LogicCluster cluster, LogicCluster.Net net) {
+
+        Block lever = net.block;
+        Block attached = net.driver.icBlock;
+        for(Block block : new Block[] {lever, attached}) {
+            for(BlockFace face : LocationUtil.getDirectFaces()) {
+                Block relative = block.getRelative(face);
+                if(relative.equals(lever) || relative.equals(attached)) continue;
+
+                Material type = relative.getType();
+                if(BlockUtil.isAir(type) || type == Material.LEVER) continue;
+                if(type == Material.WALL_SIGN) {
+                    if(cluster.getNode(LocationUtil.toBlockKey(relative)) != null) continue;
+                    return true;
+                }
+                if(type.isOccluding() && !RedstoneUtil.isRedstoneTarget(relative)) continue;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markIneligible(LogicCluster cluster) {
+
+        long retry = System.currentTimeMillis() + RETRY_DELAY;
+        Map<Long, Long> worldIneligible = ineligible.computeIfAbsent(cluster.getWorld().getUID(), uid -> new HashMap<>());
+        for(LogicCluster.Node node : cluster.getNodes())
+            worldIneligible.put(LocationUtil.toBlockKey(node.block), retry);
+    }
+
+    private void dissolve(LogicCluster cluster) {
+
+        if(cluster.isDissolved()) return;
+
+        UUID world = cluster.getWorld().getUID();
+        List<LogicCluster> worldClusters = clusters.get(world);
+        if(worldClusters != null)
+            worldClusters.remove(cluster);
+        Map<Long, LogicCluster> bySign = clustersBySign.get(world);
+        if(bySign != null)
+            for(LogicCluster.Node node : cluster.getNodes())
+                bySign.remove(LocationUtil.toBlockKey(node.block));
+        dirty.remove(cluster);
+        dissolvedCount++;
+
+        // Anything that was waiting to be simulated is triggered the normal way instead.
+        for(LogicCluster.Node node : cluster.getNodes()) {
+            int pending = node.getPending();
+            for(int pin = 0; pin < node.inputs; pin++) {
+                if((pending & 1 << pin) != 0 && node.pins[pin] != null)
+                    mechanic.getTriggerScheduler().schedule(node.block, node.pins[pin].block, node.id, node.family, node.ic);
+            }
+        }
+        cluster.setDissolved();
+    }
+
+    private void invalidate(Block block) {
+
+        List<LogicCluster> worldClusters = clusters.get(block.getWorld().getUID());
+        if(worldClusters == null || worldClusters.isEmpty()) return;
+
+        for(LogicCluster cluster : new ArrayList<>(worldClusters)) {
+            if(cluster.contains(block.getX(), block.getY(), block.getZ()))
+                dissolve(cluster);
+        }
+    }
+
+    private void invalidate(List<Block> blocks) {
+
+        for(Block block : blocks)
+            invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSignChange(SignChangeEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+
+        invalidate(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+
+        invalidate(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+
+        invalidate(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+
+        invalidate(event.getBlock());
+        for(Block block : event.getBlocks()) {
+            invalidate(block);
+            invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+
+        invalidate(event.getBlock());
+        for(Block block : event.getBlocks()) {
+            invalidate(block);
+            invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        UUID world = event.getWorld().getUID();
+        List<LogicCluster> worldClusters = clusters.get(world);
+        if(worldClusters != null) {
+            for(LogicCluster cluster : new ArrayList<>(worldClusters)) {
+                if(cluster.overlapsChunk(event.getChunk().getX(), event.getChunk().getZ()))
+                    dissolve(cluster);
+            }
+        }
+
+        Map<Long, Long> worldIneligible = ineligible.get(world);
+        if(worldIneligible != null) {
+            long chunk = LocationUtil.toChunkKey(event.getChunk());
+            worldIneligible.keySet().removeIf(key -> LocationUtil.getChunkKey(key) == chunk);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        UUID world = event.getWorld().getUID();
+        List<LogicCluster> worldClusters = clusters.get(world);
+        if(worldClusters != null)
+            for(LogicCluster cluster : new ArrayList<>(worldClusters))
+                dissolve(cluster);
+        clusters.remove(world);
+        clustersBySign.remove(world);
+        ineligible.remove(world);
+    }
+}
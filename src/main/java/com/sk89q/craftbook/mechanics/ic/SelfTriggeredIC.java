@@ -40,4 +40,15 @@ public interface SelfTriggeredIC extends PersistentIC {
      * @return if the {@link IC} should always be ST.
      */
     boolean isAlwaysST();
+
+    /**
+     * Gets the minimum amount of self-trigger clock cycles between each time this {@link IC} thinks. Expensive ICs can
+     * use this to think less often than cheap ones.
+     *
+     * @return the think interval, where 1 means every cycle.
+     */
+    default int getThinkInterval() {
+
+        return 1;
+    }
 }
@@ -17,7 +17,6 @@
 package com.sk89q.craftbook.mechanics.ic.families;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.ic.AbstractChipState;
 import com.sk89q.craftbook.mechanics.ic.AbstractICFamily;
 import com.sk89q.craftbook.mechanics.ic.ChipState;
@@ -61,16 +60,16 @@ public class Family3I3O extends AbstractICFamily {
         @Override
         protected Block getBlock(int pin) {
 
-            BlockFace fback = SignUtil.getBack(CraftBookBukkitUtil.toSign(sign).getBlock());
-            Block backBlock = CraftBookBukkitUtil.toSign(sign).getBlock().getRelative(fback, 2);
+            BlockFace fback = SignUtil.getBack(sign.getBlock());
+            Block backBlock = sign.getBlock().getRelative(fback, 2);
 
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getFrontBlock(sign.getBlock());
                 case 1:
-                    return SignUtil.getLeftBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getLeftBlock(sign.getBlock());
                 case 2:
-                    return SignUtil.getRightBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getRightBlock(sign.getBlock());
                 case 3:
                     return backBlock.getRelative(fback);
                 case 4:
@@ -105,9 +104,9 @@ public class Family3I3O extends AbstractICFamily {
         @Override
         public void set(int pin, boolean value) {
 
-            Block block = getBlock(pin);
+            Block block = getPinBlock(pin);
             if (block != null) {
-                ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(CraftBookBukkitUtil.toSign(sign).getBlock())));
+                ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(sign.getBlock())));
             }
         }
 
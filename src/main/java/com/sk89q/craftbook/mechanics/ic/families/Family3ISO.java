@@ -17,7 +17,6 @@
 package com.sk89q.craftbook.mechanics.ic.families;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.ic.AbstractChipState;
 import com.sk89q.craftbook.mechanics.ic.AbstractICFamily;
 import com.sk89q.craftbook.mechanics.ic.ChipState;
@@ -62,14 +61,14 @@ public class Family3ISO extends AbstractICFamily {
 
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getFrontBlock(sign.getBlock());
                 case 1:
-                    return SignUtil.getLeftBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getLeftBlock(sign.getBlock());
                 case 2:
-                    return SignUtil.getRightBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getRightBlock(sign.getBlock());
                 case 3:
-                    BlockFace face = SignUtil.getBack(CraftBookBukkitUtil.toSign(sign).getBlock());
-                    return CraftBookBukkitUtil.toSign(sign).getBlock().getRelative(face).getRelative(face);
+                    BlockFace face = SignUtil.getBack(sign.getBlock());
+                    return sign.getBlock().getRelative(face).getRelative(face);
                 default:
                     return null;
             }
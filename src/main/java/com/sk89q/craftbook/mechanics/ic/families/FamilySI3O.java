@@ -17,7 +17,6 @@
 package com.sk89q.craftbook.mechanics.ic.families;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.ic.AbstractChipState;
 import com.sk89q.craftbook.mechanics.ic.AbstractICFamily;
 import com.sk89q.craftbook.mechanics.ic.ChipState;
@@ -60,7 +59,7 @@ public class FamilySI3O extends AbstractICFamily {
         @Override
         protected Block getBlock(int pin) {
 
-            Block bsign = CraftBookBukkitUtil.toSign(sign).getBlock();
+            Block bsign = sign.getBlock();
             BlockFace fback = SignUtil.getBack(bsign);
 
             switch (pin) {
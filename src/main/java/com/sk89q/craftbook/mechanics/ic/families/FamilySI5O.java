@@ -1,7 +1,6 @@
 package com.sk89q.craftbook.mechanics.ic.families;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.ic.AbstractChipState;
 import com.sk89q.craftbook.mechanics.ic.AbstractICFamily;
 import com.sk89q.craftbook.mechanics.ic.ChipState;
@@ -40,13 +39,13 @@ public class FamilySI5O extends AbstractICFamily {
         @Override
         protected Block getBlock(int pin) {
 
-            BlockFace fback = SignUtil.getBack(CraftBookBukkitUtil.toSign(sign).getBlock());
-            Block backBlock = SignUtil.getBackBlock(CraftBookBukkitUtil.toSign(sign).getBlock()).getRelative(fback);
+            BlockFace fback = SignUtil.getBack(sign.getBlock());
+            Block backBlock = SignUtil.getBackBlock(sign.getBlock()).getRelative(fback);
             Block farBlock = backBlock.getRelative(fback);
 
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(CraftBookBukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getFrontBlock(sign.getBlock());
                 case 1:
                     return farBlock.getRelative(fback);
                 case 2:
@@ -84,12 +83,12 @@ public class FamilySI5O extends AbstractICFamily {
         @Override
         public void set(int pin, boolean value) {
 
-            Block block = getBlock(pin);
+            Block block = getPinBlock(pin);
             if (block != null) {
                 if(pin == 1 || pin == 2 || pin == 3)
-                    ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(CraftBookBukkitUtil.toSign(sign).getBlock()), 2));
+                    ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(sign.getBlock()), 2));
                 else
-                    ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(CraftBookBukkitUtil.toSign(sign).getBlock())));
+                    ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(sign.getBlock())));
             }
         }
 
@@ -78,7 +78,7 @@ public class Clock extends AbstractSelfTriggeredIC {
         }
 
         getSign().setLine(3, Short.toString(tick));
-        getSign().update(false);
+        updateState();
     }
 
     @Override
@@ -73,7 +73,7 @@ public class ClockDivider extends AbstractIC {
         // reset count
         count = 0;
         getSign().setLine(3, Integer.toString(count));
-        getSign().update(false);
+        updateState();
     }
 
     public static class Factory extends AbstractICFactory {
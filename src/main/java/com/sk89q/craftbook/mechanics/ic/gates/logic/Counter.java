@@ -88,7 +88,7 @@ public class Counter extends AbstractIC {
         // Update counter value stored on sign if it's changed
         if (curVal != oldVal) {
             getSign().setLine(3, String.valueOf(curVal));
-            getSign().update(false);
+            updateState();
         }
     }
 
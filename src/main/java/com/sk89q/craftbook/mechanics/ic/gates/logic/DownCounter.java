@@ -102,9 +102,8 @@ public class DownCounter extends AbstractIC {
         // Update counter value stored on sign if it's changed
         if (curVal != oldVal) {
             getSign().setLine(3, String.valueOf(curVal));
+            updateState();
         }
-
-        getSign().update(false);
     }
 
     public static class Factory extends AbstractICFactory {
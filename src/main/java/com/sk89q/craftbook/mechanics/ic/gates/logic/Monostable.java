@@ -68,7 +68,7 @@ public class Monostable extends AbstractSelfTriggeredIC {
 
             chip.setOutput(0, true);
             getSign().setLine(3, setting.substring(0, colon));
-            getSign().update(false);
+            updateState();
         }
     }
 
@@ -90,7 +90,7 @@ public class Monostable extends AbstractSelfTriggeredIC {
         }
 
         getSign().setLine(3, Integer.toString(tick));
-        getSign().update(false);
+        updateState();
     }
 
     public static class Factory extends AbstractICFactory {
@@ -33,6 +33,12 @@ public class Driller extends AbstractSelfTriggeredIC {
         if (!chip.getInput(0)) chip.setOutput(0, drill());
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return ((Factory) getFactory()).thinkInterval;
+    }
+
     @Override
     public String getTitle () {
 
@@ -118,6 +124,7 @@ public class Driller extends AbstractSelfTriggeredIC {
 
         int drillSize;
         int maxDrillDepth;
+        int thinkInterval;
 
         public Factory(Server server) {
 
@@ -147,6 +154,7 @@ public class Driller extends AbstractSelfTriggeredIC {
 
             drillSize = config.getInt(path + "drill-size", 3);
             maxDrillDepth = config.getInt(path + "max-drill-depth", 256);
+            thinkInterval = Math.max(1, config.getInt(path + "think-interval", 1));
         }
 
         @Override
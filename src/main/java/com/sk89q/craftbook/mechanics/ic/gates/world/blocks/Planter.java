@@ -6,12 +6,14 @@ import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.ic.AbstractICFactory;
 import com.sk89q.craftbook.mechanics.ic.AbstractSelfTriggeredIC;
 import com.sk89q.craftbook.mechanics.ic.ChipState;
+import com.sk89q.craftbook.mechanics.ic.ConfigurableIC;
 import com.sk89q.craftbook.mechanics.ic.IC;
 import com.sk89q.craftbook.mechanics.ic.ICFactory;
 import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.craftbook.util.ItemUtil;
 import com.sk89q.craftbook.util.SearchArea;
+import com.sk89q.util.yaml.YAMLProcessor;
 import org.bukkit.Material;
 import org.bukkit.Server;
 import org.bukkit.Tag;
@@ -84,6 +86,12 @@ public class Planter extends AbstractSelfTriggeredIC {
             plant();
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return ((Factory) getFactory()).thinkInterval;
+    }
+
     public boolean plant() {
 
         if (item != null && !plantableItem(item)) return false;
@@ -255,7 +263,9 @@ public class Planter extends AbstractSelfTriggeredIC {
         }
     }
 
-    public static class Factory extends AbstractICFactory {
+    public static class Factory extends AbstractICFactory implements ConfigurableIC {
+
+        int thinkInterval;
 
         public Factory(Server server) {
 
@@ -280,6 +290,12 @@ public class Planter extends AbstractSelfTriggeredIC {
             return new String[] {"+oItem to plant id{:data}", "SearchArea"};
         }
 
+        @Override
+        public void addConfiguration(YAMLProcessor config, String path) {
+
+            thinkInterval = Math.max(1, config.getInt(path + "think-interval", 1));
+        }
+
         @Override
         public void verify(ChangedSign sign) throws ICVerificationException {
             if(!SearchArea.isValidArea(CraftBookBukkitUtil.toSign(sign).getBlock(), sign.getLine(3)))
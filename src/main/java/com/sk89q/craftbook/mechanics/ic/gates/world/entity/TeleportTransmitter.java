@@ -12,6 +12,7 @@ import org.bukkit.Server;
 import org.bukkit.entity.Player;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -23,10 +24,47 @@ public class TeleportTransmitter extends AbstractSelfTriggeredIC {
     }
 
     protected static final HistoryHashMap<String, Tuple2<Long, String>> memory = new HistoryHashMap<>(50);
-    protected static HistoryHashMap<String, Location> lastKnownLocations = new HistoryHashMap<>(50);
+    /**
+     * The most frequencies to remember the location of, both in memory and in the persistent data.
+     */
+    private static final int MAX_LOCATIONS = 50;
+
+    protected static HistoryHashMap<String, Location> lastKnownLocations = new HistoryHashMap<>(MAX_LOCATIONS);
 
     protected String band;
 
+    /**
+     * The namespace of the persistent data that holds the last known location of each frequency.
+     */
+    private static final String LOCATIONS_NAMESPACE = "teleport-ic-locations";
+
+    /**
+     * Sets the last known location of a frequency, and stores it if persistent data is enabled. Only the entry for the
+     * frequency is written, along with removing the entry of the frequency it pushes out of memory, if any.
+     *
+     * @param band The frequency
+     * @param location The location
+     */
+    public static void setLastKnownLocation(String band, Location location) {
+
+        // The map keeps insertion order, so the first frequency is the one a new frequency pushes out.
+        String evicted = null;
+        if(!lastKnownLocations.containsKey(band) && lastKnownLocations.size() >= MAX_LOCATIONS)
+            evicted = lastKnownLocations.keySet().iterator().next();
+
+        Location old = lastKnownLocations.put(band, location);
+        if(old != null && old.getWorld() == location.getWorld() && old.getBlockX() == location.getBlockX()
+                && old.getBlockY() == location.getBlockY() && old.getBlockZ() == location.getBlockZ())
+            return;
+
+        if(!(ICMechanic.instance.savePersistentData && CraftBookPlugin.inst().hasPersistentStorage())) return;
+
+        String loc = location.getWorld().getName() + ":" + location.getBlockX() + ":" + location.getBlockY() + ":" + location.getBlockZ();
+        CraftBookPlugin.inst().getPersistentStorage().put(LOCATIONS_NAMESPACE, band, loc);
+        if(evicted != null)
+            CraftBookPlugin.inst().getPersistentStorage().remove(LOCATIONS_NAMESPACE, evicted);
+    }
+
     @Override
     public String getTitle() {
 
@@ -164,41 +202,32 @@ public class TeleportTransmitter extends AbstractSelfTriggeredIC {
                 throw new ICVerificationException("Invalid SearchArea on 4th line!");
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public void load() {
 
             if(!(ICMechanic.instance.savePersistentData && CraftBookPlugin.inst().hasPersistentStorage())) return;
 
-            if(CraftBookPlugin.inst().getPersistentStorage().has("teleport-ic-locations.list")) {
-
-                Set<String> list = new HashSet<>((Set<String>) CraftBookPlugin.inst().getPersistentStorage().get("teleport-ic-locations.list"));
-
-                for(String ent : list) {
-                    String locString = (String) CraftBookPlugin.inst().getPersistentStorage().get("teleport-ic-locations." + ent);
-                    String[] bits = RegexUtil.COLON_PATTERN.split(locString);
-                    Location loc = new Location(Bukkit.getWorld(bits[0]), Double.parseDouble(bits[1]), Double.parseDouble(bits[2]), Double.parseDouble(bits[3]));
-                    TeleportTransmitter.lastKnownLocations.put(ent, loc);
-                }
-            }
-        }
-
-        @Override
-        public void unload() {
-
-            if(!(ICMechanic.instance.savePersistentData && CraftBookPlugin.inst().hasPersistentStorage())) return;
-
-            CraftBookPlugin.inst().getPersistentStorage().set("teleport-ic-locations.list",
-                    new HashSet<>(TeleportTransmitter.lastKnownLocations.keySet()));
-
-            for(Entry<String, Location> locations : TeleportTransmitter.lastKnownLocations.entrySet()) {
-                if(locations == null || locations.getValue() == null)
+            Map<String, Object> locations = CraftBookPlugin.inst().getPersistentStorage().getAll(LOCATIONS_NAMESPACE);
+            Set<String> loaded = new HashSet<>();
+            for(Entry<String, Object> location : locations.entrySet()) {
+                // The list of frequencies is no longer needed, as the entries are found by their namespace.
+                if(location.getKey().equals("list") || !(location.getValue() instanceof String))
                     continue;
 
-                String loc = locations.getValue().getWorld().getName() + ":" + locations.getValue().getBlockX() + ":" + locations.getValue().getBlockY() + ":" + locations.getValue().getBlockZ();
-
-                CraftBookPlugin.inst().getPersistentStorage().set("teleport-ic-locations." + locations.getKey(), loc);
+                String[] bits = RegexUtil.COLON_PATTERN.split((String) location.getValue());
+                if(bits.length < 4 || Bukkit.getWorld(bits[0]) == null)
+                    continue;
+                Location loc = new Location(Bukkit.getWorld(bits[0]), Double.parseDouble(bits[1]), Double.parseDouble(bits[2]), Double.parseDouble(bits[3]));
+                TeleportTransmitter.lastKnownLocations.put(location.getKey(), loc);
+                loaded.add(location.getKey());
             }
+
+            if(locations.containsKey("list"))
+                CraftBookPlugin.inst().getPersistentStorage().remove(LOCATIONS_NAMESPACE, "list");
+            // Drop whatever didn't fit in memory. Locations in worlds that aren't loaded are kept.
+            for(String band : loaded)
+                if(!TeleportTransmitter.lastKnownLocations.containsKey(band))
+                    CraftBookPlugin.inst().getPersistentStorage().remove(LOCATIONS_NAMESPACE, band);
         }
 
         @Override
@@ -79,6 +79,12 @@ public class SentryGun extends AbstractSelfTriggeredIC {
         }
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return ((Factory) getFactory()).thinkInterval;
+    }
+
     public void shoot() {
 
         Player shooter = manned ? getShootingPlayer() : null;
@@ -125,6 +131,7 @@ public class SentryGun extends AbstractSelfTriggeredIC {
     public static class Factory extends AbstractICFactory implements RestrictedIC, ConfigurableIC {
 
         public boolean inverted = false;
+        public int thinkInterval = 1;
 
         public Factory(Server server) {
 
@@ -153,6 +160,7 @@ public class SentryGun extends AbstractSelfTriggeredIC {
         public void addConfiguration(YAMLProcessor config, String path) {
 
             inverted = config.getBoolean(path + "inverted", false);
+            thinkInterval = Math.max(1, config.getInt(path + "think-interval", 1));
         }
     }
 }
\ No newline at end of file
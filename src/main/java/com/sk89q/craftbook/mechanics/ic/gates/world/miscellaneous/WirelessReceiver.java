@@ -31,11 +31,10 @@ import com.sk89q.craftbook.mechanics.ic.ChipState;
 import com.sk89q.craftbook.mechanics.ic.ConfigurableIC;
 import com.sk89q.craftbook.mechanics.ic.IC;
 import com.sk89q.craftbook.mechanics.ic.ICFactory;
+import com.sk89q.craftbook.mechanics.ic.ICManager;
 import com.sk89q.craftbook.mechanics.ic.ICMechanic;
 import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
-import com.sk89q.squirrelid.Profile;
-import com.sk89q.squirrelid.resolver.HttpRepositoryService;
-import com.sk89q.squirrelid.resolver.ProfileService;
+import com.sk89q.craftbook.util.ProfileResolver;
 import com.sk89q.util.yaml.YAMLProcessor;
 
 public class WirelessReceiver extends AbstractSelfTriggeredIC {
@@ -56,16 +55,20 @@ public class WirelessReceiver extends AbstractSelfTriggeredIC {
                 String line3 = getLine(3);
                 OfflinePlayer player = Bukkit.getOfflinePlayer(getLine(3));
                 if(player.hasPlayedBefore()) {
-                    try {
-                        ProfileService resolver = HttpRepositoryService.forMinecraft();
-                        Profile profile = resolver.findByName(player.getName()); // May be null
-
-                        UUID uuid = profile.getUniqueId();
-                        band = CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid);
-                        getSign().setLine(3, line3);
-                        getSign().update(false);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    ProfileResolver resolver = CraftBookPlugin.inst().getProfileResolver();
+                    if(resolver.isCached(player.getName())) {
+                        UUID uuid = resolver.getCached(player.getName());
+                        if(uuid != null) {
+                            band = CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid);
+                            getSign().setLine(3, line3);
+                            getSign().update(false);
+                        }
+                    } else {
+                        // Don't wait for the lookup, load again once it is done if this IC is still the one in use.
+                        resolver.resolve(player.getName(), uuid -> {
+                            if(uuid != null && ICManager.getCachedIC(getSign().getBlock().getLocation()) == this)
+                                load();
+                        });
                     }
                 }
             }
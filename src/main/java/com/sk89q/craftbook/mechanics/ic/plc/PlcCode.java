@@ -0,0 +1,89 @@
+package com.sk89q.craftbook.mechanics.ic.plc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The source of a PLC program, along with its hash, which is worked out the first time it is needed. Code read from
+ * code block signs also knows which signs it was read from.
+ */
+final class PlcCode {
+
+    /**
+     * Stands in for a column of signs without a code block.
+     */
+    static final PlcCode NOT_FOUND = new PlcCode(null);
+
+    private final String text;
+    private final int top;
+    private final int bottom;
+    private String hash;
+
+    PlcCode(String text) {
+
+        this(text, 0, -1);
+    }
+
+    /**
+     * @param text The code
+     * @param top The height of the code block sign
+     * @param bottom The height of the lowest sign the code was read from
+     */
+    PlcCode(String text, int top, int bottom) {
+
+        this.text = text;
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    String getText() {
+
+        return text;
+    }
+
+    /**
+     * Gets the height of the code block sign, if the code was read from signs.
+     */
+    int getTop() {
+
+        return top;
+    }
+
+    /**
+     * Gets the height of the lowest sign the code was read from, which is below {@link #getTop()} if the code was read
+     * from signs.
+     */
+    int getBottom() {
+
+        return bottom;
+    }
+
+    String getHash() {
+
+        if (hash == null)
+            hash = hash(text);
+        return hash;
+    }
+
+    static String hash(String code) {
+
+        if(code == null)
+            return "";
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(code.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte aDigest : digest) {
+                String byteHex = Integer.toHexString(aDigest & 0xFF);
+                if (byteHex.length() == 1) {
+                    hex.append("0");
+                }
+                hex.append(byteHex);
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("insane JVM implementation", e);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.sk89q.craftbook.mechanics.ic.plc;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
+import com.sk89q.craftbook.mechanics.variables.VariableManager;
+import com.sk89q.craftbook.util.HistoryHashMap;
+import com.sk89q.craftbook.util.LocationUtil;
+import com.sk89q.craftbook.util.SignUtil;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.util.eventbus.Subscribe;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers the program that PLCs read from the code block signs in their column, so that the column doesn't have to
+ * be searched and the signs read again every time a PLC is loaded. The programs of a column are forgotten when a sign
+ * in it is changed, placed or broken, when a block that a sign in it could be attached to is broken or moved, when
+ * its world is edited with WorldEdit, and when its chunk unloads. As signs can also drop without an event, a program is
+ * only used while the signs it was read from are still there, and while the variables it could contain are unchanged.
+ *
+ * <p>Compiled programs are also kept, by the hash of their code, so PLCs with the same code share one program.</p>
+ */
+public class PlcCodeCache implements Listener {
+
+    private static final int MAX_PROGRAMS = 256;
+
+    /**
+     * The programs of each world, by chunk, column and the height of the PLC.
+     */
+    private final Map<UUID, Map<Long, Map<Long, Map<Integer, CachedCode>>>> worlds = new HashMap<>();
+    private final Map<String, Object> programs = new HistoryHashMap<>(MAX_PROGRAMS);
+
+    private Object worldEditListener;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long invalidationCount = 0;
+    private long compileCount = 0;
+
+    /**
+     * Gets the program of the PLC at a block, if it is known.
+     *
+     * @param block The PLC sign
+     * @return The program, {@link PlcCode#NOT_FOUND} if the column has no code block, or null if it isn't known
+     */
+    PlcCode get(Block block) {
+
+        Map<Integer, CachedCode> column = getColumn(block.getWorld(), block.getX(), block.getZ(), false);
+        CachedCode cached = column == null ? null : column.get(block.getY());
+        if (cached != null && !cached.isValid(block)) {
+            column.remove(block.getY());
+            invalidationCount++;
+            cached = null;
+        }
+        if (cached == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return cached.code;
+    }
+
+    /**
+     * Remembers the program of the PLC at a block.
+     *
+     * @param block The PLC sign
+     * @param code The program
+     */
+    void put(Block block, PlcCode code) {
+
+        getColumn(block.getWorld(), block.getX(), block.getZ(), true).put(block.getY(), new CachedCode(code));
+    }
+
+    private Map<Integer, CachedCode> getColumn(World world, int x, int z, boolean create) {
+
+        Map<Long, Map<Long, Map<Integer, CachedCode>>> chunks = worlds.get(world.getUID());
+        if (chunks == null) {
+            if (!create) return null;
+            chunks = new HashMap<>();
+            worlds.put(world.getUID(), chunks);
+        }
+        long chunkKey = LocationUtil.toChunkKey(x >> 4, z >> 4);
+        Map<Long, Map<Integer, CachedCode>> columns = chunks.get(chunkKey);
+        if (columns == null) {
+            if (!create) return null;
+            columns = new HashMap<>();
+            chunks.put(chunkKey, columns);
+        }
+        return create ? columns.computeIfAbsent(toColumnKey(x, z), key -> new HashMap<>()) : columns.get(toColumnKey(x, z));
+    }
+
+    /**
+     * Gets the compiled program for some code, compiling it if no PLC with the same code has been loaded.
+     *
+     * @param lang The language of the code
+     * @param code The code
+     * @return The program
+     * @throws ICVerificationException If the code doesn't compile
+     */
+    @SuppressWarnings("unchecked")
+    <CodeT> CodeT getProgram(PlcLanguage<?, CodeT> lang, PlcCode code) throws ICVerificationException {
+
+        String key = lang.getName() + '$' + code.getHash();
+        Object program = programs.get(key);
+        if (program == null) {
+            program = lang.compile(code.getText());
+            programs.put(key, program);
+            compileCount++;
+        }
+        return (CodeT) program;
+    }
+
+    private void invalidate(World world, int x, int z) {
+
+        Map<Long, Map<Long, Map<Integer, CachedCode>>> chunks = worlds.get(world.getUID());
+        Map<Long, Map<Integer, CachedCode>> columns = chunks == null ? null : chunks.get(LocationUtil.toChunkKey(x >> 4, z >> 4));
+        if (columns != null && columns.remove(toColumnKey(x, z)) != null)
+            invalidationCount++;
+    }
+
+    /**
+     * Forgets the programs of the column of a block, and of the columns that a sign attached to it could be in.
+     */
+    private void invalidateAround(Block block) {
+
+        if (worlds.isEmpty()) return;
+        invalidate(block.getWorld(), block.getX(), block.getZ());
+        for (BlockFace face : new BlockFace[] {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST})
+            invalidate(block.getWorld(), block.getX() + face.getModX(), block.getZ() + face.getModZ());
+    }
+
+    private void invalidateAround(List<Block> blocks) {
+
+        for (Block block : blocks)
+            invalidateAround(block);
+    }
+
+    /**
+     * Starts listening for edits made with WorldEdit, if it is installed.
+     */
+    public void enable() {
+
+        if (CraftBookPlugin.plugins.getWorldEdit() != null)
+            worldEditListener = WorldEditListener.register(this);
+    }
+
+    public void disable() {
+
+        if (worldEditListener != null) {
+            WorldEditListener.unregister(worldEditListener);
+            worldEditListener = null;
+        }
+        clear();
+    }
+
+    public void clear() {
+
+        worlds.clear();
+        programs.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSignChange(SignChangeEvent event) {
+
+        if (worlds.isEmpty()) return;
+        invalidate(event.getBlock().getWorld(), event.getBlock().getX(), event.getBlock().getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+
+        if (worlds.isEmpty()) return;
+        invalidate(event.getBlock().getWorld(), event.getBlock().getX(), event.getBlock().getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+
+        invalidateAround(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+
+        invalidateAround(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+
+        for (Block block : event.getBlocks()) {
+            invalidateAround(block);
+            invalidateAround(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+
+        for (Block block : event.getBlocks()) {
+            invalidateAround(block);
+            invalidateAround(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        Map<Long, Map<Long, Map<Integer, CachedCode>>> chunks = worlds.get(event.getWorld().getUID());
+        if (chunks != null)
+            chunks.remove(LocationUtil.toChunkKey(event.getChunk()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        worlds.remove(event.getWorld().getUID());
+    }
+
+    public int getSize() {
+
+        int size = 0;
+        for (Map<Long, Map<Long, Map<Integer, CachedCode>>> chunks : worlds.values())
+            for (Map<Long, Map<Integer, CachedCode>> columns : chunks.values())
+                for (Map<Integer, CachedCode> column : columns.values())
+                    size += column.size();
+        return size;
+    }
+
+    public int getProgramCount() {
+
+        return programs.size();
+    }
+
+    public long getCompileCount() {
+
+        return compileCount;
+    }
+
+    public long getHitCount() {
+
+        return hitCount;
+    }
+
+    public long getMissCount() {
+
+        return missCount;
+    }
+
+    public long getInvalidationCount() {
+
+        return invalidationCount;
+    }
+
+    private static long toColumnKey(int x, int z) {
+
+        return (long) x << 32 | z & 0xFFFFFFFFL;
+    }
+
+    private static final class CachedCode {
+
+        private final PlcCode code;
+        private final long variables;
+
+        CachedCode(PlcCode code) {
+
+            this.code = code;
+            variables = VariableManager.getModificationCount();
+        }
+
+        /**
+         * Checks that the code would still read the same, as far as can be told without reading the signs again.
+         *
+         * @param block The PLC sign
+         */
+        boolean isValid(Block block) {
+
+            // Signs are read with their variables filled in.
+            if (variables != VariableManager.getModificationCount())
+                return false;
+            World world = block.getWorld();
+            for (int y = code.getBottom(); y <= code.getTop(); y++)
+                if (!SignUtil.isSign(world.getBlockAt(block.getX(), y, block.getZ())))
+                    return false;
+            return true;
+        }
+    }
+
+    /**
+     * Forgets the programs of a world when it is edited with WorldEdit, which doesn't fire Bukkit events. This is kept
+     * apart so that nothing of WorldEdit is loaded when it isn't installed.
+     */
+    private static final class WorldEditListener {
+
+        private final PlcCodeCache cache;
+
+        private WorldEditListener(PlcCodeCache cache) {
+
+            this.cache = cache;
+        }
+
+        static Object register(PlcCodeCache cache) {
+
+            WorldEditListener listener = new WorldEditListener(cache);
+            WorldEdit.getInstance().getEventBus().register(listener);
+            return listener;
+        }
+
+        static void unregister(Object listener) {
+
+            WorldEdit.getInstance().getEventBus().unregister(listener);
+        }
+
+        @Subscribe
+        public void onEditSession(EditSessionEvent event) {
+
+            if (event.getStage() != EditSession.Stage.BEFORE_CHANGE || event.getWorld() == null) return;
+            World world = Bukkit.getWorld(event.getWorld().getName());
+            if (world == null) return;
+
+            // The edit is made after the session is created, so forget the world again once it is done.
+            forget(world);
+            CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), () -> forget(world));
+        }
+
+        private void forget(World world) {
+
+            if (cache.worlds.remove(world.getUID()) != null)
+                cache.invalidationCount++;
+        }
+    }
+}
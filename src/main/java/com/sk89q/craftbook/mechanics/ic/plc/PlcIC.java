@@ -21,6 +21,7 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.ic.ChipState;
 import com.sk89q.craftbook.mechanics.ic.IC;
+import com.sk89q.craftbook.mechanics.ic.ICMechanic;
 import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
 import com.sk89q.craftbook.mechanics.ic.SelfTriggeredIC;
 import com.sk89q.craftbook.util.SignUtil;
@@ -30,23 +31,17 @@ import org.bukkit.Server;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.Chest;
-import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.BookMeta;
-import org.bukkit.util.Vector;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -59,7 +54,7 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
 
     private Lang lang;
     private StateT state;
-    private String codeString;
+    private PlcCode source;
     private CodeT code;
 
     private ChangedSign sign;
@@ -71,11 +66,11 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
 
         sign = s;
         try {
-            codeString = getCode();
+            source = getCode();
         } catch (CodeNotFoundException e) {
             throw new ICVerificationException("Error retrieving code: " + e.getMessage());
         }
-        l.compile(codeString);
+        compile(l, source);
     }
 
     public PlcIC(Server sv, ChangedSign s, Lang l) {
@@ -84,19 +79,47 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         sign = s;
         if (s == null) return;
         try {
-            codeString = getCode();
+            source = getCode();
         } catch (CodeNotFoundException e) {
             error("code missing", "Code went missing!!");
         }
         try {
-            if (codeString != null) {
-                code = lang.compile(codeString);
+            if (source != null) {
+                code = compile(lang, source);
             }
         } catch (ICVerificationException e) {
             throw new RuntimeException("inconsistent compile check!", e);
         }
         state = lang.initState();
+        loadSharedState();
+    }
+
+    private static PlcStateStore getStore() {
+
+        return ICMechanic.instance == null ? null : ICMechanic.instance.getPlcStateStore();
+    }
+
+    /**
+     * Loads the state of this PLC. PLCs that share an ID use the state that is already in memory, if another one of
+     * them has been loaded.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadSharedState() {
+
+        PlcStateStore store = getStore();
+        if (store == null || !isShared()) {
+            tryLoadState();
+            return;
+        }
+
+        World world = sign.getBlock().getWorld();
+        Object shared = store.getSharedState(world, getFileName());
+        if (shared != null) {
+            state = (StateT) shared;
+            return;
+        }
         tryLoadState();
+        store.setSharedState(world, getFileName(), state);
     }
 
     private boolean isShared() {
@@ -109,50 +132,16 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         return sign.getLine(2);
     }
 
-    private String getFileName() {
+    String getFileName() {
 
         if (!isShared()) {
             return lang.getName() + "$$" + sign.getX() + "_" + sign.getY() + "_" + sign.getZ();
         } else return lang.getName() + "$" + sign.getLine(3);
     }
 
-    private File getStorageLocation() {
-
-        World w = sign.getBlock().getWorld();
-        File worldDir = w.getWorldFolder();
-        File targetDir = new File(new File(worldDir, "craftbook"), "plcs");
-        if(new File(worldDir, "craftbook-plcs").exists()) {
+    private String getCodeHash() {
 
-            File oldFolder = new File(worldDir, "craftbook-plcs");
-            if(!targetDir.exists())
-                targetDir.mkdirs();
-            if(!oldFolder.renameTo(targetDir))
-                logger.warning("Failed to copy PLC States over to new directory!");
-            oldFolder.delete();
-        }
-        targetDir.mkdirs();
-        return new File(targetDir, getFileName());
-    }
-
-    private String hashCode(String code) {
-
-        if(code == null)
-            return "";
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] digest = md.digest(code.getBytes("UTF-8"));
-            StringBuilder hex = new StringBuilder();
-            for (byte aDigest : digest) {
-                String byteHex = Integer.toHexString(aDigest & 0xFF);
-                if (byteHex.length() == 1) {
-                    hex.append("0");
-                }
-                hex.append(byteHex);
-            }
-            return hex.toString();
-        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
-            throw new RuntimeException("insane JVM implementation", e);
-        }
+        return source == null ? "" : source.getHash();
     }
 
     private void tryLoadState() {
@@ -162,15 +151,20 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to load PLC state", e);
             state = lang.initState();
-            getStorageLocation().delete();
+            PlcStateStore store = getStore();
+            if (store != null)
+                store.removeRecord(sign.getBlock().getWorld(), getFileName());
         }
     }
 
     private void loadState() throws IOException {
 
-        if (!getStorageLocation().exists()) return; // Prevent error spam
+        PlcStateStore store = getStore();
+        if (store == null) return;
+        byte[] record = store.getRecord(sign.getBlock().getWorld(), getFileName());
+        if (record == null) return; // Prevent error spam
 
-        try (DataInputStream in = new DataInputStream(new FileInputStream(getStorageLocation()))) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
             switch (in.readInt()) {
                 case 1:
                     error = in.readBoolean();
@@ -178,9 +172,9 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
                 case 0:
                     String langName = in.readUTF();
                     String id = in.readUTF();
-                    String code = hashCode(in.readUTF());
+                    String code = in.readUTF();
                     if ((lang.getName().equals(langName) || lang.supports(langName))
-                            && (isShared() || id.equals(getID()) && hashCode(codeString).equals(code))) {
+                            && (isShared() || id.equals(getID()) && getCodeHash().equals(code))) {
                         lang.loadState(state, in);
                     } else {
                         // Prevent errors from different ICs from affecting this one.
@@ -194,27 +188,34 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         }
     }
 
-    private void trySaveState() {
+    /**
+     * Marks the state of this PLC as changed, so that it is saved with the next batch.
+     */
+    private void markDirty() {
 
-        try {
-            saveState();
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to save PLC state", e);
-            state = lang.initState();
-        }
+        PlcStateStore store = getStore();
+        if (store != null)
+            store.mark(this);
     }
 
-    private void saveState() throws IOException {
+    /**
+     * Writes the state of this PLC, in the format of the old per-PLC files.
+     *
+     * @return The state
+     */
+    byte[] writeRecord() throws IOException {
 
-        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(getStorageLocation()))) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
             out.writeInt(PLC_STORE_VERSION);
             out.writeBoolean(error);
             out.writeUTF(errorString);
             out.writeUTF(lang.getName());
             out.writeUTF(error ? "(error)" : getID());
-            out.writeUTF(hashCode(codeString));
+            out.writeUTF(getCodeHash());
             lang.writeState(state, out);
         }
+        return bytes.toByteArray();
     }
 
     private String getBookCode(Block chestBlock) throws CodeNotFoundException {
@@ -238,40 +239,68 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         return code.toString();
     }
 
-    private String getCode() throws CodeNotFoundException {
+    private static PlcCodeCache getCodeCache() {
+
+        return ICMechanic.instance == null ? null : ICMechanic.instance.getPlcCodeCache();
+    }
+
+    /**
+     * Compiles code, reusing the program of other PLCs with the same code if there is one.
+     */
+    private static <CodeT> CodeT compile(PlcLanguage<?, CodeT> lang, PlcCode source) throws ICVerificationException {
+
+        PlcCodeCache cache = getCodeCache();
+        return cache == null ? lang.compile(source.getText()) : cache.getProgram(lang, source);
+    }
+
+    private PlcCode getCode() throws CodeNotFoundException {
+
+        Block block = this.sign.getBlock();
+
+        Block above = block.getRelative(0, 1, 0);
+        if (above.getType() == Material.CHEST) return new PlcCode(getBookCode(above));
+        Block below = block.getRelative(0, -1, 0);
+        if (below.getType() == Material.CHEST) return new PlcCode(getBookCode(below));
 
-        Sign sign = CraftBookBukkitUtil.toSign(this.sign);
+        PlcCodeCache cache = getCodeCache();
+        PlcCode code = cache == null ? null : cache.get(block);
+        if (code == null) {
+            code = getSignCode(block);
+            if (cache != null)
+                cache.put(block, code);
+        }
+        if (code == PlcCode.NOT_FOUND)
+            throw new CodeNotFoundException("No code source found.");
+        return code;
+    }
 
-        Block above = sign.getLocation().add(new Vector(0, 1, 0)).getBlock();
-        if (above.getType() == Material.CHEST) return getBookCode(above);
-        Block below = sign.getLocation().add(new Vector(0, -1, 0)).getBlock();
-        if (below.getType() == Material.CHEST) return getBookCode(below);
+    private static PlcCode getSignCode(Block block) {
 
-        org.bukkit.Location l = sign.getLocation();
-        World w = l.getWorld();
+        World w = block.getWorld();
 
-        int x = l.getBlockX();
-        int z = l.getBlockZ();
+        int x = block.getX();
+        int z = block.getZ();
 
         for (int y = 0; y < w.getMaxHeight(); y++) {
-            if (y != l.getBlockY()) if (SignUtil.isSign(w.getBlockAt(x, y, z))) {
+            if (y != block.getY()) if (SignUtil.isSign(w.getBlockAt(x, y, z))) {
                 ChangedSign s = CraftBookBukkitUtil.toChangedSign(w.getBlockAt(x, y, z));
                 if (s.getLine(1).equalsIgnoreCase("[Code Block]")) {
+                    int top = y;
                     y--;
                     Block b = w.getBlockAt(x, y, z);
                     StringBuilder code = new StringBuilder();
                     while (SignUtil.isSign(b)) {
                         s = CraftBookBukkitUtil.toChangedSign(b);
-                        for (int li = 0; li < 4 && y != l.getBlockY(); li++) {
+                        for (int li = 0; li < 4 && y != block.getY(); li++) {
                             code.append(s.getLine(li)).append('\n');
                         }
                         b = w.getBlockAt(x, --y, z);
                     }
-                    return code.toString();
+                    return new PlcCode(code.toString(), top, y + 1);
                 }
             }
         }
-        throw new CodeNotFoundException("No code source found.");
+        return PlcCode.NOT_FOUND;
     }
 
     @Override
@@ -295,20 +324,16 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         error = true;
         errorString = detailedMessage;
 
-        trySaveState();
+        markDirty();
     }
 
     @Override
     public void trigger(ChipState chip) {
 
         try {
-            if (isShared()) {
-                tryLoadState();
-            }
-
             lang.execute(chip, state, code);
 
-            trySaveState();
+            markDirty();
         } catch (PlcException e) {
             error(e.getMessage(), e.detailedMessage);
         } catch (Exception e) {
@@ -0,0 +1,335 @@
+package com.sk89q.craftbook.mechanics.ic.plc;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Keeps the state of PLCs in memory. A PLC marks itself dirty when its state changes, and the state of every dirty
+ * PLC in a world is written together to a single file on an interval, when the world unloads and when the store is
+ * disabled. PLCs that share an ID also share one state in memory, rather than reading it back before every trigger.
+ */
+public class PlcStateStore implements Runnable, Listener {
+
+    private static final int STORE_MAGIC = 0x504C4353;
+    private static final int STORE_VERSION = 1;
+
+    private final Map<UUID, WorldStates> worlds = new HashMap<>();
+    private final int interval;
+    private BukkitTask task;
+
+    private long markedCount = 0;
+    private long writtenCount = 0;
+    private long fileWriteCount = 0;
+
+    /**
+     * @param interval The amount of ticks between writing dirty states, or 0 to write them at the end of the tick they
+     *                 change in
+     */
+    public PlcStateStore(int interval) {
+
+        this.interval = interval;
+    }
+
+    public void enable() {
+
+        if(interval > 0)
+            task = CraftBookPlugin.server().getScheduler().runTaskTimer(CraftBookPlugin.inst(), this, interval, interval);
+    }
+
+    public void disable() {
+
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
+        flushAll();
+        worlds.clear();
+    }
+
+    /**
+     * Gets the stored state of a PLC.
+     *
+     * @param world The world of the PLC
+     * @param name The storage name of the PLC
+     * @return The state, in the format of the old per-PLC files, or null if there isn't one
+     */
+    byte[] getRecord(World world, String name) {
+
+        WorldStates states = getWorld(world);
+        // A PLC that was unloaded before its state was written still holds the latest state.
+        PlcIC<?, ?, ?> dirty = states.dirty.remove(name);
+        if(dirty != null) {
+            try {
+                states.records.put(name, dirty.writeRecord());
+                states.changed = true;
+                writtenCount++;
+                scheduleFlush();
+            } catch (IOException e) {
+                CraftBookPlugin.logger().log(Level.SEVERE, "Failed to save PLC state", e);
+            }
+        }
+        return states.records.get(name);
+    }
+
+    /**
+     * Removes the stored state of a PLC.
+     *
+     * @param world The world of the PLC
+     * @param name The storage name of the PLC
+     */
+    void removeRecord(World world, String name) {
+
+        WorldStates states = getWorld(world);
+        states.dirty.remove(name);
+        states.shared.remove(name);
+        if(states.records.remove(name) != null) {
+            states.changed = true;
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Gets the state in memory of PLCs that share an ID.
+     *
+     * @param world The world of the PLCs
+     * @param name The storage name of the PLCs
+     * @return The state, or null if no PLC with the ID has been loaded
+     */
+    Object getSharedState(World world, String name) {
+
+        return getWorld(world).shared.get(name);
+    }
+
+    /**
+     * Sets the state in memory of PLCs that share an ID.
+     *
+     * @param world The world of the PLCs
+     * @param name The storage name of the PLCs
+     * @param state The state
+     */
+    void setSharedState(World world, String name, Object state) {
+
+        getWorld(world).shared.put(name, state);
+    }
+
+    /**
+     * Marks the state of a PLC as changed.
+     *
+     * @param plc The PLC
+     */
+    void mark(PlcIC<?, ?, ?> plc) {
+
+        markedCount++;
+        WorldStates states = getWorld(plc.getSign().getBlock().getWorld());
+        states.dirty.put(plc.getFileName(), plc);
+        scheduleFlush();
+    }
+
+    /**
+     * Without an interval, writes everything that changes within a tick together once the tick is over.
+     */
+    private void scheduleFlush() {
+
+        if(task == null)
+            task = CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), this);
+    }
+
+    /**
+     * Writes the state of all dirty PLCs.
+     */
+    public void flushAll() {
+
+        for(WorldStates states : worlds.values())
+            write(states);
+    }
+
+    @Override
+    public void run() {
+
+        if(interval <= 0)
+            task = null;
+        flushAll();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        WorldStates states = worlds.remove(event.getWorld().getUID());
+        if(states != null)
+            write(states);
+    }
+
+    private WorldStates getWorld(World world) {
+
+        WorldStates states = worlds.get(world.getUID());
+        if(states == null) {
+            states = new WorldStates(world);
+            worlds.put(world.getUID(), states);
+            states.load();
+        }
+        return states;
+    }
+
+    private void write(WorldStates states) {
+
+        if(!states.dirty.isEmpty()) {
+            for(Map.Entry<String, PlcIC<?, ?, ?>> entry : states.dirty.entrySet()) {
+                try {
+                    states.records.put(entry.getKey(), entry.getValue().writeRecord());
+                    writtenCount++;
+                } catch (IOException e) {
+                    CraftBookPlugin.logger().log(Level.SEVERE, "Failed to save PLC state", e);
+                }
+            }
+            states.dirty.clear();
+            states.changed = true;
+        }
+
+        if(!states.changed) return;
+
+        try {
+            states.save();
+            states.changed = false;
+            fileWriteCount++;
+        } catch (IOException e) {
+            CraftBookPlugin.logger().log(Level.SEVERE, "Failed to save PLC states to " + states.file.getPath(), e);
+        }
+    }
+
+    public long getMarkedCount() {
+
+        return markedCount;
+    }
+
+    public long getWrittenCount() {
+
+        return writtenCount;
+    }
+
+    public long getFileWriteCount() {
+
+        return fileWriteCount;
+    }
+
+    public int getDirtyCount() {
+
+        int count = 0;
+        for(WorldStates states : worlds.values())
+            count += states.dirty.size();
+        return count;
+    }
+
+    private static final class WorldStates {
+
+        private final File folder;
+        private final File file;
+
+        private final Map<String, byte[]> records = new LinkedHashMap<>();
+        private final Map<String, Object> shared = new HashMap<>();
+        private final Map<String, PlcIC<?, ?, ?>> dirty = new LinkedHashMap<>();
+        private boolean changed;
+
+        WorldStates(World world) {
+
+            File worldDir = world.getWorldFolder();
+            folder = new File(worldDir, "craftbook");
+            file = new File(folder, "plcs.dat");
+        }
+
+        void load() {
+
+            if(file.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    if(in.readInt() != STORE_MAGIC || in.readInt() > STORE_VERSION)
+                        throw new IOException("incompatible version");
+                    int count = in.readInt();
+                    for(int i = 0; i < count; i++) {
+                        String name = in.readUTF();
+                        byte[] record = new byte[in.readInt()];
+                        in.readFully(record);
+                        records.put(name, record);
+                    }
+                } catch (IOException e) {
+                    CraftBookPlugin.logger().log(Level.SEVERE, "Failed to load PLC states from " + file.getPath(), e);
+                }
+            }
+
+            migrate(new File(folder.getParentFile(), "craftbook-plcs"));
+            migrate(new File(folder, "plcs"));
+        }
+
+        /**
+         * Reads the state files that were written for each PLC before the states were kept in a single file, and
+         * removes them once they have been written to it.
+         */
+        private void migrate(File legacyFolder) {
+
+            File[] files = legacyFolder.listFiles();
+            if(files == null) return;
+
+            List<File> migrated = new ArrayList<>();
+            for(File legacy : files) {
+                if(!legacy.isFile()) continue;
+                try {
+                    records.putIfAbsent(legacy.getName(), Files.readAllBytes(legacy.toPath()));
+                    migrated.add(legacy);
+                } catch (IOException e) {
+                    CraftBookPlugin.logger().log(Level.WARNING, "Failed to read PLC state " + legacy.getPath(), e);
+                }
+            }
+            if(migrated.isEmpty()) return;
+
+            try {
+                save();
+            } catch (IOException e) {
+                CraftBookPlugin.logger().log(Level.SEVERE, "Failed to save PLC states to " + file.getPath(), e);
+                return;
+            }
+
+            for(File legacy : migrated)
+                legacy.delete();
+            legacyFolder.delete();
+            CraftBookPlugin.logger().info("Moved " + migrated.size() + " PLC states into " + file.getPath());
+        }
+
+        void save() throws IOException {
+
+            folder.mkdirs();
+            File temp = new File(folder, "plcs.dat.tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(STORE_MAGIC);
+                out.writeInt(STORE_VERSION);
+                out.writeInt(records.size());
+                for(Map.Entry<String, byte[]> record : records.entrySet()) {
+                    out.writeUTF(record.getKey());
+                    out.writeInt(record.getValue().length);
+                    out.write(record.getValue());
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
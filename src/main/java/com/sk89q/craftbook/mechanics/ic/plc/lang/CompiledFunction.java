@@ -0,0 +1,19 @@
+package com.sk89q.craftbook.mechanics.ic.plc.lang;
+
+/**
+ * A Perlstone function compiled to opcodes. Each instruction is an opcode followed by its operands, and the opcode
+ * character and position in the source are kept at the index of each opcode for error messages.
+ */
+class CompiledFunction {
+
+    public final int[] code;
+    public final char[] opcodes;
+    public final LineInfo[] lineInfo;
+
+    CompiledFunction(int[] code, char[] opcodes, LineInfo[] lineInfo) {
+
+        this.code = code;
+        this.opcodes = opcodes;
+        this.lineInfo = lineInfo;
+    }
+}
@@ -19,9 +19,11 @@ package com.sk89q.craftbook.mechanics.ic.plc.lang;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.EmptyStackException;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import org.bukkit.ChatColor;
@@ -31,13 +33,76 @@ import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
 import com.sk89q.craftbook.mechanics.ic.plc.PlcException;
 import com.sk89q.craftbook.mechanics.ic.plc.PlcLanguage;
 
-public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]> {
+public class Perlstone implements PlcLanguage<boolean[], PerlstoneProgram> {
 
     private static final int MAX_INSTRUCTION_COUNT = 10000;
     private static final int MAX_STACK_SIZE = 64;
     private static final int MAX_RECURSION = 16;
     private static final int PERLSTONE_STORE_VERSION = 0;
 
+    // Opcodes of compiled functions, with their operands
+    private static final int OP_PUSH_TRUE = 0;
+    private static final int OP_PUSH_FALSE = 1;
+    private static final int OP_PUSH_A = 2;
+    private static final int OP_PUSH_B = 3;
+    private static final int OP_PUSH_C = 4;
+    private static final int OP_NOP = 5;
+    private static final int OP_SHIFT = 6; // table, amount
+    private static final int OP_RESET_SHIFT = 7; // table
+    private static final int OP_STORE = 8; // table, relative, address
+    private static final int OP_LOAD = 9; // table, relative, address
+    private static final int OP_DUP = 10;
+    private static final int OP_POP = 11;
+    private static final int OP_PEEK = 12; // depth
+    private static final int OP_SWAP = 13;
+    private static final int OP_NOT = 14;
+    private static final int OP_XOR = 15;
+    private static final int OP_AND = 16;
+    private static final int OP_OR = 17;
+    private static final int OP_EQUALS = 18;
+    private static final int OP_TRUTH_TABLE = 19; // truth table bits
+    private static final int OP_CALL = 20; // function, argument count
+    private static final int OP_TAIL_CALL = 21; // function, argument count
+    private static final int OP_JUMP_UNLESS = 22; // target
+    private static final int OP_JUMP_IF = 23; // target
+    private static final int OP_STOP = 24;
+    private static final int OP_RETURN = 25;
+
+    private static final int TABLE_INVALID = -2;
+    private static final int TABLE_NONE = -1;
+    private static final int TABLE_PERSISTENT = 0;
+    private static final int TABLE_TEMP = 1;
+    private static final int TABLE_LOCAL = 2;
+
+    private static final LineInfo NO_LINE = new LineInfo(0, 0);
+
+    private static long memoHitCount = 0;
+    private static long memoMissCount = 0;
+
+    private final int memoSize;
+
+    // Reused between executions, which all happen on the main thread.
+    private final boolean[] tempTable = new boolean[32];
+    private final Frame[] frames = new Frame[MAX_RECURSION + 2];
+    private int instructionCount;
+
+    public Perlstone() {
+
+        this(0);
+    }
+
+    /**
+     * @param memoSize The amount of results each program remembers, so that it isn't run again with the same inputs
+     *                 and persistent table, or 0 to always run programs
+     */
+    public Perlstone(int memoSize) {
+
+        this.memoSize = memoSize;
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new Frame();
+        }
+    }
+
     @Override
     public String getName() {
 
@@ -112,73 +177,111 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
     }
 
     @Override
-    public WithLineInfo<String>[] compile(String code) throws ICVerificationException {
+    public PerlstoneProgram compile(String code) throws ICVerificationException {
 
         WithLineInfo<String>[] functions = splitFunctions(markLines(code));
+        CompiledFunction[] compiled = new CompiledFunction[functions.length];
         for (int l = 0; l < functions.length; l++) {
             WithLineInfo<String> line = functions[l];
             char[] chars = line.code.toCharArray();
             LineInfo[] li = line.lineInfo;
-            int bracketCount = 0;
-            if (chars.length == 0) {
-                continue;
-            }
+            Assembler out = new Assembler();
+            Deque<Integer> brackets = new ArrayDeque<>();
             for (int i = 0; i < chars.length; i++) {
                 try {
                     char c = chars[i];
+                    LineInfo at = li[i];
                     switch (c) {
                         case '[':
-                            bracketCount++;
+                            brackets.push(out.emit(c, at, OP_JUMP_UNLESS, 0));
                             break;
                         case ']':
-                            if (bracketCount == 0)
+                            if (brackets.isEmpty())
                                 throw new ICVerificationException("Too many closing braces " + "on line " + li[i]
                                         .line + " at column " + li[i].col);
-                            bracketCount--;
+                            // Each bracket jumps to just past the other one.
+                            int open = brackets.pop();
+                            out.emit(c, at, OP_JUMP_IF, open + 2);
+                            out.patch(open + 1, out.size());
                             break;
                         case '+':
+                            out.emit(c, at, OP_PUSH_TRUE);
+                            break;
                         case '-':
+                            out.emit(c, at, OP_PUSH_FALSE);
+                            break;
                         case 'A':
+                            out.emit(c, at, OP_PUSH_A);
+                            break;
                         case 'B':
+                            out.emit(c, at, OP_PUSH_B);
+                            break;
                         case 'C':
+                            out.emit(c, at, OP_PUSH_C);
+                            break;
                         case 'd':
+                            out.emit(c, at, OP_DUP);
+                            break;
                         case 'p':
+                            out.emit(c, at, OP_POP);
+                            break;
                         case 'x':
+                            out.emit(c, at, OP_SWAP);
+                            break;
                         case '!':
+                            out.emit(c, at, OP_NOT);
+                            break;
                         case '|':
+                            out.emit(c, at, OP_OR);
+                            break;
                         case '=':
+                            out.emit(c, at, OP_EQUALS);
+                            break;
                         case '&':
+                            out.emit(c, at, OP_AND);
+                            break;
                         case '^':
+                            out.emit(c, at, OP_XOR);
+                            break;
                         case 's':
+                            out.emit(c, at, OP_STOP);
+                            break;
                         case 'r':
+                            out.emit(c, at, OP_RETURN);
                             break;
 
                         case '<':
                         case '>':
                         case 'e':
                         case 'S':
-                        case 'L':
-                            switch (chars[++i]) {
-                                case 'p':
-                                case 'r':
-                                case 'l':
-                                case 'P':
-                                case 'R':
-                                case 'L':
-                                    break;
-                                default:
-                                    throw new ICVerificationException("Unknown modifier " + chars[i] + " to opcode "
-                                            + c + " " + "on line "
-                                            + li[i].line + " at column " + li[i].col);
-                            }
+                        case 'L': {
+                            char modifier = chars[++i];
+                            int table = decodeTable(modifier);
+                            if (table == TABLE_INVALID)
+                                throw new ICVerificationException("Unknown modifier " + chars[i] + " to opcode "
+                                        + c + " " + "on line "
+                                        + li[i].line + " at column " + li[i].col);
                             if (c == 'S' || c == 'L') {
                                 char p = chars[++i];
                                 if (!(p >= '0' || p <= '9') && !(p >= 'a' || p <= 'v'))
                                     throw new ICVerificationException("Bad table index " + chars[i] + " for opcode "
                                             + c + " " + "on line "
                                             + li[i].line + " at column " + li[i].col);
+                                boolean relative = Character.isLowerCase(modifier);
+                                int address = relative ? decodeAddress(p) : mod(decodeAddress(p), 32);
+                                if (table == TABLE_NONE)
+                                    out.emit(c, at, OP_NOP);
+                                else
+                                    out.emit(c, at, c == 'S' ? OP_STORE : OP_LOAD, table, relative ? 1 : 0, address);
+                            } else if (table == TABLE_NONE) {
+                                out.emit(c, at, OP_NOP);
+                            } else if (c == 'e') {
+                                out.emit(c, at, OP_RESET_SHIFT, table);
+                            } else {
+                                out.emit(c, at, OP_SHIFT, table, c == '<' ? -1 : 1);
                             }
-                            break;
+                        }
+                        break;
 
                         case 'v': {
                             char n = chars[++i];
@@ -186,15 +289,19 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                                 throw new ICVerificationException("Bad peek depth " + chars[i] + " " + "on line " +
                                         li[i].line + " at column "
                                         + li[i].col);
+                            out.emit(c, at, OP_PEEK, parseNumber(n));
                         }
                         break;
 
-                        case '.':
+                        case '.': {
+                            int truthTable = 0;
                             for (int j = 0; j < 4; j++) {
                                 switch (chars[++i]) {
                                     case '+':
-                                    case '-':
                                     case '1':
+                                        truthTable |= 1 << j;
+                                        break;
+                                    case '-':
                                     case '0':
                                         break;
 
@@ -204,10 +311,12 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                                                 + " at column " + li[i].col);
                                 }
                             }
-                            break;
+                            out.emit(c, at, OP_TRUTH_TABLE, truthTable);
+                        }
+                        break;
 
                         case 'c':
-                        case 't':
+                        case 't': {
                             for (int j = 0; j < 2; j++) {
                                 char n = chars[++i];
                                 if (!(n >= '0' || n <= '9'))
@@ -222,7 +331,10 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                                             "count " + "on line "
                                             + li[i].line + " at column " + li[i].col);
                             }
-                            break;
+                            int function = parseNumber(chars[i - 2]) * 10 + parseNumber(chars[i - 1]);
+                            out.emit(c, at, c == 'c' ? OP_CALL : OP_TAIL_CALL, function, parseNumber(chars[i]));
+                        }
+                        break;
 
                         default:
                             throw new ICVerificationException("Unknown opcode " + c + " " + "on line " + li[i].line +
@@ -234,12 +346,40 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                     throw new ICVerificationException("Unexpected function end " + "around line " + li[i].line);
                 }
             }
-            if (bracketCount != 0)
+            if (!brackets.isEmpty())
                 throw new ICVerificationException("Missing closing braces in function #" + l + " " + "               " +
                         "           starting on line "
                         + li[0].line + " and ending on line " + li[li.length - 1].line);
+            compiled[l] = out.build();
         }
-        return functions;
+        return new PerlstoneProgram(compiled, memoSize);
+    }
+
+    private int decodeTable(char c) {
+
+        switch (c) {
+            case 'p':
+            case 'P':
+                return TABLE_PERSISTENT;
+            case 't':
+            case 'T':
+                return TABLE_TEMP;
+            case 'l':
+            case 'L':
+                return TABLE_LOCAL;
+            case 'r':
+            case 'R':
+                // Accepted by earlier versions, but never did anything.
+                return TABLE_NONE;
+            default:
+                return TABLE_INVALID;
+        }
+    }
+
+    private int decodeAddress(char c) {
+
+        if (c >= '0' && c <= '9') return c - '0';
+        else return c - 'a' + 10;
     }
 
     @Override
@@ -263,25 +403,80 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
     }
 
     @Override
-    public void execute(ChipState chip, boolean[] state, WithLineInfo<String>[] code) throws PlcException {
+    public void execute(ChipState chip, boolean[] state, PerlstoneProgram code) throws PlcException {
 
-        boolean[] tt = new boolean[32];
+        boolean[] tt = tempTable;
+        Arrays.fill(tt, false);
         boolean a = chip.getInputCount() > 0 && chip.getInput(0);
         boolean b = chip.getInputCount() > 1 && chip.getInput(1);
         boolean c = chip.getInputCount() > 2 && chip.getInput(2);
 
+        // Programs can only see their inputs and the persistent table, as the temp table is cleared before every run,
+        // so a run with the same ones as a remembered run gives the same result.
+        PerlstoneMemo memo = code.memo;
+        long key = 0;
+        if (memo != null && state.length == 32 && chip.getOutputCount() <= 8) {
+            key = packState(state) | (a ? 1L : 0L) << 32 | (b ? 1L : 0L) << 33 | (c ? 1L : 0L) << 34
+                    | (long) chip.getOutputCount() << 35;
+            long result = memo.get(key);
+            if (result >= 0) {
+                memoHitCount++;
+                unpackState(result, state);
+                for (int i = 0; i < chip.getOutputCount(); i++) {
+                    chip.setOutput(i, (result >>> 32 + i & 1) != 0);
+                }
+                return;
+            }
+            memoMissCount++;
+        } else {
+            memo = null;
+        }
+
+        CompiledFunction[] functions = code.functions;
+        long outputs = 0;
         for (int i = 0; i < chip.getOutputCount(); i++) {
-            if (i < code.length) {
-                Boolean r = executeFunction(i, state, tt, code, a, b, c, new boolean[0], new int[1], 0);
+            if (i < functions.length) {
+                instructionCount = 0;
+                Boolean r = executeFunction(i, state, tt, functions, a, b, c, 0, 0);
                 if (r == null) {
                     chip.setOutput(i, false);
                 } else {
                     chip.setOutput(i, r);
+                    if (r) outputs |= 1L << 32 + i;
                 }
             } else {
                 chip.setOutput(i, false);
             }
         }
+
+        if (memo != null)
+            memo.put(key, packState(state) | outputs);
+    }
+
+    private long packState(boolean[] state) {
+
+        long packed = 0;
+        for (int i = 0; i < 32; i++) {
+            if (state[i]) packed |= 1L << i;
+        }
+        return packed;
+    }
+
+    private void unpackState(long packed, boolean[] state) {
+
+        for (int i = 0; i < 32; i++) {
+            state[i] = (packed >>> i & 1) != 0;
+        }
+    }
+
+    public static long getMemoHitCount() {
+
+        return memoHitCount;
+    }
+
+    public static long getMemoMissCount() {
+
+        return memoMissCount;
     }
 
     @Override
@@ -295,46 +490,21 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
         return (a % b + b) % b;
     }
 
-    private int decodeAddress(char c, int shift) {
-
-        if (c >= '0' && c <= '9') return mod(c - '0' + shift, 32);
-        else return mod(c - 'a' + 10 + shift, 32);
-    }
-
     private int parseNumber(char c) {
 
         return c - '0';
     }
 
-    private boolean parseTableChar(char c) throws PlcException {
-
-        switch (c) {
-            case '+':
-                return true;
-            case '-':
-                return false;
-            case '1':
-                return true;
-            case '0':
-                return false;
-
-                // Shouldn't happen because of validation.
-            default:
-                throw new PlcException("invalid table", "Invalid character in logic table.");
-        }
-    }
-
-    private String errmsg(String err, int fno, char opcode, LineInfo li, boolean[] pt, boolean[] tt, boolean[] lt,
-            int pshift, int tshift,
-            int lshift, Stack<Boolean> stack, int tc) {
+    private String errmsg(String err, int fno, char opcode, LineInfo li, boolean[] pt, boolean[] tt, Frame frame,
+            int sp, int tc) {
 
         String errm = "";
         if (!err.startsWith(ChatColor.RED + "Detailed Error Message: ")) {
             errm += ChatColor.RED + "Detailed Error Message: " + ChatColor.RESET + err + "\n";
             errm += ChatColor.RED + "Persistent Variable Table: \n " + ChatColor.RESET + dumpStateText(pt) + "\n";
-            errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + pshift + "\n";
+            errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + frame.shifts[TABLE_PERSISTENT] + "\n";
             errm += ChatColor.RED + "Temp Variable Table: \n " + ChatColor.RESET + dumpStateText(tt) + "\n";
-            errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + tshift + "\n";
+            errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + frame.shifts[TABLE_TEMP] + "\n";
         } else {
             errm += err + "\n";
         }
@@ -345,274 +515,251 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
         errm += ChatColor.RED + "Location: " + ChatColor.RESET + "Opcode " + opcode + " at line " + li.line + ", " +
                 "column " + li.col + " in function #"
                 + fno + "\n";
-        errm += ChatColor.RED + "Local Variable Table: \n " + ChatColor.RESET + dumpStateText(lt) + "\n";
-        errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + lshift + "\n";
-        errm += ChatColor.RED + "Function Stack: " + ChatColor.RESET + dumpStateText(stack.toArray(new Boolean[stack
-                                                                                                               .size()]));
+        errm += ChatColor.RED + "Local Variable Table: \n " + ChatColor.RESET + dumpStateText(frame.locals) + "\n";
+        errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + frame.shifts[TABLE_LOCAL] + "\n";
+        errm += ChatColor.RED + "Function Stack: " + ChatColor.RESET + dumpStateText(Arrays.copyOf(frame.stack,
+                Math.min(sp, frame.stack.length)));
         return errm;
     }
 
+    private static PlcException emptyStack() {
+
+        return new PlcException("empty stack", "Popped while stack was empty.");
+    }
+
+    /**
+     * Runs a function. The frame at the depth of the call holds its arguments at the bottom of its stack.
+     */
     // Use wrapper type to be able to express "no return" as null
-    private Boolean executeFunction(int fno, boolean[] pt, boolean[] tt, WithLineInfo<String>[] funs, boolean a,
-            boolean b, boolean c,
-            boolean[] args, int[] opc, int rec) throws PlcException {
+    private Boolean executeFunction(int fno, boolean[] pt, boolean[] tt, CompiledFunction[] funs, boolean a,
+            boolean b, boolean c, int nArgs, int rec) throws PlcException {
 
         int tailcalls = 0;
+        Frame frame = frames[rec];
+        int sp = nArgs;
 
         // Wrap in an while(true) to allow the t opcode to be a tail call.
         outer:
             while (true) {
-                String fn = funs[fno].code;
-                LineInfo[] lis = funs[fno].lineInfo;
-                char[] code = fn.toCharArray();
-                int[] jt = new int[code.length]; // Jump table so that [ and ] aren't that messy
-                /* scope */
-                {
-                    Stack<Integer> bracketStack = new Stack<>();
-                    for (int i = 0; i < code.length; i++) {
-                        char ch = code[i];
-                        if (ch == '[') {
-                            bracketStack.push(i);
-                        } else if (ch == ']') {
-                            int j = bracketStack.pop();
-                            jt[i] = j;
-                            jt[j] = i;
-                        }
-                    }
-                }
+                CompiledFunction fn = funs[fno];
+                int[] code = fn.code;
+                boolean[] stack = frame.stack;
+                boolean[] lt = frame.locals;
+                int[] shifts = frame.shifts;
+                Arrays.fill(lt, false);
+                Arrays.fill(shifts, 0);
 
                 int ip = 0;
-                Stack<Boolean> executionStack = new Stack<>();
-                for (boolean arg1 : args) {
-                    executionStack.push(arg1);
-                }
-                boolean[] lt = new boolean[32];
-                int pshift = 0;
-                int tshift = 0;
-                int lshift = 0;
                 char op = '?';
 
-                LineInfo li = new LineInfo(0, 0);
+                LineInfo li = NO_LINE;
                 try {
                     if (rec > MAX_RECURSION)
                         throw new PlcException("stack overflow", "Aborted due to too many recursive non-tail calls.");
                     try {
                         while (ip < code.length) {
-                            opc[0]++;
-                            if (opc[0] == MAX_INSTRUCTION_COUNT)
+                            instructionCount++;
+                            if (instructionCount == MAX_INSTRUCTION_COUNT)
                                 throw new PlcException("ran too long", "Aborted due to running too many instructions in " +
                                         "one update");
-                            if (executionStack.size() > MAX_STACK_SIZE)
+                            if (sp > MAX_STACK_SIZE)
                                 throw new PlcException("stack too big", "Aborted due to too many values pushed onto stack" +
                                         ".");
-                            op = code[ip];
-                            li = lis[ip];
-                            switch (op) {
-                                case '+':
-                                    executionStack.push(true);
+                            op = fn.opcodes[ip];
+                            li = fn.lineInfo[ip];
+                            switch (code[ip]) {
+                                case OP_PUSH_TRUE:
+                                    stack[sp++] = true;
+                                    ip++;
                                     break;
-                                case '-':
-                                    executionStack.push(false);
+                                case OP_PUSH_FALSE:
+                                    stack[sp++] = false;
+                                    ip++;
                                     break;
 
-                                case 'A':
-                                    executionStack.push(a);
+                                case OP_PUSH_A:
+                                    stack[sp++] = a;
+                                    ip++;
                                     break;
-                                case 'B':
-                                    executionStack.push(b);
+                                case OP_PUSH_B:
+                                    stack[sp++] = b;
+                                    ip++;
                                     break;
-                                case 'C':
-                                    executionStack.push(c);
+                                case OP_PUSH_C:
+                                    stack[sp++] = c;
+                                    ip++;
                                     break;
 
-                                case '<':
-                                case '>':
-                                case 'e': {
-                                    int mul = 1;
-                                    int add = 0;
-                                    switch (code[ip]) {
-                                        case '<':
-                                            add = -1;
-                                            break;
-                                        case '>':
-                                            add = +1;
-                                            break;
-                                        case 'e':
-                                            mul = 0;
-                                            break;
-                                        default:
-                                            break;
+                                case OP_NOP:
+                                    ip++;
+                                    break;
+
+                                case OP_SHIFT:
+                                    shifts[code[ip + 1]] += code[ip + 2];
+                                    ip += 3;
+                                    break;
+                                case OP_RESET_SHIFT:
+                                    shifts[code[ip + 1]] = 0;
+                                    ip += 2;
+                                    break;
+
+                                case OP_STORE:
+                                case OP_LOAD: {
+                                    int t = code[ip + 1];
+                                    boolean[] table = t == TABLE_PERSISTENT ? pt : t == TABLE_TEMP ? tt : lt;
+                                    int add = code[ip + 2] == 0 ? code[ip + 3] : mod(code[ip + 3] + shifts[t], 32);
+                                    if (code[ip] == OP_STORE) {
+                                        if (sp == 0) throw emptyStack();
+                                        table[add] = stack[--sp];
+                                    } else {
+                                        stack[sp++] = table[add];
                                     }
+                                    ip += 4;
+                                }
+                                break;
 
-                                    switch (code[++ip]) {
-                                        case 'p':
-                                        case 'P':
-                                            pshift = mul * pshift + add;
-                                            break;
-                                        case 't':
-                                        case 'T':
-                                            tshift = mul * tshift + add;
-                                            break;
-                                        case 'l':
-                                        case 'L':
-                                            lshift = mul * lshift + add;
-                                            break;
-                                        default:
-                                            break;
+                                case OP_DUP:
+                                    if (sp == 0) throw emptyStack();
+                                    stack[sp] = stack[sp - 1];
+                                    sp++;
+                                    ip++;
+                                    break;
+                                case OP_POP:
+                                    if (sp == 0) throw emptyStack();
+                                    sp--;
+                                    ip++;
+                                    break;
+                                case OP_PEEK: {
+                                    int index = sp - 1 - code[ip + 1];
+                                    if (index < 0 || index >= sp)
+                                        throw new PlcException("bad stack pos", "Attempted to call peek on too small a " +
+                                                "stack.");
+                                    stack[sp] = stack[index];
+                                    sp++;
+                                    ip += 2;
+                                }
+                                break;
+                                case OP_SWAP: {
+                                    if (sp < 2) {
+                                        sp = 0;
+                                        throw emptyStack();
                                     }
+                                    boolean x = stack[sp - 1];
+                                    stack[sp - 1] = stack[sp - 2];
+                                    stack[sp - 2] = x;
+                                    ip++;
                                 }
                                 break;
 
-                                case 'S':
-                                case 'L': {
-                                    boolean[] table = null;
-                                    int shift = 0;
+                                case OP_NOT:
+                                    if (sp == 0) throw emptyStack();
+                                    stack[sp - 1] = !stack[sp - 1];
+                                    ip++;
+                                    break;
 
-                                    switch (code[++ip]) {
-                                        case 'p':
-                                            shift = pshift;
-                                        case 'P':
-                                            table = pt;
+                                case OP_XOR:
+                                case OP_AND:
+                                case OP_OR:
+                                case OP_EQUALS: {
+                                    if (sp < 2) {
+                                        sp = 0;
+                                        throw emptyStack();
+                                    }
+                                    boolean x = stack[--sp];
+                                    boolean y = stack[sp - 1];
+                                    switch (code[ip]) {
+                                        case OP_XOR:
+                                            stack[sp - 1] = x ^ y;
                                             break;
-                                        case 't':
-                                            shift = tshift;
-                                        case 'T':
-                                            table = tt;
+                                        case OP_AND:
+                                            stack[sp - 1] = x & y;
                                             break;
-                                        case 'l':
-                                            shift = lshift;
-                                        case 'L':
-                                            table = lt;
+                                        case OP_OR:
+                                            stack[sp - 1] = x | y;
                                             break;
                                         default:
+                                            stack[sp - 1] = x == y;
                                             break;
                                     }
-                                    if(table == null)
-                                        break;
-
-                                    int add = decodeAddress(code[++ip], shift);
-                                    if (op == 'S')
-                                        table[add] = executionStack.pop();
-                                    else
-                                        executionStack.push(table[add]);
+                                    ip++;
                                 }
                                 break;
 
-                                case 'd':
-                                    executionStack.push(executionStack.peek());
-                                    break;
-                                case 'p':
-                                    executionStack.pop();
-                                    break;
-                                case 'v':
-                                    try {
-                                        int level = parseNumber(code[++ip]);
-                                        executionStack.push(executionStack.get(executionStack.size() - 1 - level));
-                                    } catch (ArrayIndexOutOfBoundsException e) {
-                                        throw new PlcException("bad stack pos", "Attempted to call peek on too small a " +
-                                                "stack.");
+                                case OP_TRUTH_TABLE: {
+                                    if (sp < 2) {
+                                        sp = 0;
+                                        throw emptyStack();
                                     }
-                                    break;
-                                case 'x':
-                                    boolean x = executionStack.pop();
-                                    boolean y = executionStack.pop();
-                                    executionStack.push(x);
-                                    executionStack.push(y);
-                                    break;
-                                default:
-                                    break;
-
-                                case '!':
-                                    executionStack.push(!executionStack.pop());
-                                    break;
-
-                                    // Using the short-circuiting versions would cause it to sometimes pop one less
-                                    // value than it should.
-                                case '^':
-                                    executionStack.push(executionStack.pop() ^ executionStack.pop());
-                                    break;
-                                case '&':
-                                    executionStack.push(executionStack.pop() & executionStack.pop());
-                                    break;
-                                case '|':
-                                    executionStack.push(executionStack.pop() | executionStack.pop());
-                                    break;
-                                case '=':
-                                    executionStack.push(executionStack.pop() == executionStack.pop());
-                                    break;
-
-                                case '.':
-                                    boolean ta = parseTableChar(code[++ip]);
-                                    boolean tb = parseTableChar(code[++ip]);
-                                    boolean tc = parseTableChar(code[++ip]);
-                                    boolean td = parseTableChar(code[++ip]);
-
-                                    boolean e = executionStack.pop();
-                                    boolean f = executionStack.pop();
-
-                                    if (!e && !f) {
-                                        executionStack.push(ta);
-                                    } else if (!e && f) {
-                                        executionStack.push(tb);
-                                    } else if (e && !f) {
-                                        executionStack.push(tc);
-                                    } else {
-                                        executionStack.push(td);
-                                    }
-                                    break;
+                                    boolean e = stack[--sp];
+                                    boolean f = stack[sp - 1];
+                                    int row = (e ? 2 : 0) | (f ? 1 : 0);
+                                    stack[sp - 1] = (code[ip + 1] >> row & 1) != 0;
+                                    ip += 2;
+                                }
+                                break;
 
-                                case 'c':
-                                case 't':
-                                    int n = parseNumber(code[++ip]) * 10 + parseNumber(code[++ip]);
-                                    int nArgs = parseNumber(code[++ip]);
-                                    boolean[] arg = new boolean[nArgs];
+                                case OP_CALL:
+                                case OP_TAIL_CALL: {
+                                    int n = code[ip + 1];
+                                    int count = code[ip + 2];
 
+                                    if (count < 0)
+                                        throw new PlcException("bad arg count", "Attempted to call a function with a " +
+                                                "negative number of arguments.");
                                     if (n < 0 || n >= funs.length)
                                         throw new PlcException("func not found", "Attempted to call nonexistent function " +
                                                 "#" + n);
 
-                                    if (op == 'c') {
-                                        for (int i = nArgs - 1; i >= 0; i--) {
-                                            arg[i] = executionStack.pop();
+                                    if (code[ip] == OP_CALL) {
+                                        if (sp < count) {
+                                            sp = 0;
+                                            throw emptyStack();
                                         }
-                                        Boolean v = executeFunction(n, pt, tt, funs, a, b, c, arg, opc, rec + 1);
+                                        sp -= count;
+                                        Frame callee = frames[rec + 1];
+                                        System.arraycopy(stack, sp, callee.stack, 0, count);
+                                        Boolean v = executeFunction(n, pt, tt, funs, a, b, c, count, rec + 1);
                                         if (v != null) {
-                                            executionStack.push(v);
+                                            stack[sp++] = v;
                                         }
+                                        ip += 3;
                                         break;
                                     } else {
+                                        // Tail calls don't take their arguments from the stack.
+                                        if (frame.stack.length < count)
+                                            frame.stack = new boolean[count];
+                                        Arrays.fill(frame.stack, 0, count, false);
+                                        sp = count;
                                         fno = n;
-                                        args = arg;
                                         tailcalls++;
                                         continue outer;
                                     }
+                                }
 
-                                case '[':
-                                    if (!executionStack.pop()) {
-                                        ip = jt[ip];
-                                    }
+                                case OP_JUMP_UNLESS:
+                                    if (sp == 0) throw emptyStack();
+                                    ip = stack[--sp] ? ip + 2 : code[ip + 1];
                                     break;
-                                case ']':
-                                    if (executionStack.pop()) {
-                                        ip = jt[ip];
-                                    }
+                                case OP_JUMP_IF:
+                                    if (sp == 0) throw emptyStack();
+                                    ip = stack[--sp] ? code[ip + 1] : ip + 2;
                                     break;
 
-                                case 's':
+                                case OP_STOP:
                                     return null;
-                                case 'r':
-                                    return executionStack.pop();
+                                case OP_RETURN:
+                                    if (sp == 0) throw emptyStack();
+                                    return stack[--sp];
+
+                                default:
+                                    throw new PlcException("bad opcode", "Unknown compiled opcode " + code[ip] + ".");
                             }
-                            ip++;
                         }
-                    } catch (EmptyStackException e) {
-                        throw new PlcException("empty stack", "Popped while stack was empty.");
                     } catch (StackOverflowError e) {
                         throw new PlcException("stack overflow", "Java stack overflow.");
                     }
                 } catch (PlcException e) {
-                    throw new PlcException(e.getMessage(), errmsg(e.detailedMessage, fno, op, li, pt, tt, lt, pshift,
-                            tshift, lshift, executionStack,
+                    throw new PlcException(e.getMessage(), errmsg(e.detailedMessage, fno, op, li, pt, tt, frame, sp,
                             tailcalls));
                 }
                 return null;
@@ -628,18 +775,69 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
         return new String(c);
     }
 
-    private String dumpStateText(Boolean[] state) {
+    @Override
+    public String dumpState(boolean[] state) {
 
-        char[] c = new char[state.length];
-        for (int i = 0; i < state.length; i++) {
-            c[i] = state[i] ? '1' : '0';
+        return ChatColor.RED + "Persistent Variable Table: \n " + ChatColor.RESET + dumpStateText(state);
+    }
+
+    /**
+     * Builds the opcodes of a function.
+     */
+    private static final class Assembler {
+
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Character> opcodes = new ArrayList<>();
+        private final List<LineInfo> lineInfo = new ArrayList<>();
+
+        /**
+         * Adds an instruction.
+         *
+         * @param opcode The character of the instruction in the source
+         * @param li The position of the instruction in the source
+         * @param values The opcode, followed by its operands
+         * @return The index of the instruction
+         */
+        int emit(char opcode, LineInfo li, int... values) {
+
+            int start = code.size();
+            for (int i = 0; i < values.length; i++) {
+                code.add(values[i]);
+                opcodes.add(i == 0 ? opcode : '?');
+                lineInfo.add(i == 0 ? li : NO_LINE);
+            }
+            return start;
+        }
+
+        void patch(int index, int value) {
+
+            code.set(index, value);
+        }
+
+        int size() {
+
+            return code.size();
+        }
+
+        CompiledFunction build() {
+
+            int[] c = new int[code.size()];
+            char[] o = new char[opcodes.size()];
+            for (int i = 0; i < c.length; i++) {
+                c[i] = code.get(i);
+                o[i] = opcodes.get(i);
+            }
+            return new CompiledFunction(c, o, lineInfo.toArray(new LineInfo[lineInfo.size()]));
         }
-        return new String(c);
     }
 
-    @Override
-    public String dumpState(boolean[] state) {
+    /**
+     * The stack, local variable table and shift registers of a function call.
+     */
+    private static final class Frame {
 
-        return ChatColor.RED + "Persistent Variable Table: \n " + ChatColor.RESET + dumpStateText(state);
+        private boolean[] stack = new boolean[MAX_STACK_SIZE + 1];
+        private final boolean[] locals = new boolean[32];
+        private final int[] shifts = new int[3];
     }
 }
@@ -0,0 +1,60 @@
+package com.sk89q.craftbook.mechanics.ic.plc.lang;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the results of running a Perlstone program. Each run is keyed by its inputs and the persistent table it
+ * started with, and gives the outputs and the persistent table it finished with. The table has a fixed size, and a
+ * result replaces whichever result was in its slot before.
+ */
+final class PerlstoneMemo {
+
+    private static final long NONE = -1;
+
+    private final long[] keys;
+    private final long[] values;
+    private final int mask;
+
+    /**
+     * @param size The least amount of results to keep room for
+     */
+    PerlstoneMemo(int size) {
+
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        Arrays.fill(values, NONE);
+    }
+
+    /**
+     * Gets a remembered result.
+     *
+     * @param key The packed inputs and starting state
+     * @return The packed outputs and finishing state, or a negative number if there isn't one
+     */
+    long get(long key) {
+
+        int index = indexOf(key);
+        return keys[index] == key ? values[index] : NONE;
+    }
+
+    /**
+     * Remembers a result.
+     *
+     * @param key The packed inputs and starting state
+     * @param value The packed outputs and finishing state, which must not be negative
+     */
+    void put(long key, long value) {
+
+        int index = indexOf(key);
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    private int indexOf(long key) {
+
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+}
@@ -0,0 +1,26 @@
+package com.sk89q.craftbook.mechanics.ic.plc.lang;
+
+/**
+ * A compiled Perlstone program. Programs don't change once they are compiled, so PLCs with the same code can share one,
+ * along with the results it has remembered.
+ */
+public final class PerlstoneProgram {
+
+    final CompiledFunction[] functions;
+    final PerlstoneMemo memo;
+
+    /**
+     * @param functions The compiled functions
+     * @param memoSize The amount of results to remember, or 0 to always run the program
+     */
+    PerlstoneProgram(CompiledFunction[] functions, int memoSize) {
+
+        this.functions = functions;
+        memo = memoSize > 0 ? new PerlstoneMemo(memoSize) : null;
+    }
+
+    public int getFunctionCount() {
+
+        return functions.length;
+    }
+}
@@ -9,6 +9,7 @@ import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.items.CommandItemAction.ActionRunStage;
 import com.sk89q.craftbook.mechanics.items.CommandItemDefinition.CommandType;
 import com.sk89q.craftbook.util.*;
+import com.sk89q.craftbook.util.persistent.PersistentStorage;
 import com.sk89q.util.yaml.YAMLFormat;
 import com.sk89q.util.yaml.YAMLProcessor;
 import org.apache.commons.lang.StringUtils;
@@ -47,6 +48,11 @@ public class CommandItems extends AbstractCraftBookMechanic {
     private Map<Tuple2<String, String>, Integer> cooldownPeriods;
     private Map<UUID, List<ItemStack>> deathPersistItems = Maps.newHashMap();
 
+    /**
+     * The namespace of the persistent data that holds the items each player keeps on death.
+     */
+    private static final String DEATH_ITEMS_NAMESPACE = "command-items.death-items";
+
     public CommandItemDefinition getDefinitionByName(String name) {
 
         for(CommandItemDefinition def : definitions)
@@ -58,17 +64,7 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
     @Override
     public void disable () {
-        for (Entry<UUID, List<ItemStack>> deathPersistEntry : deathPersistItems.entrySet()) {
-            Map<String, List<String>> items = (Map<String, List<String>>) CraftBookPlugin.inst().getPersistentStorage().get("command-items.death-items");
-            List<String> its = items.get(deathPersistEntry.getKey().toString());
-            if (its == null) its = new ArrayList<>();
-            for (ItemStack stack : deathPersistEntry.getValue()) {
-                its.add(ItemSyntax.getStringFromItem(stack));
-            }
-            items.put(deathPersistEntry.getKey().toString(), its);
-            CraftBookPlugin.inst().getPersistentStorage().set("command-items.death-items", items);
-        }
-
+        deathPersistItems.clear();
         definitions = null;
         cooldownPeriods = null;
         config = null;
@@ -138,21 +134,26 @@ public class CommandItems extends AbstractCraftBookMechanic {
             }, 10, 10);
         }
 
-        if(!CraftBookPlugin.inst().getPersistentStorage().has("command-items.death-items")) {
-            CraftBookPlugin.inst().getPersistentStorage().set("command-items.death-items", new HashMap<String, List<String>>());
-        } else {
-            Map<String, List<String>> items = (Map<String, List<String>>) CraftBookPlugin.inst().getPersistentStorage().get("command-items.death-items");
-            for (Entry<String, List<String>> entry : items.entrySet()) {
-                UUID uuid = UUID.fromString(entry.getKey());
-                List<ItemStack> its = Lists.newArrayList();
-                for (String item : entry.getValue()) {
-                    its.add(ItemSyntax.getItem(item));
-                }
-                deathPersistItems.put(uuid, its);
+        PersistentStorage storage = CraftBookPlugin.inst().getPersistentStorage();
+        Map<String, Object> items = storage.getAll(DEATH_ITEMS_NAMESPACE);
+        Object legacy = storage.get(DEATH_ITEMS_NAMESPACE);
+        if(legacy instanceof Map && items.isEmpty()) {
+            // Death items used to be stored as a single map, so they are moved into an entry per player.
+            storage.remove(DEATH_ITEMS_NAMESPACE);
+            for (Entry<?, ?> entry : ((Map<?, ?>) legacy).entrySet()) {
+                items.put(String.valueOf(entry.getKey()), entry.getValue());
+                storage.put(DEATH_ITEMS_NAMESPACE, String.valueOf(entry.getKey()), entry.getValue());
             }
+        }
 
-            items.clear();
-            CraftBookPlugin.inst().getPersistentStorage().set("command-items.death-items", items);
+        for (Entry<String, Object> entry : items.entrySet()) {
+            if(!(entry.getValue() instanceof List)) continue;
+            UUID uuid = UUID.fromString(entry.getKey());
+            List<ItemStack> its = Lists.newArrayList();
+            for (Object item : (List<?>) entry.getValue()) {
+                its.add(ItemSyntax.getItem(String.valueOf(item)));
+            }
+            deathPersistItems.put(uuid, its);
         }
 
         return true;
@@ -322,6 +323,7 @@ public class CommandItems extends AbstractCraftBookMechanic {
                     if (items == null) items = Lists.newArrayList();
                     items.add(stack);
                     deathPersistItems.put(event.getEntity().getUniqueId(), items);
+                    saveDeathItems(event.getEntity().getUniqueId(), items);
                 }
             }
         }
@@ -358,6 +360,22 @@ public class CommandItems extends AbstractCraftBookMechanic {
             event.getPlayer().getInventory().addItem(it);
         }
         deathPersistItems.remove(event.getPlayer().getUniqueId());
+        CraftBookPlugin.inst().getPersistentStorage().remove(DEATH_ITEMS_NAMESPACE, event.getPlayer().getUniqueId().toString());
+    }
+
+    /**
+     * Stores the items a player keeps on death, writing only the entry of that player.
+     *
+     * @param player The player
+     * @param items The items
+     */
+    private static void saveDeathItems(UUID player, List<ItemStack> items) {
+
+        List<String> its = new ArrayList<>(items.size());
+        for (ItemStack stack : items) {
+            its.add(ItemSyntax.getStringFromItem(stack));
+        }
+        CraftBookPlugin.inst().getPersistentStorage().put(DEATH_ITEMS_NAMESPACE, player.toString(), its);
     }
 
     @SuppressWarnings("deprecation")
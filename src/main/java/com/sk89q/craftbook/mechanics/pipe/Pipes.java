@@ -3,6 +3,7 @@ package com.sk89q.craftbook.mechanics.pipe;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.CraftBookPlayer;
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.BlockSyntax;
@@ -40,13 +41,14 @@ import org.bukkit.util.Vector;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
-public class Pipes extends AbstractCraftBookMechanic {
+public class Pipes extends AbstractCraftBookMechanic implements RedstoneMechanic {
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
@@ -535,4 +537,10 @@ public class Pipes extends AbstractCraftBookMechanic {
         config.setComment(path + "warn-when-too-large", "Prints a warning in the console when a pipe that's too large is found.");
         warnWhenMassive = config.getBoolean(path + "warn-when-too-large", false);
     }
+
+    @Override
+    public Set<Material> getRedstoneTargets() {
+
+        return EnumSet.of(Material.STICKY_PISTON);
+    }
 }
\ No newline at end of file
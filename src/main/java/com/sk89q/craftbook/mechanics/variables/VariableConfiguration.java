@@ -2,11 +2,9 @@ package com.sk89q.craftbook.mechanics.variables;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+import com.sk89q.craftbook.util.ProfileResolver;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.craftbook.util.Tuple2;
-import com.sk89q.squirrelid.Profile;
-import com.sk89q.squirrelid.resolver.HttpRepositoryService;
-import com.sk89q.squirrelid.resolver.ProfileService;
 import com.sk89q.util.yaml.YAMLProcessor;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -48,16 +46,18 @@ public class VariableConfiguration {
                 if(CraftBookPlugin.inst().getUUIDMappings().getUUID(keys[0]) != null) continue;
                 OfflinePlayer player = Bukkit.getOfflinePlayer(keys[0]);
                 if(player.hasPlayedBefore()) {
-                    try {
-                        ProfileService resolver = HttpRepositoryService.forMinecraft();
-                        Profile profile = resolver.findByName(player.getName()); // May be null
-
-                        UUID uuid = profile.getUniqueId();
-                        keys[0] = CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    ProfileResolver resolver = CraftBookPlugin.inst().getProfileResolver();
+                    if(resolver.isCached(player.getName())) {
+                        UUID uuid = resolver.getCached(player.getName());
+                        if(uuid != null)
+                            keys[0] = CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid);
+                        shouldSave = true;
+                    } else {
+                        // Load it under the name for now, and move it once the name has been looked up.
+                        String name = keys[0];
+                        String variable = keys[1];
+                        resolver.resolve(player.getName(), uuid -> convertName(variable, name, uuid));
                     }
-                    shouldSave = true;
                 }
             }
 
@@ -70,6 +70,19 @@ public class VariableConfiguration {
             save();
     }
 
+    /**
+     * Moves a variable that is namespaced by a player name to the CraftBook ID of the player.
+     */
+    private void convertName(String variable, String name, UUID uuid) {
+
+        if(uuid == null || VariableManager.instance == null) return;
+
+        String value = VariableManager.instance.removeVariable(variable, name);
+        if(value == null) return;
+        VariableManager.instance.setVariable(variable, CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid), value);
+        save();
+    }
+
     public void save() {
 
         config.clear();
@@ -6,21 +6,21 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.util.*;
 import com.sk89q.craftbook.util.events.SelfTriggerPingEvent;
-import com.sk89q.squirrelid.Profile;
-import com.sk89q.squirrelid.resolver.HttpRepositoryService;
-import com.sk89q.squirrelid.resolver.ProfileService;
 import com.sk89q.util.yaml.YAMLFormat;
 import com.sk89q.util.yaml.YAMLProcessor;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.server.ServerCommandEvent;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public class VariableManager extends AbstractCraftBookMechanic {
@@ -34,11 +34,17 @@ public class VariableManager extends AbstractCraftBookMechanic {
      */
     private HashMap<Tuple2<String, String>, String> variableStore;
 
+    /**
+     * Counts every change to the variables, so that anything rendered from them knows when it is outdated.
+     */
+    private static long modificationCount = 0;
+
     @Override
     public boolean enable() {
 
         instance = this;
         variableStore = new HashMap<>();
+        modificationCount++;
         CraftBookPlugin.logDebugMessage("Initializing Variables!", "startup.variables");
 
         try {
@@ -67,6 +73,7 @@ public class VariableManager extends AbstractCraftBookMechanic {
         }
         variableStore.clear();
         instance = null;
+        modificationCount++;
     }
 
     public boolean hasVariable(String variable, String namespace) {
@@ -81,17 +88,35 @@ public class VariableManager extends AbstractCraftBookMechanic {
 
     public String setVariable(String variable, String namespace, String value) {
 
+        modificationCount++;
         return variableStore.put(new Tuple2<>(variable, namespace), value);
     }
 
     public String removeVariable(String variable, String namespace) {
 
+        modificationCount++;
         return variableStore.remove(new Tuple2<>(variable, namespace));
     }
 
-    public HashMap<Tuple2<String, String>, String> getVariableStore() {
+    /**
+     * Gets a counter that increases whenever a variable is set or removed, or the variables are reloaded.
+     *
+     * @return The modification count
+     */
+    public static long getModificationCount() {
 
-        return variableStore;
+        return modificationCount;
+    }
+
+    /**
+     * Gets all of the variables. Changes must go through {@link #setVariable} and {@link #removeVariable}, so that they
+     * are counted.
+     *
+     * @return An unmodifiable view of the variables, by (Variable, Namespace)
+     */
+    public Map<Tuple2<String, String>, String> getVariableStore() {
+
+        return Collections.unmodifiableMap(variableStore);
     }
 
     /**
@@ -153,9 +178,21 @@ public class VariableManager extends AbstractCraftBookMechanic {
     public void onSelfTriggerPing(SelfTriggerPingEvent event) {
 
         if(!CraftBookPlugin.inst().getConfiguration().convertNamesToCBID) return;
-        if(SignUtil.isSign(event.getBlock())) {
+        convertNames(event.getBlock());
+    }
+
+    /**
+     * Replaces player names in the variables on a sign with CraftBook IDs. Names that haven't been resolved yet are
+     * looked up in the background, and the sign is converted again once they are.
+     *
+     * @param block The sign
+     */
+    private void convertNames(Block block) {
+
+        if(SignUtil.isSign(block)) {
 
-            ChangedSign sign = CraftBookBukkitUtil.toChangedSign(event.getBlock());
+            ChangedSign sign = CraftBookBukkitUtil.toChangedSign(block);
+            ProfileResolver resolver = CraftBookPlugin.inst().getProfileResolver();
 
             int i = 0;
 
@@ -166,15 +203,17 @@ public class VariableManager extends AbstractCraftBookMechanic {
                     if(CraftBookPlugin.inst().getUUIDMappings().getUUID(namespace) != null) continue;
                     OfflinePlayer player = Bukkit.getOfflinePlayer(namespace);
                     if(player.hasPlayedBefore()) {
-                        try {
-                            ProfileService resolver = HttpRepositoryService.forMinecraft();
-                            Profile profile = resolver.findByName(player.getName()); // May be null
+                        if(!resolver.isCached(player.getName())) {
+                            resolver.resolve(player.getName(), uuid -> {
+                                if(uuid != null && instance == this && block.getWorld().isChunkLoaded(block.getX() >> 4, block.getZ() >> 4))
+                                    convertNames(block);
+                            });
+                            continue;
+                        }
 
-                            UUID uuid = profile.getUniqueId();
+                        UUID uuid = resolver.getCached(player.getName());
+                        if(uuid != null)
                             line = StringUtils.replace(line, var, var.replace(namespace, CraftBookPlugin.inst().getUUIDMappings().getCBID(uuid)));
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
                     }
                 }
                 sign.setLine(i++, line);
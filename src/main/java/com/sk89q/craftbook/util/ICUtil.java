@@ -22,6 +22,7 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
 import com.sk89q.craftbook.mechanics.ic.AbstractIC;
 import com.sk89q.craftbook.mechanics.ic.ICMechanic;
+import com.sk89q.craftbook.mechanics.ic.ICOutputStage;
 import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
 import com.sk89q.craftbook.mechanics.pipe.PipeRequestEvent;
 import com.sk89q.worldedit.IncompleteRegionException;
@@ -74,6 +75,11 @@ public final class ICUtil {
         if (!block.getRelative(lever.getFacing().getOppositeFace()).equals(source))
             return false;
 
+        // leave the change to the output stage, which applies it with the rest of the tick's changes
+        ICOutputStage outputStage = ICMechanic.instance == null ? null : ICMechanic.instance.getOutputStage();
+        if (outputStage != null)
+            return outputStage.set(block, lever, state, source);
+
         // check if the lever was toggled on
         boolean wasOn = lever.isPowered();
 
@@ -287,6 +287,97 @@ public final class LocationUtil {
         return false;
     }
 
+    /**
+     * Packs a set of block coordinates into a single long. The X and Z axis get 27 bits each, and the Y axis gets
+     * the remaining 10 bits.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The packed block key
+     */
+    public static long toBlockKey(int x, int y, int z) {
+
+        return ((long) x & 0x7FFFFFFL) | (((long) z & 0x7FFFFFFL) << 27) | ((long) y << 54);
+    }
+
+    /**
+     * Packs the coordinates of the given block into a single long.
+     *
+     * @param block The block
+     * @return The packed block key
+     * @see #toBlockKey(int, int, int)
+     */
+    public static long toBlockKey(Block block) {
+
+        return toBlockKey(block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Packs the block coordinates of the given location into a single long.
+     *
+     * @param location The location
+     * @return The packed block key
+     * @see #toBlockKey(int, int, int)
+     */
+    public static long toBlockKey(Location location) {
+
+        return toBlockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public static int getBlockKeyX(long key) {
+
+        return (int) ((key << 37) >> 37);
+    }
+
+    public static int getBlockKeyY(long key) {
+
+        return (int) (key >> 54);
+    }
+
+    public static int getBlockKeyZ(long key) {
+
+        return (int) ((key << 10) >> 37);
+    }
+
+    /**
+     * Packs a pair of chunk coordinates into a single long.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The packed chunk key
+     */
+    public static long toChunkKey(int chunkX, int chunkZ) {
+
+        return ((long) chunkX & 0xFFFFFFFFL) | (((long) chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    public static long toChunkKey(Chunk chunk) {
+
+        return toChunkKey(chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Gets the key of the chunk that contains the given packed block.
+     *
+     * @param blockKey The packed block key
+     * @return The packed chunk key
+     */
+    public static long getChunkKey(long blockKey) {
+
+        return toChunkKey(getBlockKeyX(blockKey) >> 4, getBlockKeyZ(blockKey) >> 4);
+    }
+
+    public static int getChunkKeyX(long key) {
+
+        return (int) key;
+    }
+
+    public static int getChunkKeyZ(long key) {
+
+        return (int) (key >> 32);
+    }
+
     /**
      * Gets an array of {@link BlockFace} that are direct.
      * 
@@ -0,0 +1,287 @@
+package com.sk89q.craftbook.util;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.util.persistent.PersistentStorage;
+import com.sk89q.squirrelid.Profile;
+import com.sk89q.squirrelid.resolver.HttpRepositoryService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Resolves player names to UUIDs without blocking the main thread. Lookups are made on a background thread, and the
+ * results are handed back on the main thread. Names that resolve are remembered in the persistent storage, names that
+ * don't are remembered for a while so they aren't looked up again straight away, and several requests for the same
+ * name only cause one lookup.
+ *
+ * <p>All methods other than {@link #close()} should be called from the main thread.</p>
+ */
+public class ProfileResolver {
+
+    /**
+     * The namespace of the persistent data that holds resolved names.
+     */
+    private static final String CACHE_NAMESPACE = "profile-cache";
+
+    /**
+     * How long a resolved name is trusted for, as names can be changed and later taken by someone else.
+     */
+    private static final long CACHE_TIME = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * How long a name that didn't resolve is remembered for.
+     */
+    private static final long NEGATIVE_CACHE_TIME = 10L * 60 * 1000;
+
+    private final Backend backend;
+    private final Executor mainThread;
+    private final Supplier<PersistentStorage> storage;
+    private final ExecutorService executor;
+
+    private final Map<String, CachedProfile> cache = new ConcurrentHashMap<>();
+    private final Map<String, List<Consumer<UUID>>> requests = new HashMap<>();
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long lookupCount = 0;
+
+    /**
+     * Creates a resolver that looks names up with Mojang, and hands results back through the scheduler.
+     *
+     * @param storage Gets the storage to remember resolved names in, or null to only keep them in memory
+     */
+    public ProfileResolver(Supplier<PersistentStorage> storage) {
+
+        this(new HttpBackend(), runnable -> {
+            if(CraftBookPlugin.inst().isEnabled())
+                CraftBookPlugin.server().getScheduler().runTask(CraftBookPlugin.inst(), runnable);
+        }, storage);
+    }
+
+    /**
+     * @param backend The backend to look names up with
+     * @param mainThread Runs the results of lookups on the main thread
+     * @param storage Gets the storage to remember resolved names in, or null to only keep them in memory
+     */
+    public ProfileResolver(Backend backend, Executor mainThread, Supplier<PersistentStorage> storage) {
+
+        this.backend = backend;
+        this.mainThread = mainThread;
+        this.storage = storage;
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CraftBook Profile Resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets whether the result of resolving a name is already known, so that {@link #getCached(String)} can be used
+     * in place of a lookup.
+     *
+     * @param name The name
+     * @return If the name has been resolved, whether or not it has a UUID
+     */
+    public boolean isCached(String name) {
+
+        return getEntry(name.toLowerCase(Locale.ENGLISH)) != null;
+    }
+
+    /**
+     * Gets the UUID of a name if it is already known.
+     *
+     * @param name The name
+     * @return The UUID, or null if it isn't known or the name doesn't have one
+     */
+    public UUID getCached(String name) {
+
+        CachedProfile profile = getEntry(name.toLowerCase(Locale.ENGLISH));
+        return profile == null ? null : profile.uuid;
+    }
+
+    /**
+     * Resolves a name to a UUID. If the result is already known the callback runs straight away, otherwise it runs on
+     * the main thread once the lookup finishes.
+     *
+     * @param name The name
+     * @param callback Given the UUID, or null if the name doesn't have one
+     */
+    public void resolve(String name, Consumer<UUID> callback) {
+
+        String key = name.toLowerCase(Locale.ENGLISH);
+        CachedProfile profile = getEntry(key);
+        if(profile != null) {
+            hitCount++;
+            callback.accept(profile.uuid);
+            return;
+        }
+
+        missCount++;
+        List<Consumer<UUID>> callbacks = requests.get(key);
+        if(callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+
+        callbacks = new ArrayList<>();
+        callbacks.add(callback);
+        requests.put(key, callbacks);
+
+        try {
+            executor.execute(() -> lookup(name, key));
+        } catch(RejectedExecutionException e) {
+            requests.remove(key);
+        }
+    }
+
+    private void lookup(String name, String key) {
+
+        UUID uuid = null;
+        try {
+            uuid = backend.findByName(name);
+        } catch(InterruptedException e) {
+            // The resolver is closing, so drop the request rather than leave it pending forever.
+            mainThread.execute(() -> requests.remove(key));
+            Thread.currentThread().interrupt();
+            return;
+        } catch(Exception e) {
+            CraftBookPlugin.logger().log(Level.WARNING, "Failed to look up the UUID of " + name, e);
+        }
+
+        UUID result = uuid;
+        mainThread.execute(() -> complete(key, result));
+    }
+
+    private void complete(String key, UUID uuid) {
+
+        lookupCount++;
+        long now = System.currentTimeMillis();
+        cache.put(key, new CachedProfile(uuid, now + (uuid == null ? NEGATIVE_CACHE_TIME : CACHE_TIME)));
+        PersistentStorage persistentStorage = storage.get();
+        if(uuid != null && persistentStorage != null)
+            persistentStorage.put(CACHE_NAMESPACE, key, uuid.toString() + ':' + now);
+
+        List<Consumer<UUID>> callbacks = requests.remove(key);
+        if(callbacks == null) return;
+        for(Consumer<UUID> callback : callbacks) {
+            try {
+                callback.accept(uuid);
+            } catch(RuntimeException e) {
+                CraftBookPlugin.logger().log(Level.WARNING, "Failed to handle the UUID of " + key, e);
+            }
+        }
+    }
+
+    private CachedProfile getEntry(String key) {
+
+        long now = System.currentTimeMillis();
+        CachedProfile profile = cache.get(key);
+        if(profile == null) {
+            profile = readStored(key);
+            if(profile != null)
+                cache.put(key, profile);
+        }
+        if(profile != null && profile.expires < now) {
+            cache.remove(key);
+            return null;
+        }
+        return profile;
+    }
+
+    private CachedProfile readStored(String key) {
+
+        PersistentStorage persistentStorage = storage.get();
+        if(persistentStorage == null) return null;
+        String stored = persistentStorage.getString(CACHE_NAMESPACE + '.' + key, null);
+        if(stored == null) return null;
+
+        int split = stored.indexOf(':');
+        try {
+            return new CachedProfile(UUID.fromString(stored.substring(0, split)), Long.parseLong(stored.substring(split + 1)) + CACHE_TIME);
+        } catch(IllegalArgumentException | IndexOutOfBoundsException e) {
+            persistentStorage.remove(CACHE_NAMESPACE, key);
+            return null;
+        }
+    }
+
+    /**
+     * Stops looking up names. Lookups that haven't finished are dropped.
+     */
+    public void close() {
+
+        executor.shutdownNow();
+    }
+
+    public int getPendingCount() {
+
+        return requests.size();
+    }
+
+    public long getHitCount() {
+
+        return hitCount;
+    }
+
+    public long getMissCount() {
+
+        return missCount;
+    }
+
+    public long getLookupCount() {
+
+        return lookupCount;
+    }
+
+    /**
+     * Looks up the UUIDs of names. This is called from a background thread.
+     */
+    public interface Backend {
+
+        /**
+         * Looks up the UUID of a name.
+         *
+         * @param name The name
+         * @return The UUID, or null if the name doesn't have one
+         */
+        UUID findByName(String name) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Looks names up with the Mojang profile API.
+     */
+    public static class HttpBackend implements Backend {
+
+        @Override
+        public UUID findByName(String name) throws IOException, InterruptedException {
+
+            Profile profile = HttpRepositoryService.forMinecraft().findByName(name);
+            return profile == null ? null : profile.getUniqueId();
+        }
+    }
+
+    private static final class CachedProfile {
+
+        private final UUID uuid;
+        private final long expires;
+
+        CachedProfile(UUID uuid, long expires) {
+
+            this.uuid = uuid;
+            this.expires = expires;
+        }
+    }
+}
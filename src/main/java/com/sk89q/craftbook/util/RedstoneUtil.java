@@ -4,8 +4,14 @@ import org.bukkit.Material;
 import org.bukkit.Tag;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
+import org.bukkit.plugin.RegisteredListener;
 
+import com.sk89q.craftbook.RedstoneMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
+
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Decorates bukkit's directional block power queries with a three-valued logic that differenciates between the
@@ -16,6 +22,13 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
  */
 public final class RedstoneUtil {
 
+    /**
+     * The block types that redstone changes are sent to, or null to send them to every block. This is rebuilt whenever
+     * the listeners of {@link SourcedBlockRedstoneEvent} change.
+     */
+    private static Set<Material> redstoneTargets;
+    private static RegisteredListener[] redstoneListeners;
+
     /**
      * Represents the power input state of a mechanism.
      */
@@ -96,6 +109,31 @@ public final class RedstoneUtil {
         return isPotentialPowerSource(pow);
     }
 
+    /**
+     * Checks whether any listener wants redstone changes for the given block.
+     *
+     * @param block The block
+     * @return If a {@link SourcedBlockRedstoneEvent} should be fired for it
+     */
+    public static boolean isRedstoneTarget(Block block) {
+
+        RegisteredListener[] listeners = SourcedBlockRedstoneEvent.getHandlerList().getRegisteredListeners();
+        if(listeners != redstoneListeners) {
+            redstoneListeners = listeners;
+            redstoneTargets = EnumSet.noneOf(Material.class);
+            for(RegisteredListener listener : listeners) {
+                if(!(listener.getListener() instanceof RedstoneMechanic)) {
+                    // We don't know what this listener wants, so it gets everything.
+                    redstoneTargets = null;
+                    break;
+                }
+                redstoneTargets.addAll(((RedstoneMechanic) listener.getListener()).getRedstoneTargets());
+            }
+        }
+
+        return redstoneTargets == null || redstoneTargets.contains(block.getType());
+    }
+
     public static void debug(Block block) {
 
         CraftBookPlugin.inst().getLogger().info("block " + block + " power debug:");
@@ -3,14 +3,35 @@ package com.sk89q.craftbook.util;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 
 import java.sql.*;
+import java.util.Map;
 import java.util.UUID;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps UUIDs to the short CraftBook IDs that fit on signs. The whole table is kept in memory in both directions, so
+ * lookups never touch the database, and newly generated IDs are written to it from a background thread.
+ */
 public final class UUIDMappings {
 
     private Connection db;
 
+    private final Map<UUID, String> cbIds = new ConcurrentHashMap<>();
+    private final Map<String, UUID> uuids = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
     public void enable() {
         createConnection();
+        load();
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CraftBook UUID Mappings");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     private void createConnection() {
@@ -35,6 +56,37 @@ public final class UUIDMappings {
         }
 }
 
+    /**
+     * Reads every mapping in the database into memory.
+     */
+    private void load() {
+
+        if(db == null) return;
+
+        PreparedStatement statement = null;
+        ResultSet results = null;
+
+        try {
+            statement = db.prepareStatement("SELECT UUID, CBID FROM mappings");
+            results = statement.executeQuery();
+
+            while(results.next()) {
+                try {
+                    UUID uuid = UUID.fromString(results.getString(1));
+                    cbIds.put(uuid, results.getString(2));
+                    uuids.put(results.getString(2), uuid);
+                } catch(IllegalArgumentException e) {
+                    CraftBookPlugin.logger().warning("Invalid UUID in the UUID mappings: " + results.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            close(statement);
+            close(results);
+        }
+    }
+
     private static void close(ResultSet results) {
 
         if(results != null) {
@@ -65,29 +117,7 @@ public final class UUIDMappings {
      */
     public UUID getUUID(String cbID) {
 
-        UUID uuid = null;
-
-        PreparedStatement statement = null;
-        ResultSet results = null;
-
-        try {
-            statement = db.prepareStatement("SELECT UUID FROM mappings WHERE CBID = ?");
-            statement.setString(1, cbID);
-
-            results = statement.executeQuery();
-
-            if(!results.next())
-                return null;
-
-            uuid = UUID.fromString(results.getString(1));
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(statement);
-            close(results);
-        }
-
-        return uuid;
+        return cbID == null ? null : uuids.get(cbID);
     }
 
     /**
@@ -98,68 +128,80 @@ public final class UUIDMappings {
      */
     public String getCBID(UUID uuid) {
 
-        String cbId = null;
+        String cbId = cbIds.get(uuid);
+        if(cbId != null)
+            return cbId;
 
-        PreparedStatement statement = null;
-        PreparedStatement insertStatement = null;
-        ResultSet results = null;
-
-        try {
-            statement = db.prepareStatement("SELECT CBID FROM mappings WHERE UUID = ?");
-            statement.setString(1, uuid.toString());
-
-            results = statement.executeQuery();
+        synchronized(this) {
+            cbId = cbIds.get(uuid);
+            if(cbId != null)
+                return cbId;
 
-            if(!results.next()) {
+            //We need to generate one.
+            do {
+                StringBuilder sb = new StringBuilder();
+                for(int i = 0; i < 6; i++)
+                    sb.append(Integer.toHexString(CraftBookPlugin.inst().getRandom().nextInt(16)));
 
-                //We need to generate one.
-                boolean foundOne = false;
-                while(!foundOne) {
-                    StringBuilder sb = new StringBuilder();
-                    for(int i = 0; i < 6; i++)
-                        sb.append(Integer.toHexString(CraftBookPlugin.inst().getRandom().nextInt(16)));
+                sb.setLength(6); //Just makin' sure.
 
-                    sb.setLength(6); //Just makin' sure.
+                cbId = sb.toString();
+            } while(uuids.putIfAbsent(cbId, uuid) != null);
 
-                    cbId = sb.toString();
+            cbIds.put(uuid, cbId);
+        }
 
-                    statement = db.prepareStatement("SELECT UUID FROM mappings WHERE CBID = ?");
-                    statement.setString(1, cbId);
+        final String newId = cbId;
+        if(executor != null)
+            executor.execute(() -> insert(uuid, newId));
+        else
+            insert(uuid, newId);
 
-                    close(results);
-                    results = statement.executeQuery();
+        return cbId;
+    }
 
-                    if(!results.next()) {
-                        foundOne = true;
-                    } else
-                        continue;
+    private void insert(UUID uuid, String cbId) {
 
-                    insertStatement = db.prepareStatement("INSERT INTO mappings VALUES(?,?)");
-                    insertStatement.setString(1, uuid.toString());
-                    insertStatement.setString(2, cbId);
+        if(db == null) return;
 
-                    insertStatement.executeUpdate();
-                }
+        PreparedStatement insertStatement = null;
 
-                return cbId;
-            }
+        try {
+            insertStatement = db.prepareStatement("INSERT INTO mappings VALUES(?,?)");
+            insertStatement.setString(1, uuid.toString());
+            insertStatement.setString(2, cbId);
 
-            cbId = results.getString(1);
+            insertStatement.executeUpdate();
         } catch(SQLException e) {
             e.printStackTrace();
         } finally {
-            close(statement);
             close(insertStatement);
-            close(results);
         }
+    }
 
-        return cbId;
+    public int getSize() {
+
+        return cbIds.size();
     }
 
     public void disable() {
+        if(executor != null) {
+            executor.shutdown();
+            try {
+                if(!executor.awaitTermination(30, TimeUnit.SECONDS))
+                    CraftBookPlugin.logger().warning("Timed out waiting for UUID mappings to be written!");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+
+        cbIds.clear();
+        uuids.clear();
+
         try {
             if(db != null && !db.isClosed())
                 db.close();
         } catch(SQLException ignored){}
     }
-}
\ No newline at end of file
+}
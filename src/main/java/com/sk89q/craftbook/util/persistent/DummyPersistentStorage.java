@@ -29,7 +29,15 @@ public class DummyPersistentStorage extends PersistentStorage {
 
     @Override
     public void set (String location, Object data) {
-        map.put(location, data);
+        if(data == null)
+            map.remove(location);
+        else
+            map.put(location, data);
+    }
+
+    @Override
+    public void remove (String location) {
+        map.remove(location);
     }
 
     @Override
@@ -0,0 +1,678 @@
+package com.sk89q.craftbook.util.persistent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.CraftBookBukkitUtil;
+
+/**
+ * Stores data in an append-only log that is memory mapped. Every change is appended as a record, and an index in
+ * memory points at the latest record of each location, so reads never scan the file. When the log is opened the
+ * records are replayed to rebuild the index, stopping at the first record that wasn't completely written. Records
+ * that have been replaced are removed by compacting the log in the background once they take up enough space.
+ */
+public class LogPersistentStorage extends PersistentStorage {
+
+    private static final int MAGIC = 0x4342504C;
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Each record starts with the length of its body and a checksum of it.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte OP_SET = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final byte TYPE_SERIALIZED = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_BOOLEAN = 6;
+    private static final byte TYPE_LIST = 7;
+    private static final byte TYPE_SET = 8;
+    private static final byte TYPE_MAP = 9;
+    private static final byte TYPE_NULL = 10;
+
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    /**
+     * The least amount of replaced records, in bytes, before the log is compacted.
+     */
+    private static final long COMPACT_MIN_GARBAGE = 1 << 20;
+
+    private File file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    private boolean dirty;
+
+    /**
+     * The offset of the latest record of each location.
+     */
+    private TreeMap<String, Integer> index = new TreeMap<>();
+    private long garbage;
+
+    /**
+     * Counts the times the log has been cleared or replaced, so that a compaction can tell if its copy is out of date.
+     */
+    private int generation;
+    private final Object compactLock = new Object();
+    private boolean compactDisabled;
+
+    private ScheduledExecutorService executor;
+
+    private final File dataFolder;
+
+    public LogPersistentStorage() {
+
+        this(CraftBookPlugin.inst().getDataFolder());
+    }
+
+    /**
+     * @param dataFolder The folder to keep the data in
+     */
+    LogPersistentStorage(File dataFolder) {
+
+        this.dataFolder = dataFolder;
+    }
+
+    @Override
+    public synchronized void open() {
+
+        file = new File(dataFolder, "persistence.log");
+
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+
+            if(buffer.getInt(0) == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, getCurrentVersion());
+                end = HEADER_SIZE;
+            } else if(buffer.getInt(0) != MAGIC) {
+                CraftBookPlugin.logger().severe("Persistent data log " + file.getName() + " is not a CraftBook log! Not loading it.");
+                closeChannel();
+                return;
+            } else
+                replay();
+        } catch (IOException e) {
+            CraftBookBukkitUtil.printStacktrace(e);
+            closeChannel();
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CraftBook Persistent Log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sync, 5, 5, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(this::compactIfNeeded, 5, 5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Rebuilds the index from the records in the log.
+     */
+    private void replay() {
+
+        int pos = HEADER_SIZE;
+        boolean torn = false;
+        while(pos + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if(length == 0)
+                break;
+            if(length < 0 || pos + RECORD_HEADER_SIZE + length > buffer.capacity() || checksum(pos + RECORD_HEADER_SIZE, length) != buffer.getInt(pos + 4)) {
+                torn = true;
+                break;
+            }
+
+            String key = readKey(pos);
+            Integer old = buffer.get(pos + RECORD_HEADER_SIZE) == OP_SET ? index.put(key, pos) : index.remove(key);
+            if(old != null)
+                garbage += getRecordSize(old);
+            if(buffer.get(pos + RECORD_HEADER_SIZE) == OP_DELETE)
+                garbage += RECORD_HEADER_SIZE + length;
+
+            pos += RECORD_HEADER_SIZE + length;
+        }
+        end = pos;
+
+        if(torn) {
+            // The last write didn't finish, so clear what it left behind before appending over it.
+            CraftBookPlugin.logger().warning("Persistent data log " + file.getName() + " was not closed properly, recovered " + index.size() + " entries.");
+            clear(end, buffer.capacity());
+            dirty = true;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if(executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+
+        if(buffer != null)
+            buffer.force();
+        closeChannel();
+        index.clear();
+        generation++;
+    }
+
+    private void closeChannel() {
+
+        buffer = null;
+        if(channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                CraftBookBukkitUtil.printStacktrace(e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Writes changes to the disk, so that they survive the server crashing along with the system.
+     */
+    private synchronized void sync() {
+
+        if(!dirty || buffer == null) return;
+        buffer.force();
+        dirty = false;
+    }
+
+    @Override
+    public String getType() {
+
+        return "LOG";
+    }
+
+    @Override
+    public synchronized Object get(String location) {
+
+        Integer pos = index.get(location);
+        if(pos == null)
+            return null;
+
+        int keyLength = buffer.getInt(pos + RECORD_HEADER_SIZE + 1);
+        int valueStart = pos + RECORD_HEADER_SIZE + 5 + keyLength;
+        byte[] value = new byte[pos + getRecordSize(pos) - valueStart];
+        ByteBuffer view = buffer.duplicate();
+        view.position(valueStart);
+        view.get(value);
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(value))) {
+            return decode(input);
+        } catch (IOException | ClassNotFoundException e) {
+            CraftBookPlugin.logger().warning("Failed to read " + location + " from the persistent data log!");
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void set(String location, Object data) {
+
+        try {
+            write(location, data);
+        } catch (IOException e) {
+            CraftBookBukkitUtil.printStacktrace(e);
+        }
+    }
+
+    @Override
+    public synchronized void setAll(Map<String, Object> data) {
+
+        try {
+            for(Entry<String, Object> dat : data.entrySet())
+                write(dat.getKey(), dat.getValue());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write to the persistent data log!", e);
+        }
+    }
+
+    private void write(String location, Object data) throws IOException {
+
+        if(data != null && !isEncodable(data)) {
+            CraftBookPlugin.logger().warning("Failed to put item in db! " + data.getClass().getSimpleName() + " is NOT serializable!");
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        byte[] key = location.getBytes(StandardCharsets.UTF_8);
+        output.writeByte(data == null ? OP_DELETE : OP_SET);
+        output.writeInt(key.length);
+        output.write(key);
+        if(data != null)
+            encode(output, data);
+        output.close();
+        append(location, data == null ? OP_DELETE : OP_SET, bytes.toByteArray());
+    }
+
+    private void append(String location, byte op, byte[] body) throws IOException {
+
+        if(op == OP_DELETE && !index.containsKey(location))
+            return;
+
+        int size = RECORD_HEADER_SIZE + body.length;
+        ensureCapacity(end + size + RECORD_HEADER_SIZE);
+
+        int pos = end;
+        ByteBuffer view = buffer.duplicate();
+        view.position(pos + RECORD_HEADER_SIZE);
+        view.put(body);
+        buffer.putInt(pos + 4, checksum(pos + RECORD_HEADER_SIZE, body.length));
+        // The length goes in last, so a record is only replayed once all of it is there.
+        buffer.putInt(pos, body.length);
+        end += size;
+        dirty = true;
+
+        Integer old = op == OP_SET ? index.put(location, pos) : index.remove(location);
+        if(old != null)
+            garbage += getRecordSize(old);
+        if(op == OP_DELETE)
+            garbage += size;
+    }
+
+    private void ensureCapacity(int size) throws IOException {
+
+        if(size <= buffer.capacity()) return;
+
+        long capacity = buffer.capacity();
+        while(capacity < size)
+            capacity *= 2;
+        if(capacity > Integer.MAX_VALUE)
+            throw new IOException("Persistent data log is full!");
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    @Override
+    public synchronized boolean has(String location) {
+
+        return index.containsKey(location);
+    }
+
+    @Override
+    public synchronized boolean isValid() {
+
+        return buffer != null;
+    }
+
+    @Override
+    public synchronized int getVersion() {
+
+        return buffer.getInt(4);
+    }
+
+    @Override
+    public int getCurrentVersion() {
+
+        return 1;
+    }
+
+    @Override
+    public void convertVersion(int version) {
+        //Not yet needed.
+    }
+
+    @Override
+    public synchronized void importData(Map<String, Object> data, boolean replace) {
+
+        if(replace) {
+            clear(HEADER_SIZE, end);
+            end = HEADER_SIZE;
+            index.clear();
+            garbage = 0;
+            dirty = true;
+            generation++;
+        }
+        for(Entry<String, Object> dat : data.entrySet())
+            set(dat.getKey(), dat.getValue());
+    }
+
+    @Override
+    public synchronized Map<String, Object> exportData() {
+
+        Map<String, Object> data = new HashMap<>();
+        for(String key : index.keySet())
+            data.put(key, get(key));
+        return data;
+    }
+
+    @Override
+    public synchronized Map<String, Object> getAll(String namespace) {
+
+        // The index is sorted, so the namespace is every key between "namespace." and "namespace/".
+        Map<String, Object> data = new HashMap<>();
+        for(String key : index.subMap(namespace + '.', namespace + '/').keySet())
+            flatten(key.substring(namespace.length() + 1), get(key), data);
+        return data;
+    }
+
+    public synchronized int getSize() {
+
+        return end;
+    }
+
+    public synchronized long getGarbage() {
+
+        return garbage;
+    }
+
+    private void compactIfNeeded() {
+
+        synchronized(this) {
+            if(buffer == null || compactDisabled || garbage < COMPACT_MIN_GARBAGE || garbage < end / 2) return;
+        }
+
+        try {
+            compact();
+        } catch (Throwable t) {
+            CraftBookPlugin.logger().warning("Failed to compact the persistent data log!");
+            CraftBookBukkitUtil.printStacktrace(t);
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each location. The records are copied into a new log without
+     * holding the lock, which is only held to bring across the records appended while copying and to swap the logs.
+     */
+    public void compact() throws IOException {
+
+        synchronized(compactLock) {
+            MappedByteBuffer source;
+            TreeMap<String, Integer> records;
+            int copiedEnd;
+            int version;
+            int startGeneration;
+            synchronized(this) {
+                if(buffer == null) return;
+                // A mapping stays valid when the log is remapped or closed, and records are never changed once
+                // appended, so everything up to the end can be read from it without the lock.
+                source = buffer;
+                records = new TreeMap<>(index);
+                copiedEnd = end;
+                version = getVersion();
+                startGeneration = generation;
+            }
+
+            File temp = new File(file.getPath() + ".compact");
+            long live = HEADER_SIZE;
+            for(int pos : records.values())
+                live += RECORD_HEADER_SIZE + source.getInt(pos);
+
+            TreeMap<String, Integer> compacted = new TreeMap<>();
+            int pos = HEADER_SIZE;
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, Math.min(Integer.MAX_VALUE, live * 2)));
+                target.putInt(0, MAGIC);
+                target.putInt(4, version);
+                for(Entry<String, Integer> entry : records.entrySet()) {
+                    copyRecord(source, entry.getValue(), target, pos);
+                    compacted.put(entry.getKey(), pos);
+                    pos += RECORD_HEADER_SIZE + source.getInt(entry.getValue());
+                }
+                target.force();
+            }
+
+            synchronized(this) {
+                if(buffer == null || generation != startGeneration) {
+                    // The log was closed or replaced while copying, so the copy is out of date.
+                    Files.deleteIfExists(temp.toPath());
+                    return;
+                }
+
+                long compactedGarbage = 0;
+                try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(out.size(), pos + (long) end - copiedEnd));
+                    for(int tail = copiedEnd; tail < end; tail += getRecordSize(tail)) {
+                        copyRecord(buffer, tail, target, pos);
+                        String key = readKey(tail);
+                        Integer old = buffer.get(tail + RECORD_HEADER_SIZE) == OP_SET ? compacted.put(key, pos) : compacted.remove(key);
+                        if(old != null)
+                            compactedGarbage += RECORD_HEADER_SIZE + target.getInt(old);
+                        if(buffer.get(tail + RECORD_HEADER_SIZE) == OP_DELETE)
+                            compactedGarbage += getRecordSize(tail);
+                        pos += getRecordSize(tail);
+                    }
+                    target.force();
+                }
+
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // Some systems won't replace a file that is still mapped, which won't change by trying again.
+                    Files.deleteIfExists(temp.toPath());
+                    compactDisabled = true;
+                    CraftBookPlugin.logger().warning("The persistent data log can't be replaced on this system, it won't be compacted again until restarted.");
+                    throw e;
+                }
+
+                closeChannel();
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                index = compacted;
+                end = pos;
+                garbage = compactedGarbage;
+                dirty = false;
+                generation++;
+            }
+        }
+    }
+
+    private static void copyRecord(ByteBuffer source, int from, ByteBuffer target, int to) {
+
+        ByteBuffer record = source.duplicate();
+        record.position(from);
+        record.limit(from + RECORD_HEADER_SIZE + source.getInt(from));
+        ByteBuffer view = target.duplicate();
+        view.position(to);
+        view.put(record);
+    }
+
+    private String readKey(int pos) {
+
+        int keyLength = buffer.getInt(pos + RECORD_HEADER_SIZE + 1);
+        byte[] key = new byte[keyLength];
+        ByteBuffer view = buffer.duplicate();
+        view.position(pos + RECORD_HEADER_SIZE + 5);
+        view.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private int getRecordSize(int pos) {
+
+        return RECORD_HEADER_SIZE + buffer.getInt(pos);
+    }
+
+    private int checksum(int pos, int length) {
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(pos);
+        view.limit(pos + length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private void clear(int from, int to) {
+
+        for(int pos = from; pos < to; pos++)
+            buffer.put(pos, (byte) 0);
+    }
+
+    private static boolean isEncodable(Object data) {
+
+        return data instanceof Serializable || data instanceof ConfigurationSerializable;
+    }
+
+    private static void encode(DataOutputStream output, Object data) throws IOException {
+
+        if(data == null) {
+            output.writeByte(TYPE_NULL);
+        } else if(data instanceof String) {
+            byte[] bytes = ((String) data).getBytes(StandardCharsets.UTF_8);
+            output.writeByte(TYPE_STRING);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else if(data instanceof Integer) {
+            output.writeByte(TYPE_INT);
+            output.writeInt((Integer) data);
+        } else if(data instanceof Long) {
+            output.writeByte(TYPE_LONG);
+            output.writeLong((Long) data);
+        } else if(data instanceof Double) {
+            output.writeByte(TYPE_DOUBLE);
+            output.writeDouble((Double) data);
+        } else if(data instanceof Float) {
+            output.writeByte(TYPE_FLOAT);
+            output.writeFloat((Float) data);
+        } else if(data instanceof Boolean) {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) data);
+        } else if(data instanceof Collection && isPlain((Collection<?>) data)) {
+            output.writeByte(data instanceof Set ? TYPE_SET : TYPE_LIST);
+            output.writeInt(((Collection<?>) data).size());
+            for(Object element : (Collection<?>) data)
+                encode(output, element);
+        } else if(data instanceof Map && isPlain((Map<?, ?>) data)) {
+            output.writeByte(TYPE_MAP);
+            output.writeInt(((Map<?, ?>) data).size());
+            for(Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+                byte[] key = ((String) entry.getKey()).getBytes(StandardCharsets.UTF_8);
+                output.writeInt(key.length);
+                output.write(key);
+                encode(output, entry.getValue());
+            }
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BukkitObjectOutputStream oos = new BukkitObjectOutputStream(bytes);
+            oos.writeObject(data);
+            oos.close();
+            output.writeByte(TYPE_SERIALIZED);
+            output.writeInt(bytes.size());
+            bytes.writeTo(output);
+        }
+    }
+
+    /**
+     * Checks whether a collection only holds values that have their own encoding, so it can be written without
+     * serializing it as an object.
+     */
+    private static boolean isPlain(Collection<?> data) {
+
+        for(Object element : data)
+            if(!isPlainValue(element))
+                return false;
+        return true;
+    }
+
+    private static boolean isPlain(Map<?, ?> data) {
+
+        for(Entry<?, ?> entry : data.entrySet())
+            if(!(entry.getKey() instanceof String) || !isPlainValue(entry.getValue()))
+                return false;
+        return true;
+    }
+
+    private static boolean isPlainValue(Object data) {
+
+        if(data == null || data instanceof String || data instanceof Integer || data instanceof Long || data instanceof Double
+                || data instanceof Float || data instanceof Boolean)
+            return true;
+        if(data instanceof Collection)
+            return isPlain((Collection<?>) data);
+        if(data instanceof Map)
+            return isPlain((Map<?, ?>) data);
+        return false;
+    }
+
+    private static Object decode(DataInputStream input) throws IOException, ClassNotFoundException {
+
+        byte type = input.readByte();
+        switch(type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(input);
+            case TYPE_INT:
+                return input.readInt();
+            case TYPE_LONG:
+                return input.readLong();
+            case TYPE_DOUBLE:
+                return input.readDouble();
+            case TYPE_FLOAT:
+                return input.readFloat();
+            case TYPE_BOOLEAN:
+                return input.readBoolean();
+            case TYPE_LIST:
+            case TYPE_SET: {
+                int size = input.readInt();
+                Collection<Object> collection = type == TYPE_SET ? new LinkedHashSet<>() : new ArrayList<>(size);
+                for(int i = 0; i < size; i++)
+                    collection.add(decode(input));
+                return collection;
+            }
+            case TYPE_MAP: {
+                int size = input.readInt();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for(int i = 0; i < size; i++)
+                    map.put(readString(input), decode(input));
+                return map;
+            }
+            case TYPE_SERIALIZED: {
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                BukkitObjectInputStream ois = new BukkitObjectInputStream(new ByteArrayInputStream(bytes));
+                Object o = ois.readObject();
+                ois.close();
+                return o;
+            }
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
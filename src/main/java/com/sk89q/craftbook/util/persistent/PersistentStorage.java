@@ -1,5 +1,6 @@
 package com.sk89q.craftbook.util.persistent;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
@@ -42,6 +43,145 @@ public abstract class PersistentStorage {
      */
     public abstract void set(String location, Object data);
 
+    /**
+     * Sets the data at several locations at once. Storage methods that can should do this in a single transaction.
+     *
+     * @param data The data to set, by location.
+     */
+    public void setAll(Map<String, Object> data) {
+
+        for(Map.Entry<String, Object> entry : data.entrySet())
+            set(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Removes the data at the provided location.
+     *
+     * @param location The location to remove the data at, with '.'s seperating heirarchy.
+     */
+    public void remove(String location) {
+
+        set(location, null);
+    }
+
+    /**
+     * Gets all data stored within a namespace. Storage methods should look this up directly rather than going through
+     * every location.
+     *
+     * <p>{@link Map} values are split into an entry for each of their values, with the keys joined by '.'s, the same as
+     * if each value had been set on its own. This is how a tree based storage method sees them, so every storage
+     * method returns them this way.</p>
+     *
+     * @param namespace The namespace, with '.'s seperating heirarchy.
+     * @return The data, by location relative to the namespace.
+     */
+    public Map<String, Object> getAll(String namespace) {
+
+        String prefix = namespace + '.';
+        Map<String, Object> data = new HashMap<>();
+        for(Map.Entry<String, Object> entry : exportData().entrySet())
+            if(entry.getKey().startsWith(prefix))
+                flatten(entry.getKey().substring(prefix.length()), entry.getValue(), data);
+        return data;
+    }
+
+    /**
+     * Adds data to a map by its location, splitting any {@link Map} into an entry for each of its values.
+     *
+     * @param location The location of the data, with '.'s seperating heirarchy.
+     * @param data The data, which is skipped if null.
+     * @param flattened The map to add the data to.
+     */
+    protected static void flatten(String location, Object data, Map<String, Object> flattened) {
+
+        if(data instanceof Map) {
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet())
+                flatten(location + '.' + entry.getKey(), entry.getValue(), flattened);
+        } else if(data != null)
+            flattened.put(location, data);
+    }
+
+    /**
+     * Sets the data of a single entry within a namespace.
+     *
+     * @param namespace The namespace, with '.'s seperating heirarchy.
+     * @param key The key of the entry within the namespace.
+     * @param data The data to set.
+     */
+    public void put(String namespace, String key, Object data) {
+
+        set(namespace + '.' + key, data);
+    }
+
+    /**
+     * Removes a single entry from a namespace.
+     *
+     * @param namespace The namespace, with '.'s seperating heirarchy.
+     * @param key The key of the entry within the namespace.
+     */
+    public void remove(String namespace, String key) {
+
+        remove(namespace + '.' + key);
+    }
+
+    public String getString(String location, String def) {
+
+        Object data = get(location);
+        return data == null ? def : String.valueOf(data);
+    }
+
+    public int getInt(String location, int def) {
+
+        Object data = get(location);
+        if(data instanceof Number)
+            return ((Number) data).intValue();
+        if(data instanceof String) {
+            try {
+                return Integer.parseInt((String) data);
+            } catch(NumberFormatException ignored) {
+            }
+        }
+        return def;
+    }
+
+    public long getLong(String location, long def) {
+
+        Object data = get(location);
+        if(data instanceof Number)
+            return ((Number) data).longValue();
+        if(data instanceof String) {
+            try {
+                return Long.parseLong((String) data);
+            } catch(NumberFormatException ignored) {
+            }
+        }
+        return def;
+    }
+
+    public double getDouble(String location, double def) {
+
+        Object data = get(location);
+        if(data instanceof Number)
+            return ((Number) data).doubleValue();
+        if(data instanceof String) {
+            try {
+                return Double.parseDouble((String) data);
+            } catch(NumberFormatException ignored) {
+            }
+        }
+        return def;
+    }
+
+    public boolean getBoolean(String location, boolean def) {
+
+        Object data = get(location);
+        if(data instanceof Boolean)
+            return (Boolean) data;
+        if(data instanceof String)
+            return Boolean.parseBoolean((String) data);
+        return def;
+    }
+
     /**
      * Returns whether the storage medium contains a value.
      * 
@@ -119,6 +259,8 @@ public abstract class PersistentStorage {
             return new DummyPersistentStorage();
         else if(type.equalsIgnoreCase("SQLite"))
             return new SQLitePersistentStorage();
+        else if(type.equalsIgnoreCase("LOG"))
+            return new LogPersistentStorage();
         else
             return null;
     }
@@ -24,8 +24,34 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 
 public class SQLitePersistentStorage extends PersistentStorage {
 
+    /**
+     * The key of the row that holds the version of the database.
+     */
+    private static final String VERSION_KEY = "VERSION";
+
     private Connection db;
 
+    private PreparedStatement getStatement;
+    private PreparedStatement hasStatement;
+    private PreparedStatement setStatement;
+    private PreparedStatement deleteStatement;
+    private PreparedStatement rangeStatement;
+
+    private final File dataFolder;
+
+    public SQLitePersistentStorage() {
+
+        this(CraftBookPlugin.inst().getDataFolder());
+    }
+
+    /**
+     * @param dataFolder The folder to keep the data in
+     */
+    SQLitePersistentStorage(File dataFolder) {
+
+        this.dataFolder = dataFolder;
+    }
+
     @Override
     public void open () {
 
@@ -33,27 +59,43 @@ public class SQLitePersistentStorage extends PersistentStorage {
     }
 
     public void createConnection() {
-        File file = new File(CraftBookPlugin.inst().getDataFolder(), "persistance.db");
+        File file = new File(dataFolder, "persistance.db");
         if(file.exists()) {
-            file.renameTo(new File(CraftBookPlugin.inst().getDataFolder(), "persistence.db"));
+            file.renameTo(new File(dataFolder, "persistence.db"));
             file.delete();
         }
         try {
             Class.forName("org.sqlite.JDBC");
-            db = DriverManager.getConnection("jdbc:sqlite:plugins/CraftBook/persistence.db");
+            db = DriverManager.getConnection("jdbc:sqlite:" + new File(dataFolder, "persistence.db").getPath());
+
+            // The write-ahead log lets a write commit without rewriting the database, and NORMAL only syncs at
+            // checkpoints, which is still safe from corruption in WAL mode.
+            try (Statement state = db.createStatement()) {
+                state.execute("PRAGMA journal_mode=WAL");
+                state.execute("PRAGMA synchronous=NORMAL");
+            }
 
             DatabaseMetaData dbm = db.getMetaData();
             ResultSet tables = dbm.getTables(null, null, "PersistentData", null);
+            boolean exists = tables.next();
+            tables.close();
 
-            if(!tables.next()) { //We already have something in this table, don't create it.
-                String createTable = "CREATE TABLE PersistentData (KEY VARCHAR(255) PRIMARY KEY, VALUE TEXT)";
-                try {
-                    Statement state = db.createStatement();
-                    state.executeUpdate(createTable);
-                } catch(SQLException e) {
-                    e.printStackTrace();
+            if(!exists) {
+                try (Statement state = db.createStatement()) {
+                    state.executeUpdate("CREATE TABLE PersistentData (KEY VARCHAR(255) PRIMARY KEY, VALUE BLOB)");
                 }
+                writeVersion(getCurrentVersion());
+            } else if(getVersion() < getCurrentVersion()) {
+                CraftBookPlugin.logger().info("Converting database of type: " + getType() + " from version " + getVersion() + " to " + getCurrentVersion());
+                convertVersion(getCurrentVersion());
             }
+
+            getStatement = db.prepareStatement("SELECT VALUE FROM PersistentData WHERE KEY = ?");
+            hasStatement = db.prepareStatement("SELECT 1 FROM PersistentData WHERE KEY = ?");
+            setStatement = db.prepareStatement("INSERT OR REPLACE INTO PersistentData VALUES(?,?)");
+            deleteStatement = db.prepareStatement("DELETE FROM PersistentData WHERE KEY = ?");
+            // A range over the primary key rather than a LIKE, so that it is answered from the index.
+            rangeStatement = db.prepareStatement("SELECT KEY, VALUE FROM PersistentData WHERE KEY >= ? AND KEY < ?");
         } catch(Exception e) {
             e.printStackTrace();
         }
@@ -61,6 +103,11 @@ public class SQLitePersistentStorage extends PersistentStorage {
 
     @Override
     public void close () {
+        close(getStatement);
+        close(hasStatement);
+        close(setStatement);
+        close(deleteStatement);
+        close(rangeStatement);
         try {
             if(!db.isClosed())
                 db.close();
@@ -99,65 +146,137 @@ public class SQLitePersistentStorage extends PersistentStorage {
     @Override
     public Object get (String location) {
 
-        PreparedStatement statement = null;
         ResultSet results = null;
 
         try {
-            statement = db.prepareStatement("SELECT * FROM PersistentData WHERE KEY = ?");
-            statement.setString(1, location);
-            results = statement.executeQuery();
+            getStatement.setString(1, location);
+            results = getStatement.executeQuery();
 
             if(!results.next()) return null;
 
-            return fromString(results.getString(2));
+            return fromBytes(results.getBytes(1));
         } catch(SQLException | ClassNotFoundException | IOException e) {
             e.printStackTrace();
         } finally {
             close(results);
-            close(statement);
         }
         return null;
     }
 
+    @Override
+    public Map<String, Object> getAll (String namespace) {
+
+        Map<String, Object> data = new HashMap<>();
+        ResultSet results = null;
+
+        try {
+            // '/' is the character after '.', so this is every key that starts with "namespace.".
+            rangeStatement.setString(1, namespace + '.');
+            rangeStatement.setString(2, namespace + '/');
+            results = rangeStatement.executeQuery();
+            while(results.next()) {
+                String key = results.getString(1);
+                try {
+                    flatten(key.substring(namespace.length() + 1), fromBytes(results.getBytes(2)), data);
+                } catch (IOException | ClassNotFoundException e) {
+                    CraftBookPlugin.logger().warning("Failed to read " + key + " from the db!");
+                }
+            }
+        } catch(SQLException e) {
+            e.printStackTrace();
+        } finally {
+            close(results);
+        }
+        return data;
+    }
+
     @Override
     public void set (String location, Object data) {
 
+        try {
+            write(location, data);
+            setStatement.executeBatch();
+            deleteStatement.executeBatch();
+        } catch(SQLException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void setAll (Map<String, Object> data) {
+
+        try {
+            db.setAutoCommit(false);
+            writeAll(data);
+            db.commit();
+        } catch(SQLException | IOException e) {
+            rollback();
+            throw new RuntimeException("Failed to write to the db!", e);
+        } finally {
+            setAutoCommit();
+        }
+    }
+
+    /**
+     * Adds a write to the batch of the set or delete statement.
+     */
+    private void write(String location, Object data) throws SQLException, IOException {
+
+        if(data == null) {
+            deleteStatement.setString(1, location);
+            deleteStatement.addBatch();
+            return;
+        }
+
         if(!(data instanceof Serializable) && !(data instanceof ConfigurationSerializable)) {
             CraftBookPlugin.logger().warning("Failed to put item in db! " + data.getClass().getSimpleName() + " is NOT serializable!");
             return;
         }
 
-        PreparedStatement statement = null;
+        setStatement.setString(1, location);
+        setStatement.setBytes(2, toBytes(data));
+        setStatement.addBatch();
+    }
+
+    private void writeAll(Map<String, Object> data) throws SQLException, IOException {
+
+        for(Entry<String, Object> dat : data.entrySet())
+            write(dat.getKey(), dat.getValue());
+        setStatement.executeBatch();
+        deleteStatement.executeBatch();
+    }
+
+    private void rollback() {
 
         try {
-            statement = db.prepareStatement("INSERT OR REPLACE INTO PersistentData VALUES(?,?)");
-            statement.setString(1, location);
-            statement.setObject(2, toString(data));
+            db.rollback();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
 
-            statement.executeUpdate();
-        } catch(SQLException | IOException e) {
+    private void setAutoCommit() {
+
+        try {
+            db.setAutoCommit(true);
+        } catch (SQLException e) {
             e.printStackTrace();
-        } finally {
-            close(statement);
         }
     }
 
     @Override
     public boolean has (String location) {
 
-        PreparedStatement statement = null;
         ResultSet results = null;
 
         try {
-            statement = db.prepareStatement("SELECT * FROM PersistentData WHERE KEY = ?");
-            statement.setString(1, location);
-            results = statement.executeQuery();
+            hasStatement.setString(1, location);
+            results = hasStatement.executeQuery();
 
             return results.next();
         } catch(SQLException e) {
             e.printStackTrace();
         } finally {
-            close(statement);
             close(results);
         }
         return false;
@@ -177,54 +296,112 @@ public class SQLitePersistentStorage extends PersistentStorage {
     public int getVersion () {
 
         PreparedStatement statement = null;
-        PreparedStatement insertStatement = null;
         ResultSet results = null;
 
         try {
-            statement = db.prepareStatement("SELECT * FROM PersistentData WHERE KEY = ?");
-            statement.setString(1, "VERSION");
+            statement = db.prepareStatement("SELECT VALUE FROM PersistentData WHERE KEY = ?");
+            statement.setString(1, VERSION_KEY);
             results = statement.executeQuery();
 
-            if(!results.next()) {
-                insertStatement = db.prepareStatement("INSERT INTO PersistentData VALUES(?,?)");
-                insertStatement.setString(1, "VERSION");
-                insertStatement.setInt(2, getCurrentVersion());
-
-                insertStatement.executeUpdate();
-            } else {
-                return results.getInt(2);
-            }
+            // Databases from before the version was stored are the first version.
+            if(results.next())
+                return results.getInt(1);
+            return 1;
         } catch(SQLException e) {
             e.printStackTrace();
         } finally {
             close(statement);
-            close(insertStatement);
             close(results);
         }
 
         return getCurrentVersion();
     }
 
+    private void writeVersion(int version) throws SQLException {
+
+        PreparedStatement statement = null;
+        try {
+            statement = db.prepareStatement("INSERT OR REPLACE INTO PersistentData VALUES(?,?)");
+            statement.setString(1, VERSION_KEY);
+            statement.setInt(2, version);
+            statement.executeUpdate();
+        } finally {
+            close(statement);
+        }
+    }
+
     @Override
     public int getCurrentVersion () {
-        return 1;
+        return 2;
     }
 
     @Override
     public void convertVersion (int version) {
-        //Not needed atm.
+
+        if(getVersion() >= 2 || version < 2)
+            return;
+
+        // Version 1 stored the serialized bytes as a string in a TEXT column, so they are moved into a BLOB column.
+        PreparedStatement select = null;
+        PreparedStatement insert = null;
+        ResultSet results = null;
+        try {
+            db.setAutoCommit(false);
+            try (Statement state = db.createStatement()) {
+                state.executeUpdate("CREATE TABLE PersistentDataConverted (KEY VARCHAR(255) PRIMARY KEY, VALUE BLOB)");
+            }
+
+            select = db.prepareStatement("SELECT KEY, VALUE FROM PersistentData WHERE KEY != ?");
+            select.setString(1, VERSION_KEY);
+            insert = db.prepareStatement("INSERT INTO PersistentDataConverted VALUES(?,?)");
+            results = select.executeQuery();
+            while(results.next()) {
+                String value = results.getString(2);
+                if(value == null) continue;
+                insert.setString(1, results.getString(1));
+                insert.setBytes(2, value.getBytes());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            close(results);
+            results = null;
+
+            try (Statement state = db.createStatement()) {
+                state.executeUpdate("DROP TABLE PersistentData");
+                state.executeUpdate("ALTER TABLE PersistentDataConverted RENAME TO PersistentData");
+            }
+            writeVersion(2);
+            db.commit();
+        } catch(SQLException e) {
+            e.printStackTrace();
+            rollback();
+        } finally {
+            close(results);
+            close(select);
+            close(insert);
+            setAutoCommit();
+        }
     }
 
     @Override
     public void importData (Map<String, Object> data, boolean replace) {
 
+        PreparedStatement statement = null;
         try {
-            if(replace)
-                db.prepareStatement("DELETE FROM PersistentData").execute();
-            for(Entry<String, Object> dat : data.entrySet())
-                set(dat.getKey(), dat.getValue());
-        } catch (SQLException e) {
+            db.setAutoCommit(false);
+            if(replace) {
+                statement = db.prepareStatement("DELETE FROM PersistentData WHERE KEY != ?");
+                statement.setString(1, VERSION_KEY);
+                statement.executeUpdate();
+            }
+            writeAll(data);
+            db.commit();
+        } catch (SQLException | IOException e) {
             e.printStackTrace();
+            rollback();
+        } finally {
+            close(statement);
+            setAutoCommit();
         }
     }
 
@@ -237,10 +414,15 @@ public class SQLitePersistentStorage extends PersistentStorage {
         ResultSet results = null;
 
         try {
-            statement = db.prepareStatement("SELECT * FROM PersistentData");
+            statement = db.prepareStatement("SELECT KEY, VALUE FROM PersistentData WHERE KEY != ?");
+            statement.setString(1, VERSION_KEY);
             results = statement.executeQuery();
             while(results.next()) {
-                data.put(results.getString(1), results.getObject(2));
+                try {
+                    data.put(results.getString(1), fromBytes(results.getBytes(2)));
+                } catch (IOException | ClassNotFoundException e) {
+                    CraftBookPlugin.logger().warning("Failed to read " + results.getString(1) + " from the db!");
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -251,19 +433,18 @@ public class SQLitePersistentStorage extends PersistentStorage {
         return data;
     }
 
-    private static Object fromString(String s) throws IOException, ClassNotFoundException {
-        byte[] data = s.getBytes();
+    private static Object fromBytes(byte[] data) throws IOException, ClassNotFoundException {
         BukkitObjectInputStream ois = new BukkitObjectInputStream(new ByteArrayInputStream(data));
         Object o  = ois.readObject();
         ois.close();
         return o;
     }
 
-    private static String toString(Object o) throws IOException {
+    private static byte[] toBytes(Object o) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         BukkitObjectOutputStream oos = new BukkitObjectOutputStream(baos);
         oos.writeObject(o);
         oos.close();
-        return new String(baos.toByteArray());
+        return baos.toByteArray();
     }
-}
\ No newline at end of file
+}
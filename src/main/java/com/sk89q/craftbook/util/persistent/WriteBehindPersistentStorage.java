@@ -0,0 +1,281 @@
+package com.sk89q.craftbook.util.persistent;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+
+/**
+ * Wraps another {@link PersistentStorage}, keeping the data in memory and writing changes to it from a background
+ * thread. Changes are written in batches, either on an interval or once enough of them are waiting, and everything is
+ * written before the storage closes.
+ *
+ * <p>All of the data is read into memory when the storage opens, so reads never wait on the wrapped storage, which is
+ * only locked by writes.</p>
+ */
+public class WriteBehindPersistentStorage extends PersistentStorage {
+
+    private final PersistentStorage storage;
+    private final long interval;
+    private final int batchSize;
+
+    /**
+     * The data of the wrapped storage, with the changes that haven't been written yet. This is what callers see.
+     */
+    private final ConcurrentNavigableMap<String, Object> view = new ConcurrentSkipListMap<>();
+
+    private final Object pendingLock = new Object();
+    private Map<String, Object> pending = new LinkedHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    private ScheduledExecutorService executor;
+
+    private volatile long writtenCount = 0;
+    private volatile long batchCount = 0;
+    private volatile long failedCount = 0;
+
+    /**
+     * @param storage The storage to write to
+     * @param interval The amount of milliseconds between writes
+     * @param batchSize The amount of waiting changes that causes a write straight away
+     */
+    public WriteBehindPersistentStorage(PersistentStorage storage, long interval, int batchSize) {
+
+        this.storage = storage;
+        this.interval = Math.max(1, interval);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void open() {
+
+        synchronized(storage) {
+            storage.open();
+            load();
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CraftBook Persistent Storage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+
+        if(executor != null) {
+            executor.shutdown();
+            try {
+                if(!executor.awaitTermination(30, TimeUnit.SECONDS))
+                    CraftBookPlugin.logger().warning("Timed out waiting for persistent data to be written!");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+
+        try {
+            flush();
+        } catch(RuntimeException e) {
+            CraftBookPlugin.logger().log(Level.SEVERE, "Failed to write persistent data, unwritten changes are lost!", e);
+        }
+        synchronized(storage) {
+            storage.close();
+        }
+        view.clear();
+    }
+
+    /**
+     * Reads all of the data of the wrapped storage into the view, followed by the changes that haven't been written
+     * yet. The storage must be locked.
+     */
+    private void load() {
+
+        Map<String, Object> data = new HashMap<>(storage.exportData());
+        synchronized(pendingLock) {
+            data.putAll(pending);
+        }
+        data.values().removeIf(value -> value == null);
+
+        view.clear();
+        view.putAll(data);
+    }
+
+    /**
+     * Writes all waiting changes to the wrapped storage, on the calling thread. If they can't be written, they are
+     * kept to be written again with the next batch.
+     */
+    public void flush() {
+
+        synchronized(storage) {
+            Map<String, Object> batch;
+            synchronized(pendingLock) {
+                if(pending.isEmpty()) return;
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+
+            try {
+                storage.setAll(batch);
+            } catch(RuntimeException e) {
+                synchronized(pendingLock) {
+                    // Anything changed since the batch was taken is newer than what is in it.
+                    Map<String, Object> requeued = new LinkedHashMap<>(batch);
+                    requeued.putAll(pending);
+                    pending = requeued;
+                }
+                failedCount++;
+                throw new RuntimeException("Failed to write " + batch.size() + " changes, they will be retried", e);
+            }
+            writtenCount += batch.size();
+            batchCount++;
+        }
+    }
+
+    private void flushSafely() {
+
+        flushQueued.set(false);
+        try {
+            flush();
+        } catch(Throwable t) {
+            CraftBookPlugin.logger().log(Level.SEVERE, "Failed to write persistent data!", t);
+        }
+    }
+
+    @Override
+    public String getType() {
+
+        return storage.getType();
+    }
+
+    @Override
+    public Object get(String location) {
+
+        return view.get(location);
+    }
+
+    @Override
+    public void set(String location, Object data) {
+
+        if(data == null)
+            view.remove(location);
+        else
+            view.put(location, data);
+
+        int size;
+        synchronized(pendingLock) {
+            pending.put(location, data);
+            size = pending.size();
+        }
+
+        if(size >= batchSize && executor != null && flushQueued.compareAndSet(false, true))
+            executor.execute(this::flushSafely);
+    }
+
+    @Override
+    public Map<String, Object> getAll(String namespace) {
+
+        // Locations within the namespace sort between "namespace." and "namespace/".
+        String prefix = namespace + '.';
+        Map<String, Object> data = new HashMap<>();
+        for(Map.Entry<String, Object> entry : view.subMap(prefix, namespace + '/').entrySet())
+            flatten(entry.getKey().substring(prefix.length()), entry.getValue(), data);
+        return data;
+    }
+
+    @Override
+    public boolean has(String location) {
+
+        return view.containsKey(location);
+    }
+
+    @Override
+    public boolean isValid() {
+
+        synchronized(storage) {
+            return storage.isValid();
+        }
+    }
+
+    @Override
+    public int getVersion() {
+
+        synchronized(storage) {
+            return storage.getVersion();
+        }
+    }
+
+    @Override
+    public int getCurrentVersion() {
+
+        return storage.getCurrentVersion();
+    }
+
+    @Override
+    public void convertVersion(int version) {
+
+        flush();
+        synchronized(storage) {
+            storage.convertVersion(version);
+            load();
+        }
+    }
+
+    @Override
+    public void importData(Map<String, Object> data, boolean replace) {
+
+        flush();
+        synchronized(storage) {
+            storage.importData(data, replace);
+            load();
+        }
+    }
+
+    @Override
+    public Map<String, Object> exportData() {
+
+        return new HashMap<>(view);
+    }
+
+    /**
+     * Gets the storage that this writes to.
+     *
+     * @return The wrapped storage
+     */
+    public PersistentStorage getStorage() {
+
+        return storage;
+    }
+
+    public int getPendingCount() {
+
+        synchronized(pendingLock) {
+            return pending.size();
+        }
+    }
+
+    public long getWrittenCount() {
+
+        return writtenCount;
+    }
+
+    public long getBatchCount() {
+
+        return batchCount;
+    }
+
+    public long getFailedCount() {
+
+        return failedCount;
+    }
+}
@@ -2,6 +2,7 @@ package com.sk89q.craftbook.util.persistent;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -14,18 +15,31 @@ public class YAMLPersistentStorage extends PersistentStorage {
 
     private YAMLProcessor processor;
 
+    private final File dataFolder;
+
+    public YAMLPersistentStorage() {
+        this(CraftBookPlugin.inst().getDataFolder());
+    }
+
+    /**
+     * @param dataFolder The folder to keep the data in
+     */
+    YAMLPersistentStorage(File dataFolder) {
+        this.dataFolder = dataFolder;
+    }
+
     @Override
     public void open () {
 
         CraftBookPlugin.logger().info("Loading persistent data from YAML!");
 
-        File oldFile = new File(CraftBookPlugin.inst().getDataFolder(), "persistance.yml");
+        File oldFile = new File(dataFolder, "persistance.yml");
         if(oldFile.exists()) {
-            oldFile.renameTo(new File(CraftBookPlugin.inst().getDataFolder(), "persistence.yml"));
+            oldFile.renameTo(new File(dataFolder, "persistence.yml"));
             oldFile.delete();
         }
 
-        File file = new File(CraftBookPlugin.inst().getDataFolder(), "persistence.yml");
+        File file = new File(dataFolder, "persistence.yml");
         try {
             if(!file.exists())
                 file.createNewFile();
@@ -73,6 +87,21 @@ public class YAMLPersistentStorage extends PersistentStorage {
         processor.setProperty(location, data);
     }
 
+    @Override
+    public void remove (String location) {
+        processor.removeProperty(location);
+    }
+
+    @Override
+    public Map<String, Object> getAll (String namespace) {
+        Map<String, Object> data = new HashMap<>();
+        Object node = processor.getProperty(namespace);
+        if(node instanceof Map)
+            for(Entry<?, ?> entry : ((Map<?, ?>) node).entrySet())
+                flatten(String.valueOf(entry.getKey()), entry.getValue(), data);
+        return data;
+    }
+
     @Override
     public boolean has (String location) {
         return processor.getProperty(location) != null;
@@ -0,0 +1,41 @@
+package com.sk89q.craftbook.core.timings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TimingHistogramTest {
+
+    @Test
+    public void testBuckets() {
+
+        for(long nanos = 0; nanos < 100000; nanos++) {
+            int bucket = TimingHistogram.getBucket(nanos);
+            assertTrue(nanos <= TimingHistogram.getBucketUpperBound(bucket));
+            if(bucket > 0)
+                assertTrue(nanos > TimingHistogram.getBucketUpperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        TimingHistogram histogram = new TimingHistogram();
+        for(int i = 0; i < 99; i++)
+            histogram.record(1000);
+        histogram.record(1000000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals((99 * 1000 + 1000000) / 100, histogram.getMean());
+
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 1000 && p99 < 1250);
+        assertEquals(1000000, histogram.getPercentile(1));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.99));
+    }
+}
@@ -0,0 +1,183 @@
+package com.sk89q.craftbook.mechanics.ic.plc.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.sk89q.craftbook.mechanics.ic.ChipState;
+import com.sk89q.craftbook.mechanics.ic.ICVerificationException;
+import com.sk89q.craftbook.mechanics.ic.plc.PlcException;
+
+public class PerlstoneTest {
+
+    private final Perlstone perlstone = new Perlstone();
+
+    private boolean[] run(String code, boolean[] state, boolean... inputs) throws ICVerificationException, PlcException {
+
+        TestChip chip = new TestChip(inputs, 3);
+        perlstone.execute(chip, state, perlstone.compile(code));
+        return chip.outputs;
+    }
+
+    @Test
+    public void testLogic() throws ICVerificationException, PlcException {
+
+        boolean[] state = perlstone.initState();
+        assertTrue(run("ABC&&r", state, true, true, true)[0]);
+        assertFalse(run("ABC&&r", state, true, false, true)[0]);
+        assertTrue(run("AB.0110r", state, true, false, false)[0]);
+        assertFalse(run("AB.0110r", state, true, true, false)[0]);
+
+        boolean[] outputs = run("A!r:Br:+Ap!r", state, false, true, false);
+        assertTrue(outputs[0]);
+        assertTrue(outputs[1]);
+        assertFalse(outputs[2]);
+    }
+
+    @Test
+    public void testPersistentState() throws ICVerificationException, PlcException {
+
+        String toggle = "Lp1AdSp1.0100[Lp0!dSp0r]Lp0r";
+        boolean[] state = perlstone.initState();
+        assertFalse(run(toggle, state, false)[0]);
+        assertFalse(run(toggle, state, true)[0]);
+        assertTrue(run(toggle, state, false)[0]);
+        assertTrue(run(toggle, state, true)[0]);
+        assertFalse(run(toggle, state, false)[0]);
+    }
+
+    @Test
+    public void testLoopsAndCalls() throws ICVerificationException, PlcException {
+
+        boolean[] state = perlstone.initState();
+        // Count to four in the shifted persistent table, then return whether it got there.
+        assertTrue(run("+[+Sp0>pLP3!]LP3r", state)[0]);
+        assertTrue(state[0] && state[1] && state[2] && state[3]);
+        assertFalse(state[4]);
+
+        assertTrue(run("ABc032r:::&!r", state, false, false)[0]);
+        assertFalse(run("ABc032r:::&!r", state, true, true)[0]);
+        assertTrue(run("t020::+r", state)[0]);
+    }
+
+    @Test
+    public void testMemoization() throws ICVerificationException, PlcException {
+
+        Perlstone memoized = new Perlstone(16);
+        PerlstoneProgram program = memoized.compile("Lp1AdSp1.0100[Lp0!dSp0r]Lp0r");
+        boolean[] state = memoized.initState();
+        boolean[] inputs = {false, true, false, true, false, true, false, true};
+        boolean[] expected = {false, false, true, true, false, false, true, true};
+
+        long hits = Perlstone.getMemoHitCount();
+        for (int i = 0; i < inputs.length; i++) {
+            TestChip chip = new TestChip(new boolean[] {inputs[i]}, 1);
+            memoized.execute(chip, state, program);
+            assertEquals(expected[i], chip.outputs[0]);
+        }
+        // After a full cycle, the last three runs start from the same state and inputs as the second to fourth.
+        assertEquals(hits + 3, Perlstone.getMemoHitCount());
+    }
+
+    @Test
+    public void testErrors() throws ICVerificationException {
+
+        boolean[] state = perlstone.initState();
+        assertError("empty stack", "pr", state);
+        assertError("ran too long", "+[+]", state);
+        assertError("stack too big", "+[++]", state);
+        assertError("stack overflow", "c000", state);
+        assertError("func not found", "c050", state);
+
+        try {
+            perlstone.compile("+[+");
+            fail("Unclosed bracket compiled");
+        } catch (ICVerificationException ignored) {
+        }
+        try {
+            perlstone.compile("+]");
+            fail("Unopened bracket compiled");
+        } catch (ICVerificationException ignored) {
+        }
+    }
+
+    private void assertError(String error, String code, boolean[] state) throws ICVerificationException {
+
+        try {
+            run(code, state);
+            fail(code + " didn't fail");
+        } catch (PlcException e) {
+            assertEquals(error, e.getMessage());
+        }
+    }
+
+    private static class TestChip implements ChipState {
+
+        private final boolean[] inputs;
+        private final boolean[] outputs;
+
+        TestChip(boolean[] inputs, int outputs) {
+
+            this.inputs = inputs;
+            this.outputs = new boolean[outputs];
+        }
+
+        @Override
+        public boolean get(int pin) {
+
+            return pin < inputs.length ? inputs[pin] : outputs[pin - inputs.length];
+        }
+
+        @Override
+        public boolean getInput(int inputIndex) {
+
+            return inputs[inputIndex];
+        }
+
+        @Override
+        public boolean getOutput(int outputIndex) {
+
+            return outputs[outputIndex];
+        }
+
+        @Override
+        public void set(int pin, boolean value) {
+
+            if (pin >= inputs.length)
+                outputs[pin - inputs.length] = value;
+        }
+
+        @Override
+        public void setOutput(int outputIndex, boolean value) {
+
+            outputs[outputIndex] = value;
+        }
+
+        @Override
+        public boolean isTriggered(int pin) {
+
+            return false;
+        }
+
+        @Override
+        public boolean isValid(int pin) {
+
+            return true;
+        }
+
+        @Override
+        public int getInputCount() {
+
+            return inputs.length;
+        }
+
+        @Override
+        public int getOutputCount() {
+
+            return outputs.length;
+        }
+    }
+}
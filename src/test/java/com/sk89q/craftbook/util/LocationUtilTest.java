@@ -0,0 +1,35 @@
+package com.sk89q.craftbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LocationUtilTest {
+
+    @Test
+    public void testBlockKey() {
+
+        int[][] coords = {{0, 0, 0}, {15, 255, 15}, {-1, 64, -1}, {-30000000, 0, 30000000}, {29999999, 511, -29999999}, {123, -64, -456}};
+
+        for(int[] coord : coords) {
+            long key = LocationUtil.toBlockKey(coord[0], coord[1], coord[2]);
+            assertEquals(coord[0], LocationUtil.getBlockKeyX(key));
+            assertEquals(coord[1], LocationUtil.getBlockKeyY(key));
+            assertEquals(coord[2], LocationUtil.getBlockKeyZ(key));
+        }
+
+        assertTrue(LocationUtil.toBlockKey(1, 2, 3) != LocationUtil.toBlockKey(3, 2, 1));
+    }
+
+    @Test
+    public void testChunkKey() {
+
+        long key = LocationUtil.toChunkKey(-5, 12);
+        assertEquals(-5, LocationUtil.getChunkKeyX(key));
+        assertEquals(12, LocationUtil.getChunkKeyZ(key));
+
+        assertEquals(LocationUtil.toChunkKey(-1, -1), LocationUtil.getChunkKey(LocationUtil.toBlockKey(-1, 70, -16)));
+        assertEquals(LocationUtil.toChunkKey(0, -2), LocationUtil.getChunkKey(LocationUtil.toBlockKey(15, 70, -17)));
+    }
+}
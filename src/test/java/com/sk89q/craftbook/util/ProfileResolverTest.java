@@ -0,0 +1,118 @@
+package com.sk89q.craftbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sk89q.craftbook.util.persistent.DummyPersistentStorage;
+import com.sk89q.craftbook.util.persistent.PersistentStorage;
+
+public class ProfileResolverTest {
+
+    private static final UUID NOTCH = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final BlockingQueue<Runnable> mainThread = new LinkedBlockingQueue<>();
+
+    private final ProfileResolver.Backend backend = name -> {
+        lookups.incrementAndGet();
+        return name.equalsIgnoreCase("Notch") ? NOTCH : null;
+    };
+
+    private void runMainThread() throws InterruptedException {
+
+        Runnable runnable = mainThread.poll(5, TimeUnit.SECONDS);
+        assertTrue("The lookup didn't finish", runnable != null);
+        runnable.run();
+    }
+
+    @Test
+    public void testDeduplication() throws InterruptedException {
+
+        ProfileResolver resolver = new ProfileResolver(backend, mainThread::add, () -> null);
+        List<UUID> results = new ArrayList<>();
+
+        resolver.resolve("Notch", results::add);
+        resolver.resolve("notch", results::add);
+        assertTrue(results.isEmpty());
+        assertFalse(resolver.isCached("Notch"));
+
+        runMainThread();
+        assertEquals(2, results.size());
+        assertEquals(NOTCH, results.get(0));
+        assertEquals(NOTCH, results.get(1));
+        assertEquals(1, lookups.get());
+
+        resolver.resolve("NOTCH", results::add);
+        assertEquals(3, results.size());
+        assertEquals(NOTCH, resolver.getCached("Notch"));
+        assertEquals(1, lookups.get());
+        assertEquals(1, resolver.getHitCount());
+        resolver.close();
+    }
+
+    @Test
+    public void testNegativeCache() throws InterruptedException {
+
+        ProfileResolver resolver = new ProfileResolver(backend, mainThread::add, () -> null);
+        List<UUID> results = new ArrayList<>();
+
+        resolver.resolve("Nobody", results::add);
+        runMainThread();
+        assertEquals(1, results.size());
+        assertNull(results.get(0));
+        assertTrue(resolver.isCached("Nobody"));
+        assertNull(resolver.getCached("Nobody"));
+
+        resolver.resolve("Nobody", results::add);
+        assertEquals(2, results.size());
+        assertEquals(1, lookups.get());
+        resolver.close();
+    }
+
+    @Test
+    public void testInterruptedLookup() throws InterruptedException {
+
+        ProfileResolver resolver = new ProfileResolver(name -> {
+            throw new InterruptedException();
+        }, mainThread::add, () -> null);
+        List<UUID> results = new ArrayList<>();
+
+        resolver.resolve("Notch", results::add);
+        assertEquals(1, resolver.getPendingCount());
+        runMainThread();
+        assertEquals(0, resolver.getPendingCount());
+        assertTrue(results.isEmpty());
+        assertFalse(resolver.isCached("Notch"));
+        resolver.close();
+    }
+
+    @Test
+    public void testPersistence() throws InterruptedException {
+
+        PersistentStorage storage = new DummyPersistentStorage();
+        storage.open();
+
+        ProfileResolver resolver = new ProfileResolver(backend, mainThread::add, () -> storage);
+        resolver.resolve("Notch", uuid -> {});
+        runMainThread();
+        resolver.close();
+
+        ProfileResolver reloaded = new ProfileResolver(backend, mainThread::add, () -> storage);
+        assertTrue(reloaded.isCached("Notch"));
+        assertEquals(NOTCH, reloaded.getCached("Notch"));
+        assertEquals(1, lookups.get());
+        reloaded.close();
+    }
+}
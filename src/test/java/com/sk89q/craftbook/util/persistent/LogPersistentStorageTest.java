@@ -0,0 +1,172 @@
+package com.sk89q.craftbook.util.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sk89q.craftbook.BaseTestCase;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+
+/**
+ * Checks that the log keeps its data across being reopened, torn writes and compaction.
+ */
+public class LogPersistentStorageTest extends BaseTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dataFolder;
+    private LogPersistentStorage storage;
+
+    @Before
+    public void open() throws IOException {
+
+        setup();
+        when(CraftBookPlugin.inst().getLogger()).thenReturn(Logger.getLogger("CraftBook"));
+
+        dataFolder = folder.newFolder();
+        storage = new LogPersistentStorage(dataFolder);
+        storage.open();
+    }
+
+    @After
+    public void close() {
+
+        storage.close();
+    }
+
+    private void reopen() {
+
+        storage.close();
+        storage = new LogPersistentStorage(dataFolder);
+        storage.open();
+        assertTrue(storage.isValid());
+    }
+
+    @Test
+    public void testReplay() {
+
+        storage.set("a", "1");
+        storage.set("b", 2);
+        storage.set("c", 3L);
+        storage.set("a", "4");
+        storage.set("b", null);
+
+        reopen();
+
+        assertEquals("4", storage.get("a"));
+        assertFalse(storage.has("b"));
+        assertNull(storage.get("b"));
+        assertEquals(3L, storage.get("c"));
+        assertTrue(storage.getGarbage() > 0);
+    }
+
+    @Test
+    public void testCorruptTailIsDropped() throws IOException {
+
+        storage.set("a", "1");
+        storage.set("b", "2");
+        int lastRecord = storage.getSize();
+        storage.set("c", "3");
+        storage.close();
+
+        // Flip a byte of the last value, so its checksum no longer matches.
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dataFolder, "persistence.log"), "rw")) {
+            long last = lastRecord + 8 + 1 + 4 + 1;
+            raf.seek(last);
+            byte b = raf.readByte();
+            raf.seek(last);
+            raf.writeByte(b ^ 0xFF);
+        }
+
+        checkTornTail(lastRecord);
+    }
+
+    @Test
+    public void testTruncatedTailIsDropped() throws IOException {
+
+        storage.set("a", "1");
+        storage.set("b", "2");
+        int lastRecord = storage.getSize();
+        storage.set("c", "3");
+        storage.close();
+
+        // Cut the log off part way through the last record, as if the write never finished.
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dataFolder, "persistence.log"), "rw")) {
+            raf.setLength(lastRecord + 10);
+        }
+
+        checkTornTail(lastRecord);
+    }
+
+    private void checkTornTail(int lastRecord) {
+
+        storage = new LogPersistentStorage(dataFolder);
+        storage.open();
+        assertTrue(storage.isValid());
+        assertEquals("1", storage.get("a"));
+        assertEquals("2", storage.get("b"));
+        assertFalse(storage.has("c"));
+        assertEquals(lastRecord, storage.getSize());
+
+        // What the torn record left behind is cleared, so the log can be appended to again.
+        storage.set("d", "4");
+        reopen();
+        assertEquals("1", storage.get("a"));
+        assertEquals("2", storage.get("b"));
+        assertFalse(storage.has("c"));
+        assertEquals("4", storage.get("d"));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+
+        for(int i = 0; i < 100; i++)
+            for(int j = 0; j < 20; j++)
+                storage.set("key." + i, i * j);
+        for(int i = 0; i < 100; i += 2)
+            storage.set("key." + i, null);
+        int size = storage.getSize();
+
+        Thread writer = new Thread(() -> {
+            for(int i = 0; i < 1000; i++)
+                storage.set("during." + i, "value " + i);
+        });
+        writer.start();
+        storage.compact();
+        writer.join();
+
+        assertTrue(storage.getSize() < size);
+        for(int i = 0; i < 100; i++) {
+            if(i % 2 == 0)
+                assertFalse(storage.has("key." + i));
+            else
+                assertEquals(i * 19, storage.get("key." + i));
+        }
+        for(int i = 0; i < 1000; i++)
+            assertEquals("value " + i, storage.get("during." + i));
+
+        reopen();
+
+        assertEquals(0, storage.getGarbage());
+        assertEquals(50, storage.getAll("key").size());
+        assertEquals(1000, storage.getAll("during").size());
+        for(int i = 1; i < 100; i += 2)
+            assertEquals(i * 19, storage.get("key." + i));
+        for(int i = 0; i < 1000; i++)
+            assertEquals("value " + i, storage.get("during." + i));
+    }
+}
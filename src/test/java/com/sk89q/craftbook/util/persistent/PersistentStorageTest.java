@@ -0,0 +1,136 @@
+package com.sk89q.craftbook.util.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.sk89q.craftbook.BaseTestCase;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+
+/**
+ * Runs the same checks against every storage method, as they should all behave the same way.
+ */
+@RunWith(Parameterized.class)
+public class PersistentStorageTest extends BaseTestCase {
+
+    @Parameters
+    public static Collection<Object[]> types() {
+
+        return Arrays.asList(new Object[][] {{"DUMMY"}, {"YAML"}, {"SQLite"}, {"LOG"}, {"WRITE-BEHIND"}});
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String type;
+    private PersistentStorage storage;
+
+    public PersistentStorageTest(String type) {
+
+        this.type = type;
+    }
+
+    @Before
+    public void open() throws IOException {
+
+        setup();
+        when(CraftBookPlugin.inst().getLogger()).thenReturn(Logger.getLogger("CraftBook"));
+
+        File dataFolder = folder.newFolder();
+        switch(type) {
+            case "YAML":
+                storage = new YAMLPersistentStorage(dataFolder);
+                break;
+            case "SQLite":
+                storage = new SQLitePersistentStorage(dataFolder);
+                break;
+            case "LOG":
+                storage = new LogPersistentStorage(dataFolder);
+                break;
+            case "WRITE-BEHIND":
+                storage = new WriteBehindPersistentStorage(new LogPersistentStorage(dataFolder), 1000, 2);
+                break;
+            default:
+                storage = new DummyPersistentStorage();
+        }
+        storage.open();
+    }
+
+    @After
+    public void close() {
+
+        storage.close();
+    }
+
+    @Test
+    public void testNamespaces() {
+
+        storage.set("locations", "not an entry");
+        storage.put("locations", "a", "world:1:2:3");
+        storage.put("locations", "b.c", "world:4:5:6");
+        storage.set("locationsother.d", "not an entry");
+
+        Map<String, Object> all = storage.getAll("locations");
+        assertEquals(type, 2, all.size());
+        assertEquals(type, "world:1:2:3", all.get("a"));
+        assertEquals(type, "world:4:5:6", all.get("b.c"));
+
+        storage.remove("locations", "a");
+        assertFalse(type, storage.has("locations.a"));
+        assertNull(type, storage.getAll("locations").get("a"));
+        assertTrue(type, storage.has("locations.b.c"));
+    }
+
+    @Test
+    public void testMapsAreFlattened() {
+
+        Map<String, Object> item = new HashMap<>();
+        item.put("x", "1");
+        item.put("y", "2");
+        storage.put("items", "a", item);
+        storage.put("items", "b", "3");
+
+        Map<String, Object> all = storage.getAll("items");
+        assertEquals(type, 3, all.size());
+        assertEquals(type, "1", all.get("a.x"));
+        assertEquals(type, "2", all.get("a.y"));
+        assertEquals(type, "3", all.get("b"));
+    }
+
+    @Test
+    public void testTypedGetters() {
+
+        storage.set("int", 5);
+        storage.set("long", "12345678901");
+        storage.set("double", 2.5f);
+        storage.set("boolean", "true");
+
+        assertEquals(type, 5, storage.getInt("int", 0));
+        assertEquals(type, 5L, storage.getLong("int", 0));
+        assertEquals(type, 12345678901L, storage.getLong("long", 0));
+        assertEquals(type, 2.5, storage.getDouble("double", 0), 0);
+        assertTrue(type, storage.getBoolean("boolean", false));
+        assertEquals(type, 7, storage.getInt("missing", 7));
+        assertEquals(type, 3, storage.getInt("boolean", 3));
+        assertEquals(type, "def", storage.getString("missing", "def"));
+    }
+}